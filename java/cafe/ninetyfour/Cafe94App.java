@@ -3,9 +3,13 @@ package cafe.ninetyfour;
 import cafe.ninetyfour.controller.*;
 //import cafe.ninetyfour.models.TestData;
 import cafe.ninetyfour.models.User;
+import cafe.ninetyfour.persistence.PersistenceScheduler;
+import cafe.ninetyfour.repository.Repositories;
+import cafe.ninetyfour.exceptions.ServiceException;
 import cafe.ninetyfour.services.*;
 import cafe.ninetyfour.utils.TestData;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Group;
 import javafx.scene.Parent;
@@ -25,12 +29,8 @@ import java.nio.file.Paths;
 public class Cafe94App extends Application {
     private Stage primaryStage;
     private MainController mainController;
-    private CustomerService customerService;
-    private StaffService staffService;
-    private BookingService bookingService;
-    private OrderService orderService;
-    private AuthService authService;
-    private TableManager tableManager;
+    private ServiceBootstrap services;
+    private PersistenceScheduler persistenceScheduler;
 
 
     /**
@@ -51,30 +51,55 @@ public class Cafe94App extends Application {
         }
 
         initializeServices();
-
-        // Start with login screen
-        showLoginView();
     }
 
     /**
      * Initialize the services and load data.
+     * The services load in parallel; the login screen is shown as soon as
+     * the customer and staff services are ready, while bookings and
+     * orders may still be loading.
      */
     private void initializeServices() {
-        // Initialize services with proper file paths
-        this.customerService = new CustomerService();
-        this.staffService = new StaffService();
-        this.bookingService = new BookingService(tableManager);
-        this.orderService = new OrderService();
-        this.authService = new AuthService(customerService, staffService);
-
-        //Test data for development phase
-        if (isDeveloping()) {
-            TestData.initializeTestUsers(customerService, staffService);
-        }
+        this.persistenceScheduler = new PersistenceScheduler();
+        this.services = new ServiceBootstrap(persistenceScheduler).start();
+
+        services.authReady().whenComplete((authService, error) -> {
+            if (error != null) {
+                System.err.println("Failed to load services: " + error.getMessage());
+                Platform.exit();
+                return;
+            }
+
+            //Test data for development phase
+            if (isDeveloping()) {
+                TestData.initializeTestUsers(services.getCustomerService(),
+                        services.getStaffService());
+            }
+
+            // Start with login screen
+            Platform.runLater(this::showLoginView);
+        });
+    }
 
-        // Verifying data loaded
-        System.out.println("Loaded customers: " + customerService.getAllCustomers().size());
-        System.out.println("Loaded staff: " + staffService.getAllStaff().size());
+    /**
+     * Flush any pending writes before the application exits.
+     */
+    @Override
+    public void stop() {
+        if (persistenceScheduler != null) {
+            persistenceScheduler.close();
+            System.out.println("Persisted " + persistenceScheduler.getPerformedWrites()
+                    + " store writes (" + persistenceScheduler.getCoalescedWrites()
+                    + " coalesced)");
+        }
+        try {
+            if (services != null && !services.allReady().isCompletedExceptionally()) {
+                services.getOrderService().saveOrders();
+            }
+            Repositories.getDefault().close();
+        } catch (ServiceException | IOException e) {
+            System.err.println("Error closing data store: " + e.getMessage());
+        }
     }
 
     /**
@@ -130,13 +155,13 @@ public class Cafe94App extends Application {
         showLoginView();
     }
 
-    // Getters for services
+    // Getters for services; each waits for its service if it is still loading
     public AuthService getAuthService() {
-        return authService;
+        return services.getAuthService();
     }
 
     public CustomerService getCustomerService() {
-        return customerService;
+        return services.getCustomerService();
     }
 
     public MainController getMainController() {
@@ -144,11 +169,11 @@ public class Cafe94App extends Application {
     }
 
     public BookingService getBookingService() {
-        return bookingService;
+        return services.getBookingService();
     }
 
     public OrderService getOrderService() {
-        return orderService;
+        return services.getOrderService();
     }
 
 
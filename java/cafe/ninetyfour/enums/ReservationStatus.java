@@ -3,5 +3,11 @@ package cafe.ninetyfour.enums;
 public enum ReservationStatus{
     PENDING,
     APPROVED,
-    CANCELLED
+    CANCELLED,
+    // Ended after the party was seated
+    COMPLETED,
+    // Ended without ever being approved or seated
+    EXPIRED,
+    // Ended after being approved, without the party ever being seated
+    NO_SHOW
 }
\ No newline at end of file
@@ -3,5 +3,7 @@ package cafe.ninetyfour.enums;
 public enum TableStatus {
     UNAVAILABLE,
     AVAILABLE,
-    RESERVED
+    RESERVED,
+    // A party is seated at the table
+    OCCUPIED
 }
@@ -4,6 +4,8 @@ import cafe.ninetyfour.enums.ReservationStatus;
 
 import java.time.LocalDateTime;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Represents a table booking reservation in the cafe system.
@@ -42,9 +44,19 @@ public class Booking extends Reservation implements Serializable {
         this.numberOfGuests = numberOfGuests;
     }
 
+    /**
+     * Restores a saved booking. Used by ModelCodec.
+     */
+    Booking(int reservationId, int customerId, LocalDateTime startTime,
+            int duration, int numberOfGuests) {
+        super(reservationId, customerId, startTime, duration);
+        this.numberOfGuests = numberOfGuests;
+    }
+
 
     /**
      * Assigns a table to this booking after checking capacity.
+     * Seats of tables already assigned count towards the party.
      *
      * @param table the table to assign
      * @return true if table was successfully assigned
@@ -52,7 +64,7 @@ public class Booking extends Reservation implements Serializable {
      */
     @Override
     public boolean addTable(Table table) {
-        if (table.getCapacity() < this.numberOfGuests) {
+        if (getSeats() + table.getCapacity() < this.numberOfGuests) {
             throw new IllegalArgumentException(
                     String.format("Table %d (%d seats) too small for %d guests",
                             table.getTableId(),
@@ -62,6 +74,39 @@ public class Booking extends Reservation implements Serializable {
         return super.addTable(table);
     }
 
+    /**
+     * Assigns a combination of tables to this booking, all or none,
+     * after checking their capacity together.
+     *
+     * @param combination the tables to assign
+     * @return true if every table was assigned
+     * @throws IllegalArgumentException if the tables together are too small
+     */
+    @Override
+    public boolean addTables(List<Table> combination) {
+        int seats = getSeats();
+        for (Table table : combination) {
+            seats += table.getCapacity();
+        }
+        if (seats < this.numberOfGuests) {
+            throw new IllegalArgumentException(
+                    String.format("Tables %s (%d seats) too small for %d guests",
+                            combination, seats, this.numberOfGuests));
+        }
+        return super.addTables(combination);
+    }
+
+    /**
+     * @return the total capacity of the tables assigned to this booking
+     */
+    public int getSeats() {
+        int seats = 0;
+        for (Table table : tables) {
+            seats += table.getCapacity();
+        }
+        return seats;
+    }
+
 
 
     /**
@@ -81,16 +126,23 @@ public class Booking extends Reservation implements Serializable {
 
 
     /**
-     * Cancels the booking and releases all tables.
+     * Cancels the booking if it is still active and takes it off all its
+     * tables. A party seated at one of them for another booking stays
+     * seated. A booking that has already ended keeps its status.
      */
     @Override
     public void cancel() {
-        // Release all tables
-        for (Table table : tables) {
-            table.releaseTable();
+        synchronized (this) {
+            if (!isActive()) {
+                return;
+            }
+            status = ReservationStatus.CANCELLED;
+        }
+        // Take the booking off its tables, which update their own status
+        for (Table table : new ArrayList<>(tables)) {
+            table.removeReservation(this);
         }
         this.tables.clear();  // Clear the assigned tables
-        this.status = ReservationStatus.CANCELLED;
         notifyCustomer("Your booking (ID: " + reservationId + ") has been cancelled");
     }
 
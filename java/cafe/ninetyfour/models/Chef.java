@@ -29,6 +29,14 @@ public class Chef extends Staff implements Serializable {
         super(username, password, UserRole.CHEF, hoursToWork, firstName, lastName);
     }
 
+    /**
+     * Restores a saved chef. Used by ModelCodec.
+     */
+    Chef(int userId, String username, String password, int hoursToWork,
+         int totalWorkedHours) {
+        super(userId, username, password, UserRole.CHEF, hoursToWork, totalWorkedHours);
+    }
+
     /**
      * Sets the OrderService dependency for order management operations.
      *
@@ -35,6 +35,14 @@ public class Customer extends User implements Serializable {
         this.orderHistory = new ArrayList<>();
     }
 
+    /**
+     * Restores a saved customer. Used by ModelCodec.
+     */
+    Customer(int userId, String username, String password) {
+        super(userId, username, password, UserRole.CUSTOMER);
+        this.orderHistory = new ArrayList<>();
+    }
+
     //Order Related methods
 
     /**
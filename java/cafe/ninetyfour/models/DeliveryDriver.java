@@ -22,6 +22,14 @@ public class DeliveryDriver extends Staff implements Serializable {
         super(username, password, UserRole.DRIVER, hoursToWork, firstName, lastName);
     }
 
+    /**
+     * Restores a saved delivery driver. Used by ModelCodec.
+     */
+    DeliveryDriver(int userId, String username, String password, int hoursToWork,
+                   int totalWorkedHours) {
+        super(userId, username, password, UserRole.DRIVER, hoursToWork, totalWorkedHours);
+    }
+
 
 
 }
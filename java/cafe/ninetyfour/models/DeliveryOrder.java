@@ -3,6 +3,7 @@ package cafe.ninetyfour.models;
 import cafe.ninetyfour.enums.OrderStatus;
 
 import java.io.Serializable;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Objects;
 
@@ -34,6 +35,18 @@ public class DeliveryOrder extends Order implements Serializable {
         this.driverId = -1; // Indicates unassigned
     }
 
+    /**
+     * Restores a saved delivery order. Used by ModelCodec.
+     */
+    DeliveryOrder(int orderId, int customerId, List<OrderLine> lines, OrderStatus status,
+                  LocalDateTime orderTime, double totalPrice, boolean isApproved,
+                  String deliveryAddress, int duration, int driverId) {
+        super(orderId, customerId, lines, status, orderTime, totalPrice, isApproved);
+        this.deliveryAddress = deliveryAddress;
+        this.duration = duration;
+        this.driverId = driverId;
+    }
+
     /**
      * Processes the delivery order after verifying a driver is assigned.
      *
@@ -62,6 +75,24 @@ public class DeliveryOrder extends Order implements Serializable {
         this.driverId = driverId;
     }
 
+    // Getters
+    public String getDeliveryAddress() {
+        return deliveryAddress;
+    }
+
+    public int getDuration() {
+        return duration;
+    }
+
+    /**
+     * Retrieves the assigned driver.
+     *
+     * @return the driver ID, or -1 if no driver is assigned
+     */
+    public int getDriverId() {
+        return driverId;
+    }
+
     /**
      * Returns a string representation of the delivery order.
      *
@@ -1,6 +1,7 @@
 package cafe.ninetyfour.models;
 
 import java.io.Serializable;
+import java.time.LocalDateTime;
 import java.util.*;
 import cafe.ninetyfour.enums.OrderStatus;
 
@@ -25,6 +26,25 @@ public class EatInOrder extends Order implements Serializable {
         this.tableNumber = tableNumber;
     }
 
+    /**
+     * Restores a saved eat-in order. Used by ModelCodec.
+     */
+    EatInOrder(int orderId, int customerId, List<OrderLine> lines, OrderStatus status,
+               LocalDateTime orderTime, double totalPrice, boolean isApproved,
+               int tableNumber) {
+        super(orderId, customerId, lines, status, orderTime, totalPrice, isApproved);
+        this.tableNumber = tableNumber;
+    }
+
+    /**
+     * Retrieves the table number.
+     *
+     * @return the table where the customer is seated
+     */
+    public int getTableNumber() {
+        return tableNumber;
+    }
+
 
     /**
      * Processes the eat-in order by updating its status to IN_PROGRESS.
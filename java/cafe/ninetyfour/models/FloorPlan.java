@@ -0,0 +1,170 @@
+package cafe.ninetyfour.models;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Describes the tables of a venue: their capacities, zones (rooms or areas),
+ * positions and which tables stand next to each other and can be combined.
+ * <p>
+ * A floor plan file is a CSV file with one record per line; blank lines and
+ * lines starting with {@code #} are ignored:
+ * <pre>
+ * table,&lt;id&gt;,&lt;capacity&gt;,&lt;zone&gt;,&lt;x&gt;,&lt;y&gt;
+ * adjacent,&lt;id&gt;,&lt;id&gt;
+ * </pre>
+ */
+public class FloorPlan {
+    public static final String DEFAULT_FILE = "data/floorplan.csv";
+    public static final String DEFAULT_ZONE = "Main";
+
+    private final List<Table> tables = new ArrayList<>();
+    private final Map<Integer, Table> tablesById = new HashMap<>();
+    private final List<int[]> adjacentPairs = new ArrayList<>();
+
+    /**
+     * Constructs an empty floor plan.
+     */
+    public FloorPlan() {
+    }
+
+    /**
+     * Returns the original floor: 4 tables of 2, 4 tables of 4, 2 tables
+     * of 8 and 1 table of 10, in one zone, with tables of the same size
+     * standing in a row.
+     *
+     * @return the default floor plan
+     */
+    public static FloorPlan defaultPlan() {
+        FloorPlan plan = new FloorPlan();
+        int[] capacities = {2, 2, 2, 2, 4, 4, 4, 4, 8, 8, 10};
+        for (int i = 0; i < capacities.length; i++) {
+            plan.addTable(new Table(i + 1, capacities[i], DEFAULT_ZONE, i, 0));
+            if (i > 0 && capacities[i - 1] == capacities[i]) {
+                plan.addAdjacency(i, i + 1);
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Loads the floor plan file if it exists, or returns the default plan.
+     *
+     * @param file the floor plan file
+     * @return the floor plan
+     * @throws IOException if the file exists but cannot be read or parsed
+     */
+    public static FloorPlan loadOrDefault(File file) throws IOException {
+        return file.exists() ? load(file) : defaultPlan();
+    }
+
+    /**
+     * Reads a floor plan file.
+     *
+     * @param file the floor plan file
+     * @return the floor plan
+     * @throws IOException if the file cannot be read or a line is malformed
+     */
+    public static FloorPlan load(File file) throws IOException {
+        FloorPlan plan = new FloorPlan();
+        List<int[]> pending = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(",", -1);
+                for (int i = 0; i < fields.length; i++) {
+                    fields[i] = fields[i].trim();
+                }
+                try {
+                    switch (fields[0].toLowerCase()) {
+                        case "table":
+                            expectFields(fields, 6);
+                            plan.addTable(new Table(Integer.parseInt(fields[1]),
+                                    Integer.parseInt(fields[2]),
+                                    fields[3].isEmpty() ? DEFAULT_ZONE : fields[3],
+                                    Double.parseDouble(fields[4]),
+                                    Double.parseDouble(fields[5])));
+                            break;
+                        case "adjacent":
+                            expectFields(fields, 3);
+                            // Checked once every table is known
+                            pending.add(new int[]{Integer.parseInt(fields[1]),
+                                    Integer.parseInt(fields[2]), lineNumber});
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Unknown record type " + fields[0]);
+                    }
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(file + " line " + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        for (int[] pair : pending) {
+            try {
+                plan.addAdjacency(pair[0], pair[1]);
+            } catch (IllegalArgumentException e) {
+                throw new IOException(file + " line " + pair[2] + ": " + e.getMessage(), e);
+            }
+        }
+        return plan;
+    }
+
+    private static void expectFields(String[] fields, int count) {
+        if (fields.length != count) throw new IllegalArgumentException
+                ("Expected " + count + " fields but found " + fields.length);
+    }
+
+    /**
+     * Adds a table to the plan.
+     *
+     * @param table the table
+     * @throws IllegalArgumentException if a table with the same ID exists
+     *                                  or the capacity is not positive
+     */
+    public void addTable(Table table) {
+        if (table.getCapacity() <= 0) throw new IllegalArgumentException
+                ("Table " + table.getTableId() + " must seat at least one guest");
+        if (tablesById.putIfAbsent(table.getTableId(), table) != null) throw new IllegalArgumentException
+                ("Duplicate table " + table.getTableId());
+        tables.add(table);
+    }
+
+    /**
+     * Records that two tables of the plan can be combined.
+     *
+     * @param tableId      one table
+     * @param otherTableId the other table
+     * @throws IllegalArgumentException if either table is not in the plan
+     */
+    public void addAdjacency(int tableId, int otherTableId) {
+        if (!tablesById.containsKey(tableId) || !tablesById.containsKey(otherTableId)) {
+            throw new IllegalArgumentException("Unknown table in adjacency "
+                    + tableId + "-" + otherTableId);
+        }
+        adjacentPairs.add(new int[]{tableId, otherTableId});
+    }
+
+    /**
+     * @return the tables in the order they were added
+     */
+    public List<Table> getTables() {
+        return Collections.unmodifiableList(tables);
+    }
+
+    /**
+     * @return the pairs of adjacent table IDs
+     */
+    public List<int[]> getAdjacentPairs() {
+        return Collections.unmodifiableList(adjacentPairs);
+    }
+}
@@ -29,12 +29,35 @@ public class Item implements Serializable {
     // no need to include it as a parameter
     public Item(String name, ItemCategory category, double price) {
         this.name = name;
-        this.itemID = nextItemID++;
+        this.itemID = allocateItemId();
         this.price = price;
         this.category = category;
         this.isDailySpecial = false;
     }
 
+    /**
+     * Restores a saved item with its original ID.
+     * Used by ModelCodec; keeps the ID counter ahead of every restored ID.
+     */
+    Item(int itemID, String name, ItemCategory category, double price,
+         boolean isDailySpecial) {
+        this.itemID = itemID;
+        this.name = name;
+        this.category = category;
+        this.price = price;
+        this.isDailySpecial = isDailySpecial;
+        reserveItemId(itemID);
+    }
+
+    // Items are restored from several stores in parallel at startup
+    private static synchronized int allocateItemId() {
+        return nextItemID++;
+    }
+
+    private static synchronized void reserveItemId(int usedId) {
+        nextItemID = Math.max(nextItemID, usedId + 1);
+    }
+
     // Getters
     public String getName() {
         return name;
@@ -17,7 +17,7 @@ public class Main {
         OrderService orderService = new OrderService();
         StaffService staffService = new StaffService();
         Menu menu = new Menu();
-        ReportGenerator reportGenerator = new ReportGenerator(orderService, staffService, customerService);
+        ReportGenerator reportGenerator = new ReportGenerator(orderService, staffService, customerService, menu);
 
         // ===== 1. SETUP PHASE =====
         // Add menu items
@@ -34,6 +34,14 @@ public class Manager extends Staff implements Serializable {
                 lastName);
     }
 
+    /**
+     * Restores a saved manager. Used by ModelCodec.
+     */
+    Manager(int userId, String username, String password, int hoursToWork,
+            int totalWorkedHours) {
+        super(userId, username, password, UserRole.MANAGER, hoursToWork, totalWorkedHours);
+    }
+
     /**
      * Sets the StaffService dependency for staff management operations.
      *
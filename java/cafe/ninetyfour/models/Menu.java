@@ -2,6 +2,7 @@ package cafe.ninetyfour.models;
 
 import java.io.*;
 import cafe.ninetyfour.enums.ItemCategory;
+import cafe.ninetyfour.repository.Repositories;
 
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -12,7 +13,7 @@ import java.util.stream.Collectors;
 
 /**
  * Represents the cafe's menu with items and daily specials.
- * Supports persistence by saving to and loading from a file.
+ * Supports persistence through the configured menu repository.
  */
 public class Menu implements Serializable {
     private static final long serialVersionUID = 1L;
@@ -31,29 +32,44 @@ public class Menu implements Serializable {
 
 
     /**
-     * Saves the menu to a file for persistence.
+     * Saves the menu to the menu repository for persistence.
      */
     public void saveToFile() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(
-                new FileOutputStream("data/menu.dat"))) {
-            oos.writeObject(this);
+        try {
+            Repositories.getDefault().menu().save(this);
         } catch (IOException e) {
             System.err.println("Error saving menu: " + e.getMessage());
         }
     }
 
     /**
-     * Loads a menu from file or creates a new one if file doesn't exist.
+     * Loads the menu from the menu repository or creates a new one if none is saved.
      * @return the loaded Menu or a new Menu if loading fails
      */
     public static Menu loadFromFile() {
-        try (ObjectInputStream ois = new ObjectInputStream(
-                new FileInputStream("data/menu.dat"))) {
-            return (Menu) ois.readObject();
-        } catch (Exception e) {
-            System.out.println("No saved menu found, creating new");
-            return new Menu();
+        try {
+            Menu menu = Repositories.getDefault().menu().load();
+            if (menu != null) {
+                return menu;
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading menu: " + e.getMessage());
+        }
+        System.out.println("No saved menu found, creating new");
+        return new Menu();
+    }
+
+    /**
+     * Restores saved items and the daily special without the
+     * console messages printed by addItem. Used by ModelCodec.
+     */
+    void restore(List<Item> savedItems, Item savedDailySpecial) {
+        for (Item item : savedItems) {
+            items.add(item);
+            itemsById.put(item.getItemID(), item);
+            itemsByName.put(item.getName().toLowerCase(), item);
         }
+        this.dailySpecial = savedDailySpecial;
     }
 
     // Daily Special Related Methods
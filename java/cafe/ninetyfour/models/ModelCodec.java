@@ -0,0 +1,470 @@
+package cafe.ninetyfour.models;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import cafe.ninetyfour.enums.ItemCategory;
+import cafe.ninetyfour.enums.OrderStatus;
+import cafe.ninetyfour.enums.ReservationStatus;
+import cafe.ninetyfour.enums.TableStatus;
+import cafe.ninetyfour.enums.UserRole;
+import cafe.ninetyfour.persistence.BinaryInput;
+import cafe.ninetyfour.persistence.BinaryOutput;
+
+/**
+ * ModelCodec encodes and decodes the model classes in the compact binary
+ * format used by the data files. It lives next to the models so it can
+ * restore saved objects through their package-private constructors
+ * without re-running validation or consuming new IDs.
+ * <p>
+ * Any change to a record layout must bump {@code BinaryFormat.CURRENT_VERSION}
+ * and keep decoding the older versions based on {@link BinaryInput#getVersion()}.
+ */
+public final class ModelCodec {
+    // Order type tags
+    private static final int EAT_IN = 0;
+    private static final int TAKEAWAY = 1;
+    private static final int DELIVERY = 2;
+
+    // Booking type tags, written since version 5
+    private static final int SINGLE_BOOKING = 0;
+    private static final int RECURRING_BOOKING = 1;
+
+    private ModelCodec() {
+    }
+
+    // Items
+
+    public static void writeItem(BinaryOutput out, Item item) throws IOException {
+        out.writeVarInt(item.getItemID());
+        out.writeString(item.getName());
+        out.writeEnum(item.getCategory());
+        out.writeDouble(item.getPrice());
+        out.writeBoolean(item.isDailySpecial());
+    }
+
+    public static Item readItem(BinaryInput in) throws IOException {
+        int itemId = in.readVarInt();
+        String name = in.readString();
+        ItemCategory category = in.readEnum(ItemCategory.values());
+        double price = in.readDouble();
+        boolean isDailySpecial = in.readBoolean();
+        return new Item(itemId, name, category, price, isDailySpecial);
+    }
+
+    // Order lines
+
+    public static void writeOrderLine(BinaryOutput out, OrderLine line) throws IOException {
+        out.writeVarInt(line.getItemId());
+        out.writeVarInt(line.getQuantity());
+        out.writeDouble(line.getUnitPrice());
+    }
+
+    public static OrderLine readOrderLine(BinaryInput in) throws IOException {
+        int itemId = in.readVarInt();
+        int quantity = in.readVarInt();
+        double unitPrice = in.readDouble();
+        return new OrderLine(itemId, quantity, unitPrice);
+    }
+
+    // Orders
+
+    public static void writeOrder(BinaryOutput out, Order order) throws IOException {
+        if (order instanceof EatInOrder) {
+            out.writeVarInt(EAT_IN);
+        } else if (order instanceof DeliveryOrder) {
+            out.writeVarInt(DELIVERY);
+        } else if (order instanceof TakeAwayOrder) {
+            out.writeVarInt(TAKEAWAY);
+        } else {
+            throw new IOException("Unsupported order type " + order.getClass().getName());
+        }
+
+        out.writeVarInt(order.getOrderId());
+        out.writeVarInt(order.getCustomerId());
+        out.writeEnum(order.getStatus());
+        out.writeTimestamp(order.getOrderTime());
+        out.writeDouble(order.getTotalPrice());
+        out.writeBoolean(order.isApproved());
+        out.writeVarInt(order.getLines().size());
+        for (OrderLine line : order.getLines()) {
+            writeOrderLine(out, line);
+        }
+
+        if (order instanceof EatInOrder eatIn) {
+            out.writeVarInt(eatIn.getTableNumber());
+        } else if (order instanceof DeliveryOrder delivery) {
+            out.writeString(delivery.getDeliveryAddress());
+            out.writeVarInt(delivery.getDuration());
+            out.writeVarInt(delivery.getDriverId());
+        }
+    }
+
+    public static Order readOrder(BinaryInput in) throws IOException {
+        int type = in.readVarInt();
+        int orderId = in.readVarInt();
+        int customerId = in.readVarInt();
+        OrderStatus status = in.readEnum(OrderStatus.values());
+        LocalDateTime orderTime = in.readTimestamp();
+        double totalPrice = in.readDouble();
+        boolean isApproved = in.readBoolean();
+        int count = in.readVarInt();
+        List<OrderLine> lines;
+        if (in.getVersion() < 2) {
+            // Version 1 stored a full Item per portion
+            List<Item> items = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                items.add(readItem(in));
+            }
+            lines = OrderLine.fromItems(items);
+        } else {
+            lines = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                lines.add(readOrderLine(in));
+            }
+        }
+
+        switch (type) {
+            case EAT_IN:
+                return new EatInOrder(orderId, customerId, lines, status, orderTime,
+                        totalPrice, isApproved, in.readVarInt());
+            case TAKEAWAY:
+                return new TakeAwayOrder(orderId, customerId, lines, status, orderTime,
+                        totalPrice, isApproved);
+            case DELIVERY:
+                String address = in.readString();
+                int duration = in.readVarInt();
+                int driverId = in.readVarInt();
+                return new DeliveryOrder(orderId, customerId, lines, status, orderTime,
+                        totalPrice, isApproved, address, duration, driverId);
+            default:
+                throw new IOException("Unknown order type " + type);
+        }
+    }
+
+    public static void writeOrders(BinaryOutput out, Collection<? extends Order> orders)
+            throws IOException {
+        out.writeVarInt(orders.size());
+        for (Order order : orders) {
+            writeOrder(out, order);
+        }
+    }
+
+    public static List<Order> readOrders(BinaryInput in) throws IOException {
+        int count = in.readVarInt();
+        List<Order> orders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            orders.add(readOrder(in));
+        }
+        return orders;
+    }
+
+    // Users
+
+    private static void writeUser(BinaryOutput out, User user) throws IOException {
+        out.writeVarInt(user.getUserId());
+        out.writeString(user.getUsername());
+        out.writeString(user.getPassword());
+        out.writeEnum(user.getRole());
+        out.writeBoolean(user.isActive());
+        out.writeString(user.getFirstName());
+        out.writeString(user.getLastName());
+        out.writeString(user.getEmail());
+        out.writeString(user.getAddress());
+    }
+
+    // Fields that follow the constructor arguments in writeUser
+    private static void readUserDetails(BinaryInput in, User user) throws IOException {
+        user.isActive = in.readBoolean();
+        user.firstName = in.readString();
+        user.lastName = in.readString();
+        user.email = in.readString();
+        user.address = in.readString();
+    }
+
+    @SuppressWarnings("unchecked")
+    public static void writeCustomer(BinaryOutput out, Customer customer) throws IOException {
+        writeUser(out, customer);
+        writeOrders(out, (List<Order>) customer.getOrderHistory());
+    }
+
+    @SuppressWarnings("unchecked")
+    public static Customer readCustomer(BinaryInput in) throws IOException {
+        int userId = in.readVarInt();
+        String username = in.readString();
+        String password = in.readString();
+        UserRole role = in.readEnum(UserRole.values());
+        if (role != UserRole.CUSTOMER) {
+            throw new IOException("Expected a customer record but found " + role);
+        }
+        Customer customer = new Customer(userId, username, password);
+        readUserDetails(in, customer);
+        customer.getOrderHistory().addAll(readOrders(in));
+        return customer;
+    }
+
+    public static void writeCustomers(BinaryOutput out, Collection<Customer> customers)
+            throws IOException {
+        out.writeVarInt(customers.size());
+        for (Customer customer : customers) {
+            writeCustomer(out, customer);
+        }
+    }
+
+    public static List<Customer> readCustomers(BinaryInput in) throws IOException {
+        int count = in.readVarInt();
+        List<Customer> customers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            customers.add(readCustomer(in));
+        }
+        return customers;
+    }
+
+    public static void writeStaff(BinaryOutput out, Staff staff) throws IOException {
+        writeUser(out, staff);
+        out.writeVarInt(staff.getHoursToWork());
+        out.writeVarInt(staff.getTotalWorkedHours());
+    }
+
+    public static Staff readStaff(BinaryInput in) throws IOException {
+        int userId = in.readVarInt();
+        String username = in.readString();
+        String password = in.readString();
+        UserRole role = in.readEnum(UserRole.values());
+
+        // The subclass constructor needs the hours stored after the
+        // common user fields, so read the whole record before creating it
+        boolean isActive = in.readBoolean();
+        String firstName = in.readString();
+        String lastName = in.readString();
+        String email = in.readString();
+        String address = in.readString();
+        int hoursToWork = in.readVarInt();
+        int totalWorkedHours = in.readVarInt();
+
+        Staff staff;
+        switch (role) {
+            case MANAGER:
+                staff = new Manager(userId, username, password, hoursToWork, totalWorkedHours);
+                break;
+            case CHEF:
+                staff = new Chef(userId, username, password, hoursToWork, totalWorkedHours);
+                break;
+            case WAITER:
+                staff = new Waiter(userId, username, password, hoursToWork, totalWorkedHours);
+                break;
+            case DRIVER:
+                staff = new DeliveryDriver(userId, username, password, hoursToWork, totalWorkedHours);
+                break;
+            default:
+                throw new IOException("Unknown staff role " + role);
+        }
+        staff.isActive = isActive;
+        staff.firstName = firstName;
+        staff.lastName = lastName;
+        staff.email = email;
+        staff.address = address;
+        return staff;
+    }
+
+    public static void writeStaffList(BinaryOutput out, Collection<Staff> staffMembers)
+            throws IOException {
+        out.writeVarInt(staffMembers.size());
+        for (Staff staff : staffMembers) {
+            writeStaff(out, staff);
+        }
+    }
+
+    public static List<Staff> readStaffList(BinaryInput in) throws IOException {
+        int count = in.readVarInt();
+        List<Staff> staffMembers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            staffMembers.add(readStaff(in));
+        }
+        return staffMembers;
+    }
+
+    // Bookings
+
+    /**
+     * Writes a table as a detached copy (ID, capacity and status).
+     * Its reservations are not written, which breaks the cycle
+     * between tables and the bookings that reference them.
+     * Bookings no longer embed tables since version 3.
+     */
+    public static void writeTable(BinaryOutput out, Table table) throws IOException {
+        out.writeVarInt(table.getTableId());
+        out.writeVarInt(table.getCapacity());
+        out.writeEnum(table.getStatus());
+    }
+
+    public static Table readTable(BinaryInput in) throws IOException {
+        int tableId = in.readVarInt();
+        int capacity = in.readVarInt();
+        TableStatus status = in.readEnum(TableStatus.values());
+        return new Table(tableId, capacity, status);
+    }
+
+    public static void writeBooking(BinaryOutput out, Booking booking) throws IOException {
+        if (booking instanceof RecurringBooking.Occurrence) {
+            // Occurrences are expanded from their standing booking, never stored
+            throw new IOException("Cannot store an occurrence of standing booking "
+                    + booking.getReservationId());
+        }
+        out.writeVarInt(booking instanceof RecurringBooking ? RECURRING_BOOKING : SINGLE_BOOKING);
+        out.writeVarInt(booking.getReservationId());
+        out.writeVarInt(booking.getCustomerId());
+        out.writeTimestamp(booking.getStartTime());
+        out.writeVarInt(booking.getDuration());
+        out.writeEnum(booking.getStatus());
+        out.writeTimestamp(booking.getCreationTime());
+        out.writeVarInt(booking.getNumberOfGuests());
+        int[] tableIds = booking.getTableIds();
+        out.writeVarInt(tableIds.length);
+        for (int tableId : tableIds) {
+            out.writeVarInt(tableId);
+        }
+        out.writeTimestamp(booking.getSeatedTime());
+        out.writeTimestamp(booking.getClearedTime());
+        if (booking instanceof RecurringBooking) {
+            RecurringBooking series = (RecurringBooking) booking;
+            out.writeVarInt(series.getIntervalWeeks());
+            out.writeBoolean(series.getLastDate() != null);
+            if (series.getLastDate() != null) {
+                out.writeVarLong(series.getLastDate().toEpochDay());
+            }
+            List<LocalDate> exceptions = series.getExceptions();
+            out.writeVarInt(exceptions.size());
+            for (LocalDate date : exceptions) {
+                out.writeVarLong(date.toEpochDay());
+            }
+            List<RecurringBooking.Occurrence> settled = series.getSettledOccurrences();
+            out.writeVarInt(settled.size());
+            for (RecurringBooking.Occurrence occurrence : settled) {
+                out.writeTimestamp(occurrence.getStartTime());
+                out.writeEnum(occurrence.getStatus());
+                out.writeTimestamp(occurrence.getSeatedTime());
+                out.writeTimestamp(occurrence.getClearedTime());
+            }
+        }
+    }
+
+    public static Booking readBooking(BinaryInput in) throws IOException {
+        int type = in.getVersion() < 5 ? SINGLE_BOOKING : in.readVarInt();
+        if (type != SINGLE_BOOKING && type != RECURRING_BOOKING) {
+            throw new IOException("Unknown booking type " + type);
+        }
+        int reservationId = in.readVarInt();
+        int customerId = in.readVarInt();
+        LocalDateTime startTime = in.readTimestamp();
+        int duration = in.readVarInt();
+        ReservationStatus status = in.readEnum(ReservationStatus.values());
+        LocalDateTime creationTime = in.readTimestamp();
+        int numberOfGuests = in.readVarInt();
+
+        Booking booking = new Booking(reservationId, customerId, startTime,
+                duration, numberOfGuests);
+        booking.status = status;
+        booking.creationTime = creationTime;
+        // Only the table IDs are kept; the booking is relinked to the live tables
+        int[] tableIds = new int[in.readVarInt()];
+        for (int i = 0; i < tableIds.length; i++) {
+            tableIds[i] = in.getVersion() < 3 ? readTable(in).getTableId() : in.readVarInt();
+        }
+        booking.setSavedTableIds(tableIds);
+        if (in.getVersion() >= 4) {
+            booking.seatedTime = in.readTimestamp();
+            booking.clearedTime = in.readTimestamp();
+        }
+        if (type == RECURRING_BOOKING) {
+            return readRecurring(in, booking);
+        }
+        return booking;
+    }
+
+    /**
+     * Reads the pattern of a standing booking, whose common fields have
+     * been read into a plain booking.
+     */
+    private static RecurringBooking readRecurring(BinaryInput in, Booking common) throws IOException {
+        int intervalWeeks = in.readVarInt();
+        LocalDate lastDate = in.readBoolean() ? LocalDate.ofEpochDay(in.readVarLong()) : null;
+        RecurringBooking series = new RecurringBooking(common.getReservationId(),
+                common.getCustomerId(), common.getStartTime(), common.getDuration(),
+                common.getNumberOfGuests(), intervalWeeks, lastDate);
+        series.status = common.status;
+        series.creationTime = common.creationTime;
+        series.seatedTime = common.seatedTime;
+        series.clearedTime = common.clearedTime;
+        series.setSavedTableIds(common.getTableIds());
+        int exceptions = in.readVarInt();
+        for (int i = 0; i < exceptions; i++) {
+            series.restoreException(LocalDate.ofEpochDay(in.readVarLong()));
+        }
+        // Occurrences that were seated or have ended, since version 6
+        int settled = in.getVersion() < 6 ? 0 : in.readVarInt();
+        for (int i = 0; i < settled; i++) {
+            LocalDateTime start = in.readTimestamp();
+            ReservationStatus occurrenceStatus = in.readEnum(ReservationStatus.values());
+            series.restoreOccurrence(start, occurrenceStatus, in.readTimestamp(), in.readTimestamp());
+        }
+        return series;
+    }
+
+    public static void writeBookings(BinaryOutput out, Collection<Booking> bookings)
+            throws IOException {
+        out.writeVarInt(bookings.size());
+        for (Booking booking : bookings) {
+            writeBooking(out, booking);
+        }
+    }
+
+    public static List<Booking> readBookings(BinaryInput in) throws IOException {
+        int count = in.readVarInt();
+        List<Booking> bookings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            bookings.add(readBooking(in));
+        }
+        return bookings;
+    }
+
+    // Menu
+
+    public static void writeMenu(BinaryOutput out, Menu menu) throws IOException {
+        List<Item> items = menu.getItems();
+        out.writeVarInt(items.size());
+        for (Item item : items) {
+            writeItem(out, item);
+        }
+        Item dailySpecial = menu.getDailySpecial();
+        out.writeBoolean(dailySpecial != null);
+        if (dailySpecial != null) {
+            writeItem(out, dailySpecial);
+        }
+    }
+
+    public static Menu readMenu(BinaryInput in) throws IOException {
+        int count = in.readVarInt();
+        List<Item> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            items.add(readItem(in));
+        }
+        Item dailySpecial = null;
+        if (in.readBoolean()) {
+            Item saved = readItem(in);
+            // Share the menu's instance when the special is on the menu
+            dailySpecial = items.stream()
+                    .filter(item -> item.getItemID() == saved.getItemID())
+                    .findFirst()
+                    .orElse(saved);
+        }
+
+        Menu menu = new Menu();
+        menu.restore(items, dailySpecial);
+        return menu;
+    }
+}
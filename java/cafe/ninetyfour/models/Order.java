@@ -1,7 +1,10 @@
 package cafe.ninetyfour.models;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 import cafe.ninetyfour.enums.OrderStatus;
@@ -11,12 +14,15 @@ import cafe.ninetyfour.services.CustomerService;
  * Abstract base class representing an order in the cafe system.
  * Provides common functionality for all order types
  * (eat-in, takeaway, delivery).
+ * Ordered items are kept as {@link OrderLine}s referencing the menu by
+ * item ID; {@link #getItems(Menu)} resolves them when needed.
  */
 public abstract class Order implements Serializable {
     private static final long serialVersionUID = 1L;
     protected  int orderId;
     protected final int customerId;
-    protected final List<Item> items;
+    // Not final so readObject can convert orders serialized with Item copies
+    protected List<OrderLine> lines;
     protected OrderStatus status;
     protected final LocalDateTime orderTime;
     protected final double totalPrice;
@@ -33,22 +39,38 @@ public abstract class Order implements Serializable {
     public Order(int customerId, List<Item> items) {
         this.orderId = -1; // Default value, will be set later
         this.customerId = customerId;
-        this.items = List.copyOf(items); // Defensive copy
+        this.lines = List.copyOf(OrderLine.fromItems(items));
         this.status = OrderStatus.PENDING;
         this.orderTime = LocalDateTime.now();
         this.totalPrice = calculateTotal();
         this.isApproved = false;
     }
 
+    /**
+     * Restores a saved order exactly as it was persisted.
+     * Used by ModelCodec.
+     */
+    protected Order(int orderId, int customerId, List<OrderLine> lines,
+                    OrderStatus status, LocalDateTime orderTime,
+                    double totalPrice, boolean isApproved) {
+        this.orderId = orderId;
+        this.customerId = customerId;
+        this.lines = List.copyOf(lines);
+        this.status = status;
+        this.orderTime = orderTime;
+        this.totalPrice = totalPrice;
+        this.isApproved = isApproved;
+    }
+
 
     /**
      * Calculates the total price of all items in the order.
      *
-     * @return the sum of all item prices
+     * @return the sum of all line totals
      */
     public double calculateTotal() {
-        return items.stream()
-                .mapToDouble(Item::getPrice)
+        return lines.stream()
+                .mapToDouble(OrderLine::getLineTotal)
                 .sum();
     }
 
@@ -120,12 +142,32 @@ public abstract class Order implements Serializable {
     }
 
     /**
-     * Retrieves the list of items in the order.
+     * Retrieves the order lines.
+     *
+     * @return an unmodifiable list of order lines
+     */
+    public List<OrderLine> getLines() {
+        return lines;
+    }
+
+    /**
+     * Resolves the order lines against a menu, repeating each item once
+     * per portion. Lines whose item is no longer on the menu are skipped.
      *
-     * @return an unmodifiable list of items
+     * @param menu the menu to look the items up in
+     * @return the ordered items
      */
-    public List<Item> getItems() {
-        return items;
+    public List<Item> getItems(Menu menu) {
+        List<Item> resolved = new ArrayList<>();
+        for (OrderLine line : lines) {
+            Item item = menu.getItemByID(line.getItemId());
+            if (item != null) {
+                for (int i = 0; i < line.getQuantity(); i++) {
+                    resolved.add(item);
+                }
+            }
+        }
+        return resolved;
     }
 
     /**
@@ -159,6 +201,38 @@ public abstract class Order implements Serializable {
         this.orderId = orderId;
     }
 
+    /**
+     * Reads an order serialized with Java serialization. Orders written
+     * before order lines existed hold a list of Item copies, which is
+     * converted into lines.
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        orderId = fields.get("orderId", -1);
+        status = (OrderStatus) fields.get("status", null);
+        isApproved = fields.get("isApproved", false);
+        List<OrderLine> savedLines = (List<OrderLine>) fields.get("lines", null);
+        if (savedLines == null) {
+            List<Item> items = (List<Item>) fields.get("items", null);
+            savedLines = items == null ? List.of() : OrderLine.fromItems(items);
+        }
+        lines = List.copyOf(savedLines);
+        setFinalField("customerId", fields.get("customerId", 0));
+        setFinalField("orderTime", fields.get("orderTime", null));
+        setFinalField("totalPrice", fields.get("totalPrice", 0.0));
+    }
+
+    private void setFinalField(String name, Object value) throws IOException {
+        try {
+            java.lang.reflect.Field field = Order.class.getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(this, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IOException("Cannot restore order field " + name, e);
+        }
+    }
+
     /**
      * Abstract method for order-specific processing logic.
      * Must be implemented by concrete order types.
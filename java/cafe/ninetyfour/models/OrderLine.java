@@ -0,0 +1,80 @@
+package cafe.ninetyfour.models;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents one line of an order: a menu item referenced by its ID,
+ * how many were ordered and the unit price at the time of ordering.
+ * Orders keep lines rather than Item copies, so a dish ordered thousands
+ * of times is still one Item on the Menu.
+ */
+public final class OrderLine implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final int itemId;
+    private final int quantity;
+    private final double unitPrice;
+
+    /**
+     * Constructs an order line.
+     *
+     * @param itemId    the ID of the ordered menu item
+     * @param quantity  the number of portions (must be positive)
+     * @param unitPrice the price of one portion when the order was placed
+     * @throws IllegalArgumentException if the quantity is not positive
+     */
+    public OrderLine(int itemId, int quantity, double unitPrice) {
+        if (quantity <= 0) throw new IllegalArgumentException
+                ("Quantity must be positive");
+        this.itemId = itemId;
+        this.quantity = quantity;
+        this.unitPrice = unitPrice;
+    }
+
+    /**
+     * Groups a list of items into order lines, one per distinct item ID,
+     * in the order each item first appears.
+     *
+     * @param items the ordered items, with repeats for multiple portions
+     * @return the order lines
+     */
+    public static List<OrderLine> fromItems(List<Item> items) {
+        Map<Integer, int[]> quantities = new LinkedHashMap<>();
+        Map<Integer, Double> prices = new LinkedHashMap<>();
+        for (Item item : items) {
+            quantities.computeIfAbsent(item.getItemID(), id -> new int[1])[0]++;
+            prices.putIfAbsent(item.getItemID(), item.getPrice());
+        }
+        List<OrderLine> lines = new ArrayList<>(quantities.size());
+        quantities.forEach((itemId, quantity) ->
+                lines.add(new OrderLine(itemId, quantity[0], prices.get(itemId))));
+        return lines;
+    }
+
+    public int getItemId() {
+        return itemId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public double getUnitPrice() {
+        return unitPrice;
+    }
+
+    /**
+     * @return the unit price multiplied by the quantity
+     */
+    public double getLineTotal() {
+        return unitPrice * quantity;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%dx item #%d @ $%.2f", quantity, itemId, unitPrice);
+    }
+}
@@ -0,0 +1,508 @@
+package cafe.ninetyfour.models;
+
+import cafe.ninetyfour.enums.ReservationStatus;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.logging.Logger;
+
+/**
+ * Represents a standing booking, e.g. the same table every Friday at 7pm.
+ * The booking is stored once: its start time is the first occurrence and
+ * the others follow every few weeks until an optional last date, except
+ * on the dates given as exceptions.
+ * <p>
+ * The standing tables hold the booking as a pattern, not as a reservation
+ * per date. Only the occurrences within the availability horizon are
+ * expanded into concrete {@link Occurrence} bookings on the tables, so
+ * they can be seated, cleared and swept like any other booking; the
+ * tables check the dates beyond the expanded ones against the pattern.
+ * Occurrences that were seated or have ended are stored with the booking,
+ * so expanding them again after a restart keeps their state.
+ */
+public class RecurringBooking extends Booking {
+    private static final long serialVersionUID = 1L;
+    private static final Logger logger = Logger.getLogger(RecurringBooking.class.getName());
+
+    // How far ahead two standing bookings are compared for a clash
+    private static final int CLASH_CHECK_WEEKS = 52;
+
+    private final int intervalWeeks;
+    // The last date an occurrence may fall on; null if open-ended
+    private final LocalDate lastDate;
+    private final NavigableSet<LocalDate> exceptions = new ConcurrentSkipListSet<>();
+    // Occurrences expanded onto the tables, by start time
+    private transient NavigableMap<LocalDateTime, Occurrence> occurrences = new ConcurrentSkipListMap<>();
+    // Occurrences starting before this have been expanded; null if none have
+    private transient volatile LocalDateTime expandedUntil;
+    // Occurrences that were seated or have ended, kept for the next expansion
+    private transient NavigableMap<LocalDateTime, Occurrence> settled = new ConcurrentSkipListMap<>();
+
+    /**
+     * One date of a standing booking, put on the standing tables like a
+     * single booking. It shares the standing booking's ID.
+     */
+    public static final class Occurrence extends Booking {
+        private static final long serialVersionUID = 1L;
+
+        private final RecurringBooking series;
+
+        private Occurrence(RecurringBooking series, LocalDateTime startTime) {
+            super(series.reservationId, series.customerId, startTime,
+                    series.duration, series.getNumberOfGuests());
+            this.series = series;
+            this.status = series.status;
+            this.creationTime = series.creationTime;
+        }
+
+        /**
+         * @return the standing booking this is a date of
+         */
+        public RecurringBooking getSeries() {
+            return series;
+        }
+
+        /**
+         * Cancels this date only, making it an exception of the standing booking.
+         */
+        @Override
+        public void cancel() {
+            series.addException(startTime.toLocalDate());
+            if (isActive()) {
+                release();
+            }
+        }
+
+        private void release() {
+            super.cancel();
+        }
+
+        /**
+         * Puts the occurrence on a standing table; the standing booking has
+         * already checked the table's capacity.
+         */
+        private boolean attach(Table table) {
+            if (tables.contains(table) || !table.assignToReservation(this)) {
+                return false;
+            }
+            tables.add(table);
+            return true;
+        }
+    }
+
+    /**
+     * Constructs a standing booking.
+     *
+     * @param customerId     the ID of the customer making the booking
+     * @param firstStart     the start of the first occurrence
+     * @param duration       the duration of each occurrence in minutes
+     * @param numberOfGuests the number of guests
+     * @param intervalWeeks  the number of weeks between occurrences
+     * @param lastDate       the last date an occurrence may fall on, or null if open-ended
+     * @throws IllegalArgumentException if the duration, guest count or
+     *                                  interval is not positive, an occurrence would not end before the
+     *                                  next one starts, or the last date is before the first
+     */
+    public RecurringBooking(int customerId, LocalDateTime firstStart, int duration,
+                            int numberOfGuests, int intervalWeeks, LocalDate lastDate) {
+        super(customerId, firstStart, duration, numberOfGuests);
+        validate(firstStart, duration, numberOfGuests, intervalWeeks, lastDate);
+        this.intervalWeeks = intervalWeeks;
+        this.lastDate = lastDate;
+    }
+
+    /**
+     * Restores a saved standing booking. Used by ModelCodec.
+     */
+    RecurringBooking(int reservationId, int customerId, LocalDateTime firstStart, int duration,
+                     int numberOfGuests, int intervalWeeks, LocalDate lastDate) {
+        super(reservationId, customerId, firstStart, duration, numberOfGuests);
+        this.intervalWeeks = intervalWeeks;
+        this.lastDate = lastDate;
+    }
+
+    private static void validate(LocalDateTime firstStart, int duration, int numberOfGuests,
+                                 int intervalWeeks, LocalDate lastDate) {
+        if (numberOfGuests <= 0) throw new IllegalArgumentException
+                ("Number of guests must be positive");
+        if (intervalWeeks <= 0) throw new IllegalArgumentException
+                ("Interval must be at least one week");
+        if (duration <= 0 || duration >= intervalWeeks * 7L * 24 * 60) throw new IllegalArgumentException
+                ("Each occurrence must end before the next one starts");
+        if (lastDate != null && lastDate.isBefore(firstStart.toLocalDate())) throw new IllegalArgumentException
+                ("Last date is before the first occurrence");
+    }
+
+    /**
+     * Puts the standing booking on a table for every date, after checking
+     * capacity and that the table is free on all of them: no booking on
+     * its schedule and no other standing booking on it may clash. The
+     * occurrences already expanded are put on the table too.
+     *
+     * @param table the table to assign
+     * @return true if the table was assigned
+     * @throws IllegalArgumentException if table capacity is insufficient
+     */
+    @Override
+    public boolean addTable(Table table) {
+        if (getSeats() + table.getCapacity() < getNumberOfGuests()) {
+            throw new IllegalArgumentException(
+                    String.format("Table %d (%d seats) too small for %d guests",
+                            table.getTableId(), table.getCapacity(), getNumberOfGuests()));
+        }
+        if (!table.addRecurring(this)) {
+            return false;
+        }
+        tables.add(table);
+        for (Occurrence occurrence : occurrences.values()) {
+            if (occurrence.isActive() && !occurrence.attach(table)) {
+                warnTaken(table, occurrence);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Assigns a combination of tables, all or none.
+     *
+     * @param combination the tables to assign
+     * @return true if every table was assigned
+     * @throws IllegalArgumentException if the tables together are too small
+     */
+    @Override
+    public boolean addTables(List<Table> combination) {
+        int seats = getSeats();
+        for (Table table : combination) {
+            seats += table.getCapacity();
+        }
+        if (seats < getNumberOfGuests()) {
+            throw new IllegalArgumentException(
+                    String.format("Tables %s (%d seats) too small for %d guests",
+                            combination, seats, getNumberOfGuests()));
+        }
+        if (!Table.addAllRecurring(combination, this)) {
+            return false;
+        }
+        List<Table> assigned = Table.lockOrder(combination);
+        tables.addAll(assigned);
+        for (Occurrence occurrence : occurrences.values()) {
+            for (Table table : assigned) {
+                if (occurrence.isActive() && !occurrence.attach(table)) {
+                    warnTaken(table, occurrence);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void warnTaken(Table table, Occurrence occurrence) {
+        logger.warning("Table " + table.getTableId() + " is taken on "
+                + occurrence.getStartTime().toLocalDate() + " for standing booking " + reservationId);
+    }
+
+    /**
+     * Approves the standing booking and every expanded occurrence.
+     *
+     * @return true if approval was successful
+     */
+    @Override
+    public boolean approve() {
+        if (!super.approve()) {
+            return false;
+        }
+        for (Occurrence occurrence : occurrences.values()) {
+            if (occurrence.getStatus() == ReservationStatus.PENDING) {
+                occurrence.status = ReservationStatus.APPROVED;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Cancels every future date and releases the standing tables.
+     */
+    @Override
+    public void cancel() {
+        for (Table table : tables) {
+            table.removeRecurring(this);
+        }
+        for (Occurrence occurrence : occurrences.values()) {
+            if (occurrence.isActive()) {
+                occurrence.release();
+            }
+        }
+        occurrences.clear();
+        tables.clear();
+        status = ReservationStatus.CANCELLED;
+        notifyCustomer("Your standing booking (ID: " + reservationId + ") has been cancelled");
+    }
+
+    /**
+     * Skips one date, taking its occurrence off the tables if it has been
+     * expanded already.
+     *
+     * @param date the date to skip
+     * @return true if the date was not an exception yet
+     */
+    public boolean addException(LocalDate date) {
+        if (!exceptions.add(date)) {
+            return false;
+        }
+        Occurrence occurrence = occurrences.remove(date.atTime(startTime.toLocalTime()));
+        if (occurrence != null && occurrence.isActive()) {
+            occurrence.release();
+        }
+        return true;
+    }
+
+    /**
+     * Restores a skipped date. Used by ModelCodec.
+     */
+    void restoreException(LocalDate date) {
+        exceptions.add(date);
+    }
+
+    /**
+     * Returns the start times of the occurrences in a period, skipping the
+     * exceptions. Only the dates are computed; nothing is expanded.
+     *
+     * @param from the start of the period
+     * @param to   the end of the period (occurrences start before it)
+     * @return the start times in ascending order
+     */
+    public List<LocalDateTime> getOccurrenceStarts(LocalDateTime from, LocalDateTime to) {
+        List<LocalDateTime> starts = new ArrayList<>();
+        for (LocalDateTime start = firstStartAtOrAfter(from); start.isBefore(to)
+                && (lastDate == null || !start.toLocalDate().isAfter(lastDate));
+             start = start.plusWeeks(intervalWeeks)) {
+            if (!exceptions.contains(start.toLocalDate())) {
+                starts.add(start);
+            }
+        }
+        return starts;
+    }
+
+    private LocalDateTime firstStartAtOrAfter(LocalDateTime time) {
+        if (!time.isAfter(startTime)) {
+            return startTime;
+        }
+        long periodSeconds = intervalWeeks * 7L * 24 * 60 * 60;
+        long seconds = Duration.between(startTime, time).toSeconds();
+        long periods = (seconds + periodSeconds - 1) / periodSeconds;
+        LocalDateTime start = startTime.plusWeeks(periods * intervalWeeks);
+        // Sub-second times round down above, so step once more if needed
+        return start.isBefore(time) ? start.plusWeeks(intervalWeeks) : start;
+    }
+
+    /**
+     * Checks if an occurrence that has not been expanded overlaps a
+     * period. Expanded occurrences are on the tables' schedules instead.
+     *
+     * @param start the start of the period
+     * @param end   the end of the period
+     * @return true if an occurrence not yet expanded overlaps it
+     */
+    public boolean overlapsUnexpanded(LocalDateTime start, LocalDateTime end) {
+        LocalDateTime expanded = expandedUntil;
+        LocalDateTime from = start.minusMinutes(duration);
+        if (expanded != null && from.isBefore(expanded)) {
+            from = expanded;
+        }
+        for (LocalDateTime occurrence : getOccurrenceStarts(from, end)) {
+            if (occurrence.plusMinutes(duration).isAfter(start)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if any date of this standing booking, expanded or not, clashes
+     * with a period.
+     */
+    boolean clashesWith(LocalDateTime start, LocalDateTime end) {
+        LocalDateTime from = start.minusMinutes(duration);
+        for (LocalDateTime occurrence : getOccurrenceStarts(from, end)) {
+            if (occurrence.plusMinutes(duration).isAfter(start)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if another standing booking clashes with this one on any date
+     * of the coming year, from the later of their first dates.
+     */
+    boolean clashesWith(RecurringBooking other) {
+        LocalDateTime from = startTime.isAfter(other.startTime) ? startTime : other.startTime;
+        LocalDateTime today = LocalDate.now().atStartOfDay();
+        if (from.isBefore(today)) {
+            from = today;
+        }
+        for (LocalDateTime start : getOccurrenceStarts(from, from.plusWeeks(CLASH_CHECK_WEEKS))) {
+            if (other.clashesWith(start, start.plusMinutes(duration))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates the occurrences starting in a period that have not been
+     * expanded yet, e.g. as the availability horizon moves on by a day.
+     * An occurrence that was seated or has ended is taken up with its
+     * state. The caller puts the active ones on the standing tables, and
+     * seats them again if their party was seated.
+     *
+     * @param from  the earliest start to expand, used the first time only
+     * @param until the end of the period
+     * @return the new active occurrences, in start order
+     */
+    public List<Occurrence> expandUntil(LocalDateTime from, LocalDateTime until) {
+        LocalDateTime expanded = expandedUntil;
+        if (expanded != null) {
+            from = expanded;
+        }
+        if (!until.isAfter(from)) {
+            return List.of();
+        }
+        List<Occurrence> created = new ArrayList<>();
+        for (LocalDateTime start : getOccurrenceStarts(from, until)) {
+            Occurrence occurrence = settled.remove(start);
+            if (occurrence == null) {
+                occurrence = new Occurrence(this, start);
+            }
+            occurrences.put(start, occurrence);
+            // An occurrence that has ended no longer holds its tables
+            if (occurrence.isActive()) {
+                created.add(occurrence);
+            }
+        }
+        // From now on the tables check these dates on their schedules
+        expandedUntil = until;
+        return created;
+    }
+
+    /**
+     * Forgets the expanded occurrences, e.g. when the tables' schedules are
+     * rebuilt, so they are expanded again from scratch. Occurrences that
+     * were seated or have ended are kept for the next expansion.
+     */
+    public void resetExpansion() {
+        for (Occurrence occurrence : occurrences.values()) {
+            if (isSettled(occurrence)) {
+                occurrence.tables.clear();
+                settled.put(occurrence.getStartTime(), occurrence);
+            }
+        }
+        occurrences.clear();
+        expandedUntil = null;
+    }
+
+    private static boolean isSettled(Occurrence occurrence) {
+        return occurrence.getSeatedTime() != null
+                || (!occurrence.isActive() && occurrence.getStatus() != ReservationStatus.CANCELLED);
+    }
+
+    /**
+     * @return the occurrences that were seated or have ended, expanded or
+     *         not, in start order. Used by ModelCodec.
+     */
+    List<Occurrence> getSettledOccurrences() {
+        NavigableMap<LocalDateTime, Occurrence> found = new java.util.TreeMap<>(settled);
+        for (Occurrence occurrence : occurrences.values()) {
+            if (isSettled(occurrence)) {
+                found.put(occurrence.getStartTime(), occurrence);
+            }
+        }
+        return new ArrayList<>(found.values());
+    }
+
+    /**
+     * Restores the state of an occurrence that was seated or has ended.
+     * Used by ModelCodec.
+     */
+    void restoreOccurrence(LocalDateTime start, ReservationStatus status,
+                           LocalDateTime seatedTime, LocalDateTime clearedTime) {
+        Occurrence occurrence = new Occurrence(this, start);
+        occurrence.status = status;
+        occurrence.seatedTime = seatedTime;
+        occurrence.clearedTime = clearedTime;
+        settled.put(start, occurrence);
+    }
+
+    /**
+     * Drops expanded occurrences that started before a time, once they are
+     * of no more use.
+     *
+     * @param time the cut-off
+     */
+    public void forgetOccurrencesBefore(LocalDateTime time) {
+        occurrences.headMap(time).clear();
+        settled.headMap(time).clear();
+    }
+
+    /**
+     * @return the expanded occurrences, in start order
+     */
+    public Collection<Occurrence> getOccurrences() {
+        return new ArrayList<>(occurrences.values());
+    }
+
+    /**
+     * @param date a date
+     * @return the expanded occurrence on that date, or null if there is none
+     */
+    public Occurrence getOccurrence(LocalDate date) {
+        return occurrences.get(date.atTime(startTime.toLocalTime()));
+    }
+
+    /**
+     * @return the end of the expanded period, or null if nothing is expanded
+     */
+    public LocalDateTime getExpandedUntil() {
+        return expandedUntil;
+    }
+
+    public int getIntervalWeeks() {
+        return intervalWeeks;
+    }
+
+    /**
+     * @return the last date an occurrence may fall on, or null if open-ended
+     */
+    public LocalDate getLastDate() {
+        return lastDate;
+    }
+
+    /**
+     * @return the skipped dates, in order
+     */
+    public List<LocalDate> getExceptions() {
+        return new ArrayList<>(exceptions);
+    }
+
+    private void readObject(java.io.ObjectInputStream in)
+            throws java.io.IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        occurrences = new ConcurrentSkipListMap<>();
+        settled = new ConcurrentSkipListMap<>();
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() +
+                "\nEvery " + intervalWeeks + " week(s)" +
+                (lastDate != null ? " until " + lastDate : "") +
+                "\nExceptions: " + exceptions;
+    }
+}
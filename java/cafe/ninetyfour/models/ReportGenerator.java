@@ -1,9 +1,11 @@
 package cafe.ninetyfour.models;
 
 import java.io.Serializable;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 import cafe.ninetyfour.services.OrderService;
 import cafe.ninetyfour.services.StaffService;
@@ -13,12 +15,17 @@ import cafe.ninetyfour.enums.ReportType;
 /**
  * ReportGenerator class is responsible for generating various reports
  * based on the data from OrderService, StaffService, and CustomerService.
+ * Order reports stream through the order partitions one at a time
+ * rather than loading the whole order history, and reports over a time
+ * window only read the days in that window.
  */
 public class ReportGenerator implements Serializable {
     private static final long serialVersionUID = 1L;
     private final OrderService orderService;
     private final StaffService staffService;
     private final CustomerService customerService;
+    // Resolves the item IDs of order lines; loaded on first use if not given
+    private transient Menu menu;
 
     /**
      * Constructs a new ReportGenerator with required services.
@@ -36,24 +43,57 @@ public class ReportGenerator implements Serializable {
         this.customerService = Objects.requireNonNull(customerService);
     }
 
+    /**
+     * Constructs a new ReportGenerator that resolves ordered items
+     * against the given menu.
+     *
+     * @param orderService service for order data access
+     * @param staffService service for staff data access
+     * @param customerService service for customer data access
+     * @param menu the menu the orders were placed from
+     * @throws NullPointerException if any argument is null
+     */
+    public ReportGenerator(OrderService orderService,
+                           StaffService staffService,
+                           CustomerService customerService,
+                           Menu menu) {
+        this(orderService, staffService, customerService);
+        this.menu = Objects.requireNonNull(menu);
+    }
+
     /**
      * Generates a report based on the specified report type.
      *
      * @param reportType the type of report to generate
      */
     public void generateReport(ReportType reportType) {
+        generateReport(reportType, null, null);
+    }
+
+    /**
+     * Generates a report over the orders placed in a time window.
+     * Staff reports are not windowed.
+     *
+     * @param reportType the type of report to generate
+     * @param start the start of the window (inclusive), or null for all orders
+     * @param end the end of the window (exclusive), or null for all orders
+     */
+    public void generateReport(ReportType reportType, LocalDateTime start, LocalDateTime end) {
+        Consumer<Consumer<Order>> orders = start == null || end == null
+                ? orderService::forEachOrder
+                : action -> orderService.ordersBetween(start, end).forEachRemaining(action);
         switch (reportType) {
             case BUSIEST_PERIOD:
-                System.out.println("Busiest Hour: " + findBusiestHour());
+                System.out.println("Busiest Hour: " + findBusiestHour(orders));
                 break;
             case POPULAR_ITEM:
-                System.out.println("Most Popular: " + findPopularItem());
+                System.out.println("Most Popular: " + findPopularItem(orders));
                 break;
             case HIGHEST_WORKING_HOURS:
                 System.out.println("Top Worker Hours: " + findTopWorkerHours());
                 break;
             case MOST_ACTIVE_CUSTOMER:
-                System.out.println("Most Active: " + findMostActiveCustomer());
+                System.out.println("Most Active: " + findMostActiveCustomer(orders));
                 break;
             default:
                 System.out.println("Invalid report type");
@@ -62,15 +102,14 @@ public class ReportGenerator implements Serializable {
 
     /**
      * Finds the cafe's busiest hour based on order volume.
+     * @param orders passes the orders to report on to an action
      * @return the LocalTime representing the busiest hour
      */
-    private LocalTime findBusiestHour() {
-        return orderService.getAllOrders().stream()
-                .collect(Collectors.groupingBy(
-                        order -> order.getOrderTime().toLocalTime().withMinute(0),
-                        Collectors.counting()
-                ))
-                .entrySet().stream()
+    private LocalTime findBusiestHour(Consumer<Consumer<Order>> orders) {
+        Map<LocalTime, Long> hourCounts = new HashMap<>();
+        orders.accept(order -> hourCounts.merge(
+                order.getOrderTime().toLocalTime().truncatedTo(ChronoUnit.HOURS), 1L, Long::sum));
+        return hourCounts.entrySet().stream()
                 .max(Map.Entry.comparingByValue())
                 .map(Map.Entry::getKey)
                 .orElse(null);
@@ -80,21 +119,27 @@ public class ReportGenerator implements Serializable {
 
     /**
      * Finds the most popular menu item based on order frequency.
+     * @param orders passes the orders to report on to an action
      * @return the most ordered Item
      */
-    private Item findPopularItem() {
-        return orderService.getAllOrders().stream()
-                .flatMap(order -> order.getItems().stream())
-                .collect(Collectors.groupingBy(
-                        item -> item,
-                        Collectors.counting()
-                ))
-                .entrySet().stream()
+    private Item findPopularItem(Consumer<Consumer<Order>> orders) {
+        Map<Integer, Long> itemCounts = new HashMap<>();
+        orders.accept(order -> order.getLines()
+                .forEach(line -> itemCounts.merge(line.getItemId(),
+                        (long) line.getQuantity(), Long::sum)));
+        return itemCounts.entrySet().stream()
                 .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
+                .map(entry -> getMenu().getItemByID(entry.getKey()))
                 .orElse(null);
     }
 
+    private Menu getMenu() {
+        if (menu == null) {
+            menu = Menu.loadFromFile();
+        }
+        return menu;
+    }
+
 
     /**
      * Finds the staff member with the highest total worked hours.
@@ -111,15 +156,14 @@ public class ReportGenerator implements Serializable {
 
     /**
      * Finds the most active customer based on order count.
+     * @param orders passes the orders to report on to an action
      * @return the Customer with the most orders
      */
 
-    private Customer findMostActiveCustomer() {
-        Map<Integer, Long> customerOrderCounts = orderService.getAllOrders().stream()
-                .collect(Collectors.groupingBy(
-                        Order::getCustomerId,
-                        Collectors.counting()
-                ));
+    private Customer findMostActiveCustomer(Consumer<Consumer<Order>> orders) {
+        Map<Integer, Long> customerOrderCounts = new HashMap<>();
+        orders.accept(order ->
+                customerOrderCounts.merge(order.getCustomerId(), 1L, Long::sum));
 
         return customerOrderCounts.entrySet().stream()
                 .max(Map.Entry.comparingByValue())
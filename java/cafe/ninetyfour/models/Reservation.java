@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import cafe.ninetyfour.enums.ReservationStatus;
 
@@ -21,9 +22,15 @@ public abstract class Reservation implements Serializable {
     protected LocalDateTime startTime;
     // Duration in minutes
     protected int duration;
+    // Read far more often than changed, and changed by several threads at once
     protected List<Table> tables;
     protected ReservationStatus status;
     protected LocalDateTime creationTime;
+    // When the party was actually seated and left; null until then
+    protected LocalDateTime seatedTime;
+    protected LocalDateTime clearedTime;
+    // Table IDs of a restored reservation, until it is relinked to the live tables
+    private transient int[] savedTableIds;
 
 
     /**
@@ -36,14 +43,38 @@ public abstract class Reservation implements Serializable {
      */
     public Reservation(int customerId, LocalDateTime startTime, int duration) {
         this.creationTime = LocalDateTime.now();
-        this.reservationId = nextReservationId++;
+        this.reservationId = allocateReservationId();
         this.customerId = customerId;
         this.startTime = startTime;
         this.duration = duration;
-        this.tables = new ArrayList<>();
+        this.tables = new CopyOnWriteArrayList<>();
         this.status = ReservationStatus.PENDING;
     }
 
+    /**
+     * Restores a saved reservation with its original ID.
+     * Used by ModelCodec; keeps the ID counter ahead of every restored ID.
+     */
+    protected Reservation(int reservationId, int customerId,
+                          LocalDateTime startTime, int duration) {
+        this.reservationId = reservationId;
+        this.customerId = customerId;
+        this.startTime = startTime;
+        this.duration = duration;
+        this.tables = new CopyOnWriteArrayList<>();
+        this.status = ReservationStatus.PENDING;
+        reserveReservationId(reservationId);
+    }
+
+    // Reservations may be restored while other services start up in parallel
+    private static synchronized int allocateReservationId() {
+        return nextReservationId++;
+    }
+
+    private static synchronized void reserveReservationId(int usedId) {
+        nextReservationId = Math.max(nextReservationId, usedId + 1);
+    }
+
     /**
      * Abstract method to approve the reservation.
      *
@@ -73,6 +104,137 @@ public abstract class Reservation implements Serializable {
         return false;
     }
 
+    /**
+     * Assigns a combination of tables to this reservation, all or none:
+     * the tables are locked together while they are checked and assigned,
+     * so a concurrent reservation can neither take one of them half way
+     * nor see this one on only some of them.
+     *
+     * @param combination the tables to assign
+     * @return true if every table was assigned
+     */
+    public boolean addTables(List<Table> combination) {
+        if (!Table.assignAll(combination, this)) {
+            return false;
+        }
+        tables.addAll(Table.lockOrder(combination));
+        return true;
+    }
+
+
+    /**
+     * Records the IDs of the tables of a restored reservation. Used by ModelCodec.
+     */
+    void setSavedTableIds(int[] tableIds) {
+        this.savedTableIds = tableIds;
+    }
+
+    /**
+     * @return the IDs of the assigned tables, or of the saved tables if a
+     *         restored reservation has not been relinked yet
+     */
+    public int[] getTableIds() {
+        if (savedTableIds != null) {
+            return savedTableIds.clone();
+        }
+        int[] tableIds = new int[tables.size()];
+        for (int i = 0; i < tableIds.length; i++) {
+            tableIds[i] = tables.get(i).getTableId();
+        }
+        return tableIds;
+    }
+
+    /**
+     * Links a restored reservation to the live tables, replacing the saved
+     * table IDs or detached table copies. The tables' schedules are not
+     * changed; TableManager rebuilds them from all reservations at once.
+     *
+     * @param liveTables the tables the reservation holds
+     */
+    public void restoreTables(List<Table> liveTables) {
+        savedTableIds = null;
+        tables.clear();
+        tables.addAll(liveTables);
+    }
+
+    /**
+     * @return true if the reservation is pending or approved, i.e. it has
+     *         neither been cancelled nor ended
+     */
+    public boolean isActive() {
+        return status == ReservationStatus.PENDING || status == ReservationStatus.APPROVED;
+    }
+
+    /**
+     * Records that the party has been seated and marks its tables occupied.
+     *
+     * @param time when the party was seated
+     * @return true if the reservation was active and not seated yet
+     */
+    public boolean seat(LocalDateTime time) {
+        synchronized (this) {
+            if (!isActive() || seatedTime != null) {
+                return false;
+            }
+            seatedTime = time;
+        }
+        for (Table table : new ArrayList<>(tables)) {
+            table.seat(this);
+        }
+        return true;
+    }
+
+    /**
+     * Records that the party has left, marks the reservation COMPLETED and
+     * takes it off its tables' schedules, so the tables are free for the
+     * rest of the reserved period. The tables stay assigned for history.
+     *
+     * @param time when the tables were cleared
+     * @return true if the party was seated and had not left yet
+     */
+    public boolean clear(LocalDateTime time) {
+        synchronized (this) {
+            if (!isActive() || seatedTime == null || clearedTime != null) {
+                return false;
+            }
+            clearedTime = time;
+            status = ReservationStatus.COMPLETED;
+        }
+        for (Table table : new ArrayList<>(tables)) {
+            table.removeReservation(this);
+        }
+        return true;
+    }
+
+    /**
+     * Ends a reservation whose end time has passed: takes it off its
+     * tables' schedules and marks it COMPLETED if the party was seated,
+     * NO_SHOW if it was approved but the party never came, or EXPIRED if
+     * it was never approved. The tables stay assigned for history.
+     *
+     * @return the number of tables it was taken off, or -1 if it was
+     *         not active
+     */
+    public int expire() {
+        synchronized (this) {
+            if (!isActive()) {
+                return -1;
+            }
+            if (seatedTime != null) {
+                status = ReservationStatus.COMPLETED;
+            } else {
+                status = status == ReservationStatus.APPROVED
+                        ? ReservationStatus.NO_SHOW : ReservationStatus.EXPIRED;
+            }
+        }
+        int reclaimed = 0;
+        for (Table table : new ArrayList<>(tables)) {
+            if (table.removeReservation(this)) {
+                reclaimed++;
+            }
+        }
+        return reclaimed;
+    }
 
     /**
      * Sends a notification message to the customer.
@@ -83,7 +245,7 @@ public abstract class Reservation implements Serializable {
         System.out.println("Notification to customer " + customerId + ": " + message);
     }
 
-    public static void setNextReservationId(int id) {
+    public static synchronized void setNextReservationId(int id) {
         nextReservationId = id;
     }
 
@@ -130,6 +292,24 @@ public abstract class Reservation implements Serializable {
         return status;
     }
 
+    public LocalDateTime getCreationTime() {
+        return creationTime;
+    }
+
+    /**
+     * @return when the party was seated, or null if it has not been
+     */
+    public LocalDateTime getSeatedTime() {
+        return seatedTime;
+    }
+
+    /**
+     * @return when the party left, or null if it has not
+     */
+    public LocalDateTime getClearedTime() {
+        return clearedTime;
+    }
+
     /**
      * Calculates the end time of the reservation.
      * @return the end time
@@ -31,6 +31,16 @@ public abstract class Staff extends User implements Serializable {
         this.totalWorkedHours = 0;  // Initialize in constructor only
     }
 
+    /**
+     * Restores a saved staff member. Used by ModelCodec.
+     */
+    protected Staff(int userId, String username, String password, UserRole role,
+                    int hoursToWork, int totalWorkedHours) {
+        super(userId, username, password, role);
+        this.hoursToWork = hoursToWork;
+        this.totalWorkedHours = totalWorkedHours;
+    }
+
 
     /**
      * Logs additional worked hours for the staff member.
@@ -1,9 +1,20 @@
 package cafe.ninetyfour.models;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import cafe.ninetyfour.enums.TableStatus;
 
@@ -11,13 +22,55 @@ import cafe.ninetyfour.enums.TableStatus;
  * Represents a table in the cafe system.
  * Each table has a unique ID, capacity, status, and a list of reservations.
  * * It keeps track of reservations and manages its own assignment and release.
+ * Reservations are kept sorted by start time; since a table's reservations
+ * never overlap, their end times are sorted too, so an overlap check only
+ * has to look at the last reservation starting before the requested end.
+ * A table's state is guarded by its own lock; operations spanning several
+ * tables take their locks in table ID order, so they cannot deadlock.
  */
 public class Table implements Serializable {
     private static final long serialVersionUID = 1L;
-    private final int tableId;
-    private final int capacity;
+    // Not final only so readObject can restore them; never changed afterwards
+    private int tableId;
+    private int capacity;
+    // Position on the floor plan; not part of the serialized form
+    private String zone;
+    private final double x;
+    private final double y;
     private TableStatus status;
-    private List<Reservation> reservations;
+    // The reservation whose party is seated at the table, if any
+    private transient Reservation seated;
+    // Non-overlapping reservations by start time; serialized as a list
+    private transient NavigableMap<LocalDateTime, Reservation> reservations;
+    // Standing bookings, checked against their pattern beyond their expanded dates
+    private transient List<RecurringBooking> recurring;
+    private transient ReservationListener listener;
+
+    // Same serialized form as when reservations were kept in a list
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("tableId", int.class),
+            new ObjectStreamField("capacity", int.class),
+            new ObjectStreamField("status", TableStatus.class),
+            new ObjectStreamField("reservations", List.class)
+    };
+
+    /**
+     * Receives the reservations added to and removed from a table,
+     * e.g. to keep an occupancy index in step.
+     * Called outside the table's lock, so the calls for a reservation
+     * added and removed at the same time may arrive in either order.
+     */
+    public interface ReservationListener {
+        void reservationAdded(Table table, Reservation reservation);
+
+        void reservationRemoved(Table table, Reservation reservation);
+
+        /**
+         * A standing booking was put on or taken off the table.
+         */
+        default void recurringChanged(Table table, RecurringBooking series) {
+        }
+    }
 
     /**
      * Constructor for creating a Table object.
@@ -26,13 +79,38 @@ public class Table implements Serializable {
      * @param capacity the seating capacity of the table
      */
     public Table(int tableId, int capacity) {
+        this(tableId, capacity, FloorPlan.DEFAULT_ZONE, 0, 0);
+    }
+
+    /**
+     * Constructor for a table placed on a floor plan.
+     *
+     * @param tableId  the unique ID of the table
+     * @param capacity the seating capacity of the table
+     * @param zone     the room or area the table is in
+     * @param x        the table's x coordinate on the floor plan
+     * @param y        the table's y coordinate on the floor plan
+     */
+    public Table(int tableId, int capacity, String zone, double x, double y) {
         this.tableId = tableId;
         this.capacity = capacity;
+        this.zone = zone;
+        this.x = x;
+        this.y = y;
         this.status = TableStatus.AVAILABLE;
-        this.reservations = new ArrayList<>();
+        this.reservations = new TreeMap<>();
+        this.recurring = new ArrayList<>();
     }
 
-    // Getters (no setters for final fields)
+    /**
+     * Restores a saved table with its last known status. Used by ModelCodec.
+     */
+    Table(int tableId, int capacity, TableStatus status) {
+        this(tableId, capacity);
+        this.status = status;
+    }
+
+    // Getters (no setters: a table's identity and place do not change)
     public int getTableId() {
         return tableId;
     }
@@ -41,12 +119,51 @@ public class Table implements Serializable {
         return capacity;
     }
 
+    public String getZone() {
+        return zone;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
     public TableStatus getStatus() {
         return status;
     }
 
-    public List<Reservation> getReservations() {
-        return reservations;
+    /**
+     * Sets the listener told about reservation changes, replacing any previous one.
+     *
+     * @param listener the listener, or null for none
+     */
+    public void setReservationListener(ReservationListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return a snapshot of the table's reservations, ordered by start time
+     */
+    public synchronized List<Reservation> getReservations() {
+        return new ArrayList<>(reservations.values());
+    }
+
+    /**
+     * @param reservation the reservation
+     * @return true if the reservation is on the table's schedule
+     */
+    public synchronized boolean holds(Reservation reservation) {
+        return reservations.get(reservation.getStartTime()) == reservation;
+    }
+
+    /**
+     * @return a snapshot of the standing bookings on the table
+     */
+    public synchronized List<RecurringBooking> getRecurring() {
+        return new ArrayList<>(recurring);
     }
 
     // Business Logic Methods
@@ -58,45 +175,380 @@ public class Table implements Serializable {
      * @return true if the reservation was successfully assigned, false otherwise
      */
     public boolean assignToReservation(Reservation reservation) {
-        if (checkAvailability(reservation.getStartTime(), reservation.getDuration())) {
-            reservations.add(reservation);
-            status = TableStatus.RESERVED;
+        synchronized (this) {
+            if (!checkAvailability(reservation.getStartTime(), reservation.getDuration())) {
+                return false;
+            }
+            reservations.put(reservation.getStartTime(), reservation);
+            if (status != TableStatus.OCCUPIED) {
+                status = TableStatus.RESERVED;
+            }
+        }
+        ReservationListener current = listener;
+        if (current != null) {
+            current.reservationAdded(this, reservation);
+        }
+        return true;
+    }
+
+    /**
+     * Assigns a reservation to several tables at once, all or none: the
+     * tables are locked together, so no other reservation can take one of
+     * them between the check and the assignment, and nobody sees the
+     * reservation on only some of them.
+     *
+     * @param tables      the tables to assign
+     * @param reservation the reservation to assign
+     * @return true if every table was free and is now assigned, false if
+     *         none was assigned
+     */
+    public static boolean assignAll(List<Table> tables, Reservation reservation) {
+        List<Table> ordered = lockOrder(tables);
+        boolean assigned = withLocks(ordered, () -> {
+            for (Table table : ordered) {
+                if (!table.checkAvailability(reservation.getStartTime(), reservation.getDuration())) {
+                    return false;
+                }
+            }
+            for (Table table : ordered) {
+                table.reservations.put(reservation.getStartTime(), reservation);
+                if (table.status != TableStatus.OCCUPIED) {
+                    table.status = TableStatus.RESERVED;
+                }
+            }
+            return true;
+        });
+        if (assigned) {
+            for (Table table : ordered) {
+                ReservationListener current = table.listener;
+                if (current != null) {
+                    current.reservationAdded(table, reservation);
+                }
+            }
+        }
+        return assigned;
+    }
+
+    /**
+     * @return the distinct tables sorted by table ID, the order their locks are taken in
+     */
+    static List<Table> lockOrder(List<Table> tables) {
+        List<Table> ordered = new ArrayList<>();
+        for (Table table : tables) {
+            if (!ordered.contains(table)) {
+                ordered.add(table);
+            }
+        }
+        ordered.sort(Comparator.comparingInt(Table::getTableId));
+        return ordered;
+    }
+
+    /**
+     * Runs an action holding the locks of the given tables, which must be
+     * in lock order. The locks are the tables' monitors, so the action
+     * excludes every synchronized method of the tables.
+     */
+    static <T> T withLocks(List<Table> ordered, Supplier<T> action) {
+        return withLocks(ordered, 0, action);
+    }
+
+    private static <T> T withLocks(List<Table> ordered, int from, Supplier<T> action) {
+        if (from == ordered.size()) {
+            return action.get();
+        }
+        synchronized (ordered.get(from)) {
+            return withLocks(ordered, from + 1, action);
+        }
+    }
+
+    /**
+     * Replaces the table's schedule with the given reservations in one pass,
+     * e.g. when rebuilding the tables from saved bookings at startup.
+     * The reservations must be sorted by start time; one overlapping an
+     * earlier reservation is skipped. The listener is not told, so whoever
+     * indexes the reservations must rebuild its index afterwards.
+     *
+     * @param sorted the reservations, sorted by start time
+     * @return the reservations that were skipped because of an overlap
+     */
+    public List<Reservation> loadReservations(List<? extends Reservation> sorted) {
+        TreeMap<LocalDateTime, Reservation> loaded = new TreeMap<>();
+        List<Reservation> skipped = new ArrayList<>();
+        LocalDateTime lastEnd = null;
+        for (Reservation reservation : sorted) {
+            if (lastEnd != null && reservation.getStartTime().isBefore(lastEnd)) {
+                skipped.add(reservation);
+                continue;
+            }
+            loaded.put(reservation.getStartTime(), reservation);
+            lastEnd = reservation.getEndTime();
+        }
+        synchronized (this) {
+            reservations = loaded;
+            seated = null;
+            if (status != TableStatus.UNAVAILABLE) {
+                status = loaded.isEmpty() ? TableStatus.AVAILABLE : TableStatus.RESERVED;
+            }
+        }
+        return skipped;
+    }
+
+    /**
+     * Puts a standing booking on the table if none of its dates clashes
+     * with a reservation on the schedule or another standing booking.
+     * Its own expanded occurrences do not count as clashes.
+     *
+     * @param series the standing booking
+     * @return true if it was added
+     */
+    public boolean addRecurring(RecurringBooking series) {
+        return addAllRecurring(List.of(this), series);
+    }
+
+    /**
+     * Puts a standing booking on several tables at once, all or none, like
+     * {@link #assignAll(List, Reservation)}.
+     *
+     * @param tables the tables
+     * @param series the standing booking
+     * @return true if it was added to every table, false if to none
+     */
+    public static boolean addAllRecurring(List<Table> tables, RecurringBooking series) {
+        List<Table> ordered = lockOrder(tables);
+        boolean added = withLocks(ordered, () -> {
+            for (Table table : ordered) {
+                if (!table.canAddRecurring(series)) {
+                    return false;
+                }
+            }
+            ordered.forEach(table -> table.recurring.add(series));
             return true;
+        });
+        if (added) {
+            for (Table table : ordered) {
+                ReservationListener current = table.listener;
+                if (current != null) {
+                    current.recurringChanged(table, series);
+                }
+            }
+        }
+        return added;
+    }
+
+    private boolean canAddRecurring(RecurringBooking series) {
+        if (status == TableStatus.UNAVAILABLE || recurring.contains(series)) {
+            return false;
+        }
+        for (Reservation reservation : reservations.values()) {
+            boolean own = reservation instanceof RecurringBooking.Occurrence
+                    && ((RecurringBooking.Occurrence) reservation).getSeries() == series;
+            if (!own && series.clashesWith(reservation.getStartTime(), reservation.getEndTime())) {
+                return false;
+            }
+        }
+        for (RecurringBooking other : recurring) {
+            if (series.clashesWith(other)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Takes a standing booking off the table. Its expanded occurrences are
+     * removed like any other reservation.
+     *
+     * @param series the standing booking
+     * @return true if it was on the table
+     */
+    public boolean removeRecurring(RecurringBooking series) {
+        synchronized (this) {
+            if (!recurring.remove(series)) {
+                return false;
+            }
+        }
+        ReservationListener current = listener;
+        if (current != null) {
+            current.recurringChanged(this, series);
+        }
+        return true;
+    }
+
+    /**
+     * Replaces the table's standing bookings without checking for clashes,
+     * e.g. when rebuilding the tables from saved bookings at startup.
+     * The listener is not told.
+     *
+     * @param loaded the standing bookings
+     */
+    public synchronized void loadRecurring(List<RecurringBooking> loaded) {
+        recurring = new ArrayList<>(loaded);
+    }
+
+    /**
+     * Marks the table occupied by the party of one of its reservations.
+     *
+     * @param reservation the reservation being seated
+     * @return true if the reservation is on the table's schedule
+     */
+    public synchronized boolean seat(Reservation reservation) {
+        if (reservations.get(reservation.getStartTime()) != reservation
+                || status == TableStatus.UNAVAILABLE) {
+            return false;
         }
-        return false;
+        seated = reservation;
+        status = TableStatus.OCCUPIED;
+        return true;
+    }
+
+    /**
+     * Removes a reservation from this table, e.g. when it is cancelled,
+     * so its time slot can be booked again.
+     *
+     * @param reservation the reservation to remove
+     * @return true if the reservation was held by this table
+     */
+    public boolean removeReservation(Reservation reservation) {
+        synchronized (this) {
+            if (!reservations.remove(reservation.getStartTime(), reservation)) {
+                return false;
+            }
+            if (seated == reservation) {
+                seated = null;
+                status = TableStatus.RESERVED;
+            }
+            if (reservations.isEmpty() && status == TableStatus.RESERVED) {
+                status = TableStatus.AVAILABLE;
+            }
+        }
+        ReservationListener current = listener;
+        if (current != null) {
+            current.reservationRemoved(this, reservation);
+        }
+        return true;
     }
 
 
     /**
      * Releases the table, making it available for new reservations.
+     * Reservations that have already ended are dropped.
      */
     public void releaseTable() {
-        this.status = TableStatus.AVAILABLE;
-        this.reservations.removeIf(r ->
-                r.getEndTime().isBefore(LocalDateTime.now()));
+        List<Reservation> expired = new ArrayList<>();
+        synchronized (this) {
+            this.status = TableStatus.AVAILABLE;
+            this.seated = null;
+            // End times are sorted like start times, so expired ones come first
+            LocalDateTime now = LocalDateTime.now();
+            Iterator<Reservation> it = reservations.values().iterator();
+            while (it.hasNext()) {
+                Reservation reservation = it.next();
+                if (!reservation.getEndTime().isBefore(now)) {
+                    break;
+                }
+                expired.add(reservation);
+                it.remove();
+            }
+        }
+        ReservationListener current = listener;
+        if (current != null) {
+            expired.forEach(reservation -> current.reservationRemoved(this, reservation));
+        }
         System.out.println("Table " + tableId + " released");
     }
 
     /**
      * Checks if the table is available at the requested time.
+     * Only an UNAVAILABLE table is blocked outright; a RESERVED table is
+     * available for any period that does not overlap its reservations.
      *
      * @param requestedStart    the requested start time
      * @param requestedDuration the requested duration in minutes
      * @return true if available, false otherwise
      */
-    public boolean checkAvailability(LocalDateTime requestedStart,
-                                     int requestedDuration) {
-        for (Reservation reservation : reservations) {
-            LocalDateTime reservedEnd = reservation.getEndTime();
-            LocalDateTime requestedEnd = requestedStart.plusMinutes(requestedDuration);
+    public synchronized boolean checkAvailability(LocalDateTime requestedStart,
+                                                  int requestedDuration) {
+        if (status == TableStatus.UNAVAILABLE) {
+            return false;
+        }
+        LocalDateTime requestedEnd = requestedStart.plusMinutes(requestedDuration);
+        // The only candidate for an overlap is the last reservation starting before the requested end
+        Map.Entry<LocalDateTime, Reservation> previous = reservations.lowerEntry(requestedEnd);
+        if (previous != null && previous.getValue().getEndTime().isAfter(requestedStart)) {
+            return false;
+        }
+        return isClearOfRecurring(requestedStart, requestedEnd);
+    }
+
+    /**
+     * Checks the dates of the standing bookings that are not expanded onto
+     * the schedule yet, e.g. beyond the availability horizon.
+     */
+    private boolean isClearOfRecurring(LocalDateTime requestedStart, LocalDateTime requestedEnd) {
+        for (RecurringBooking series : recurring) {
+            if (series.overlapsUnexpanded(requestedStart, requestedEnd)) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-            // Check for overlap
-            if (requestedStart.isBefore(reservedEnd) &&
-                    requestedEnd.isAfter(reservation.getStartTime())) {
+    /**
+     * Checks if the table is available at the requested time, with the end
+     * time of each reservation given by a function, e.g. a predicted end
+     * rather than the booked one. Since such end times are not sorted,
+     * every reservation starting before the requested end is checked; the
+     * reservation sweeper keeps those few.
+     *
+     * @param requestedStart    the requested start time
+     * @param requestedDuration the requested duration in minutes
+     * @param endOf             the end time of a reservation
+     * @return true if available, false otherwise
+     */
+    public synchronized boolean checkAvailability(LocalDateTime requestedStart, int requestedDuration,
+                                                  Function<Reservation, LocalDateTime> endOf) {
+        if (status == TableStatus.UNAVAILABLE) {
+            return false;
+        }
+        LocalDateTime requestedEnd = requestedStart.plusMinutes(requestedDuration);
+        for (Reservation reservation : reservations.headMap(requestedEnd, false).values()) {
+            if (endOf.apply(reservation).isAfter(requestedStart)) {
                 return false;
             }
         }
-        return status == TableStatus.AVAILABLE;
+        return isClearOfRecurring(requestedStart, requestedEnd);
+    }
+
+    /**
+     * Writes the reservations as a list, as earlier versions did.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("tableId", tableId);
+        fields.put("capacity", capacity);
+        fields.put("status", status);
+        synchronized (this) {
+            fields.put("reservations", new ArrayList<>(reservations.values()));
+        }
+        out.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        tableId = fields.get("tableId", 0);
+        capacity = fields.get("capacity", 0);
+        zone = FloorPlan.DEFAULT_ZONE;
+        status = (TableStatus) fields.get("status", TableStatus.AVAILABLE);
+        reservations = new TreeMap<>();
+        recurring = new ArrayList<>();
+        List<Reservation> saved = (List<Reservation>) fields.get("reservations", null);
+        if (saved != null) {
+            // Reservations referring back to this table are not complete until
+            // the whole graph is read, so they are indexed once it is
+            in.registerValidation(() -> saved.forEach(reservation ->
+                    reservations.put(reservation.getStartTime(), reservation)), 0);
+        }
     }
 
 
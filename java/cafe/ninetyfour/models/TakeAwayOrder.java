@@ -1,6 +1,7 @@
 package cafe.ninetyfour.models;
 
 import java.io.Serializable;
+import java.time.LocalDateTime;
 import java.util.*;
 import cafe.ninetyfour.enums.OrderStatus;
 
@@ -22,6 +23,14 @@ public class TakeAwayOrder extends Order implements Serializable {
         super(customerId, items);
     }
 
+    /**
+     * Restores a saved takeaway order. Used by ModelCodec.
+     */
+    TakeAwayOrder(int orderId, int customerId, List<OrderLine> lines, OrderStatus status,
+                  LocalDateTime orderTime, double totalPrice, boolean isApproved) {
+        super(orderId, customerId, lines, status, orderTime, totalPrice, isApproved);
+    }
+
     /**
      * Processes the takeaway order by marking it as COMPLETED.
      */
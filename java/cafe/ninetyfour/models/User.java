@@ -38,13 +38,31 @@ public class User implements Serializable {
      * @throws NullPointerException if role is null
      */
     public User(String username, String password, UserRole role) {
-        this.userId = nextUserId++;
+        this.userId = allocateUserId();
         this.username = validateUsername(username);
         this.password = validatePassword(password);
         this.role = Objects.requireNonNull(role, "Role cannot be null");
         this.isActive = true;
     }
 
+    /**
+     * Restores a saved user without re-validating the stored values.
+     * Used by ModelCodec; keeps the ID counter ahead of every restored ID.
+     *
+     * @param userId   the saved user ID
+     * @param username the saved username
+     * @param password the saved password
+     * @param role     the saved role
+     */
+    protected User(int userId, String username, String password, UserRole role) {
+        this.userId = userId;
+        this.username = username;
+        this.password = password;
+        this.role = Objects.requireNonNull(role, "Role cannot be null");
+        this.isActive = true;
+        reserveUserId(userId);
+    }
+
 
 
     // -------------------------------------------------------------------
@@ -338,10 +356,25 @@ public class User implements Serializable {
                 (address, "Address cannot be null");;
     }
 
-    public static void setNextUserId(int id) {
+    public static synchronized void setNextUserId(int id) {
         nextUserId = id;
     }
 
+    // Customers and staff are loaded in parallel at startup
+    private static synchronized int allocateUserId() {
+        return nextUserId++;
+    }
+
+    /**
+     * Makes sure new users are never given an ID that is already in use,
+     * e.g. by a saved user that has not been loaded yet.
+     *
+     * @param usedId a user ID that is already taken
+     */
+    public static synchronized void reserveUserId(int usedId) {
+        nextUserId = Math.max(nextUserId, usedId + 1);
+    }
+
     // -------------------------------------------------------------------
     /**
      * Returns a string representation of the User object.
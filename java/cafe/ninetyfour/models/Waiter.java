@@ -32,6 +32,14 @@ public class Waiter extends Staff implements Serializable {
         super(username, password, UserRole.WAITER, hoursToWork, firstName, lastName);
     }
 
+    /**
+     * Restores a saved waiter. Used by ModelCodec.
+     */
+    Waiter(int userId, String username, String password, int hoursToWork,
+           int totalWorkedHours) {
+        super(userId, username, password, UserRole.WAITER, hoursToWork, totalWorkedHours);
+    }
+
     /**
      * Sets the OrderService dependency for order management operations.
      *
@@ -73,7 +81,7 @@ public class Waiter extends Staff implements Serializable {
      * @return true if the order was successfully approved and assigned
      */
     public boolean approveDeliveryOrder(int orderId, int driverId) {
-        Order order = orderService.getOrderById(orderId).get(0);
+        Order order = orderService.findById(orderId).orElse(null);
         if (order instanceof DeliveryOrder deliveryOrder) {
             deliveryOrder.assignDriver(driverId);
             orderService.updateStatus(orderId, OrderStatus.APPROVED);
@@ -0,0 +1,187 @@
+package cafe.ninetyfour.persistence;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * BinaryFormat defines the file layout shared by all binary data files:
+ * a 4-byte magic number, a schema version byte and a store kind byte,
+ * followed by the records encoded with {@link BinaryOutput}.
+ * Files without the magic number are legacy Java-serialized files,
+ * which the services still read and rewrite in binary on their next save.
+ */
+public final class BinaryFormat {
+    /** "C94B" */
+    public static final int MAGIC = 0x43393442;
+    public static final int CURRENT_VERSION = 6;
+    public static final int HEADER_SIZE = Integer.BYTES + 2;
+
+    // Store kinds
+    public static final byte ORDERS = 1;
+    public static final byte CUSTOMERS = 2;
+    public static final byte STAFF = 3;
+    public static final byte BOOKINGS = 4;
+    public static final byte MENU = 5;
+    public static final byte CUSTOMER_INDEX = 6;
+    public static final byte ORDER_MANIFEST = 7;
+    public static final byte ORDER_ARCHIVE = 8;
+
+    // First two bytes of every Java serialization stream
+    private static final short JAVA_SERIALIZATION_MAGIC = (short) 0xACED;
+
+    /**
+     * Encodes values into a BinaryOutput.
+     */
+    @FunctionalInterface
+    public interface Encoder {
+        void encode(BinaryOutput out) throws IOException;
+    }
+
+    private BinaryFormat() {
+    }
+
+    /**
+     * Writes a complete binary file through a temporary file that then
+     * replaces the target, so readers never see a half-written file.
+     *
+     * @param file    the target file
+     * @param kind    the store kind recorded in the header
+     * @param encoder writes the records
+     * @throws IOException if the file cannot be written or replaced
+     */
+    public static void write(File file, byte kind, Encoder encoder) throws IOException {
+        Path target = file.toPath().toAbsolutePath();
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+
+        try (FileOutputStream fos = new FileOutputStream(temp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeByte(CURRENT_VERSION);
+            out.writeByte(kind);
+            encoder.encode(new BinaryOutput(out));
+            out.flush();
+            fos.getFD().sync();
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Encodes values into a byte array without a file header,
+     * e.g. for a single journal record.
+     *
+     * @param encoder writes the values
+     * @return the encoded bytes
+     * @throws IOException if encoding fails
+     */
+    public static byte[] encode(Encoder encoder) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        encoder.encode(new BinaryOutput(out));
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Opens a binary file for reading. The file is read into a heap buffer
+     * in one call rather than mapped, so it can be replaced by the next save
+     * straight away on every platform.
+     *
+     * @param file the file to read
+     * @param kind the store kind the file must contain
+     * @return an input positioned after the header
+     * @throws IOException if the file is not a binary file of the given kind
+     *                     or was written by a newer schema version
+     */
+    public static BinaryInput open(File file, byte kind) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        int version = readHeader(buffer, kind);
+        return new BinaryInput(buffer, version);
+    }
+
+    /**
+     * Validates the header at the buffer's position and advances past it.
+     *
+     * @param buffer the buffer holding the file
+     * @param kind   the expected store kind
+     * @return the schema version of the file
+     * @throws IOException if the header does not match
+     */
+    public static int readHeader(ByteBuffer buffer, byte kind) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a Cafe94 binary file");
+        }
+        int version = buffer.get();
+        if (version < 1 || version > CURRENT_VERSION) {
+            throw new IOException("Unsupported binary format version " + version);
+        }
+        byte storedKind = buffer.get();
+        if (storedKind != kind) {
+            throw new IOException("Expected store kind " + kind + " but found " + storedKind);
+        }
+        return version;
+    }
+
+    /**
+     * Reads the store kind of a binary file without reading the rest of it,
+     * for stores whose layout changed between kinds.
+     *
+     * @param file the file to check
+     * @return the store kind in the header
+     * @throws IOException if the file is not a binary file
+     */
+    public static byte readKind(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (file.length() < HEADER_SIZE || in.readInt() != MAGIC) {
+                throw new IOException("Not a Cafe94 binary file");
+            }
+            in.readByte();
+            return in.readByte();
+        }
+    }
+
+    /**
+     * Checks whether a file was written in the legacy Java serialization
+     * format and still needs migrating.
+     *
+     * @param file the file to check
+     * @return true if the file starts with the Java serialization magic number
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean isLegacy(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return file.length() >= 2 && in.readShort() == JAVA_SERIALIZATION_MAGIC;
+        }
+    }
+
+    /**
+     * Checks whether a byte array holds a Java serialization stream.
+     *
+     * @param bytes the bytes to check
+     * @return true if the bytes start with the Java serialization magic number
+     */
+    public static boolean isLegacy(byte[] bytes) {
+        return bytes.length >= 2
+                && (short) (((bytes[0] & 0xFF) << 8) | (bytes[1] & 0xFF)) == JAVA_SERIALIZATION_MAGIC;
+    }
+
+    /**
+     * Reads a legacy Java-serialized file.
+     *
+     * @param file the file to read
+     * @return the deserialized object
+     * @throws IOException if the file cannot be deserialized
+     */
+    public static Object readLegacy(File file) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            return ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unknown class in legacy file " + file, e);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package cafe.ninetyfour.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads values written by {@link BinaryOutput} from a ByteBuffer,
+ * e.g. a whole file or a single record read from one.
+ */
+public class BinaryInput {
+    private final ByteBuffer buffer;
+    private final int version;
+    private final List<String> stringTable = new ArrayList<>();
+
+    /**
+     * Constructs a BinaryInput reading from the buffer's current position.
+     *
+     * @param buffer  the encoded bytes
+     * @param version the schema version the bytes were written with
+     */
+    public BinaryInput(ByteBuffer buffer, int version) {
+        this.buffer = buffer;
+        this.version = version;
+    }
+
+    /**
+     * Returns the schema version of the data being read,
+     * so decoders can handle records written by older versions.
+     *
+     * @return the schema version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return true if there are bytes left to read
+     */
+    public boolean hasRemaining() {
+        return buffer.hasRemaining();
+    }
+
+    /**
+     * @return the next zigzag varint as an int
+     * @throws IOException if the data is truncated or malformed
+     */
+    public int readVarInt() throws IOException {
+        long raw = readUnsignedVarLong();
+        int value = (int) raw;
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * @return the next zigzag varint as a long
+     * @throws IOException if the data is truncated or malformed
+     */
+    public long readVarLong() throws IOException {
+        long raw = readUnsignedVarLong();
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    /**
+     * @return the next boolean
+     * @throws IOException if the data is truncated
+     */
+    public boolean readBoolean() throws IOException {
+        return get() != 0;
+    }
+
+    /**
+     * @return the next double
+     * @throws IOException if the data is truncated
+     */
+    public double readDouble() throws IOException {
+        try {
+            return buffer.getDouble();
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Unexpected end of data", e);
+        }
+    }
+
+    /**
+     * @return the next string, resolved through the string table, or null
+     * @throws IOException if the data is truncated or the reference is invalid
+     */
+    public String readString() throws IOException {
+        long reference = readUnsignedVarLong();
+        if (reference == BinaryOutput.STRING_NULL) {
+            return null;
+        }
+        if (reference == BinaryOutput.STRING_LITERAL) {
+            String value = readUtf();
+            stringTable.add(value);
+            return value;
+        }
+        long index = reference - BinaryOutput.STRING_TABLE_OFFSET;
+        if (index >= stringTable.size()) {
+            throw new IOException("Invalid string table reference " + index);
+        }
+        return stringTable.get((int) index);
+    }
+
+    /**
+     * @return the next timestamp, or null
+     * @throws IOException if the data is truncated or malformed
+     */
+    public LocalDateTime readTimestamp() throws IOException {
+        if (!readBoolean()) {
+            return null;
+        }
+        long millis = readVarLong();
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000),
+                Math.floorMod(millis, 1000) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    /**
+     * Reads an enum constant written by {@link BinaryOutput#writeEnum}.
+     *
+     * @param values the constants of the enum, as returned by {@code values()}
+     * @return the constant, or null if null was written
+     * @throws IOException if the ordinal is out of range
+     */
+    public <E extends Enum<E>> E readEnum(E[] values) throws IOException {
+        int ordinal = readVarInt();
+        if (ordinal == -1) {
+            return null;
+        }
+        if (ordinal < 0 || ordinal >= values.length) {
+            throw new IOException("Invalid enum ordinal " + ordinal);
+        }
+        return values[ordinal];
+    }
+
+    private byte get() throws IOException {
+        try {
+            return buffer.get();
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Unexpected end of data", e);
+        }
+    }
+
+    private long readUnsignedVarLong() throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = get();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    // Reads a string written by DataOutput.writeUTF (2-byte length + modified UTF-8)
+    private String readUtf() throws IOException {
+        int length = ((get() & 0xFF) << 8) | (get() & 0xFF);
+        if (buffer.remaining() < length) {
+            throw new IOException("Unexpected end of data");
+        }
+        byte[] bytes = new byte[length + 2];
+        bytes[0] = (byte) (length >>> 8);
+        bytes[1] = (byte) length;
+        buffer.get(bytes, 2, length);
+
+        boolean ascii = true;
+        for (int i = 2; i < bytes.length && ascii; i++) {
+            ascii = bytes[i] > 0;
+        }
+        if (ascii) {
+            return new String(bytes, 2, length, StandardCharsets.US_ASCII);
+        }
+        return new DataInputStream(new ByteArrayInputStream(bytes)).readUTF();
+    }
+}
@@ -0,0 +1,166 @@
+package cafe.ninetyfour.persistence;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes the primitive values of the compact binary format.
+ * Integers are written as zigzag varints, timestamps as epoch milliseconds,
+ * enums as ordinals and strings through a string table, so a repeated
+ * string (a category, a street, a delivery address) is only written once
+ * per stream.
+ */
+public class BinaryOutput {
+    // String references: 0 = null, 1 = new literal follows, n >= 2 = table entry n - 2
+    static final int STRING_NULL = 0;
+    static final int STRING_LITERAL = 1;
+    static final int STRING_TABLE_OFFSET = 2;
+
+    private final DataOutput out;
+    private final Map<String, Integer> stringTable = new HashMap<>();
+
+    /**
+     * Constructs a BinaryOutput writing to the given sink.
+     *
+     * @param out the sink for encoded bytes
+     */
+    public BinaryOutput(DataOutput out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes a signed int as a zigzag varint (1 byte for small values).
+     *
+     * @param value the value to write
+     * @throws IOException if the sink fails
+     */
+    public void writeVarInt(int value) throws IOException {
+        writeUnsignedVarLong(Integer.toUnsignedLong((value << 1) ^ (value >> 31)));
+    }
+
+    /**
+     * Writes a signed long as a zigzag varint.
+     *
+     * @param value the value to write
+     * @throws IOException if the sink fails
+     */
+    public void writeVarLong(long value) throws IOException {
+        writeUnsignedVarLong((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Writes a boolean as a single byte.
+     *
+     * @param value the value to write
+     * @throws IOException if the sink fails
+     */
+    public void writeBoolean(boolean value) throws IOException {
+        out.writeByte(value ? 1 : 0);
+    }
+
+    /**
+     * Writes a double as 8 bytes.
+     *
+     * @param value the value to write
+     * @throws IOException if the sink fails
+     */
+    public void writeDouble(double value) throws IOException {
+        out.writeDouble(value);
+    }
+
+    /**
+     * Writes a possibly null string through the string table.
+     *
+     * @param value the string to write
+     * @throws IOException if the sink fails
+     */
+    public void writeString(String value) throws IOException {
+        if (value == null) {
+            writeUnsignedVarLong(STRING_NULL);
+            return;
+        }
+        Integer index = stringTable.get(value);
+        if (index != null) {
+            writeUnsignedVarLong(index + STRING_TABLE_OFFSET);
+            return;
+        }
+        stringTable.put(value, stringTable.size());
+        writeUnsignedVarLong(STRING_LITERAL);
+        out.writeUTF(value);
+    }
+
+    /**
+     * Writes a possibly null timestamp as epoch milliseconds.
+     * The local date-time is read as UTC, so it round-trips exactly
+     * (to the millisecond) regardless of the machine's time zone.
+     *
+     * @param value the timestamp to write
+     * @throws IOException if the sink fails
+     */
+    public void writeTimestamp(LocalDateTime value) throws IOException {
+        writeBoolean(value != null);
+        if (value != null) {
+            writeVarLong(value.toInstant(ZoneOffset.UTC).toEpochMilli());
+        }
+    }
+
+    /**
+     * Writes a possibly null enum constant as its ordinal.
+     *
+     * @param value the constant to write
+     * @throws IOException if the sink fails
+     */
+    public void writeEnum(Enum<?> value) throws IOException {
+        writeVarInt(value == null ? -1 : value.ordinal());
+    }
+
+    /**
+     * Writes an int as 4 big-endian bytes, for fixed-width index entries.
+     *
+     * @param value the value to write
+     * @throws IOException if the sink fails
+     */
+    public void writeFixedInt(int value) throws IOException {
+        out.writeInt(value);
+    }
+
+    /**
+     * Writes a long as 8 big-endian bytes, for fixed-width index entries.
+     *
+     * @param value the value to write
+     * @throws IOException if the sink fails
+     */
+    public void writeFixedLong(long value) throws IOException {
+        out.writeLong(value);
+    }
+
+    /**
+     * Copies the remaining bytes of a buffer, e.g. an already encoded record.
+     * The buffer's position is left unchanged.
+     *
+     * @param bytes the bytes to copy
+     * @throws IOException if the sink fails
+     */
+    public void writeBytes(ByteBuffer bytes) throws IOException {
+        ByteBuffer source = bytes.duplicate();
+        byte[] chunk = new byte[Math.min(source.remaining(), 8192)];
+        while (source.hasRemaining()) {
+            int length = Math.min(chunk.length, source.remaining());
+            source.get(chunk, 0, length);
+            out.write(chunk, 0, length);
+        }
+    }
+
+    private void writeUnsignedVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+}
@@ -0,0 +1,340 @@
+package cafe.ninetyfour.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import cafe.ninetyfour.models.Customer;
+import cafe.ninetyfour.models.ModelCodec;
+
+/**
+ * CustomerStore is a read-only, indexed view of the customer file.
+ * The file holds two fixed-width index sections followed by one
+ * independently encoded record per customer:
+ * <pre>
+ *   header | count (int)
+ *   id index:   count x [userId (int), length (int), offset (long)]  sorted by userId
+ *   name index: count x [usernameHash (long), idSlot (int)]          sorted by hash
+ *   records
+ * </pre>
+ * Opening the store only reads the two fixed-width indexes into the heap,
+ * so startup does not decode any customer. Lookups binary-search the
+ * indexes and read and decode just the one record they hit, with a
+ * positional read. The file is neither mapped nor kept open, so the next
+ * save can replace it straight away on every platform.
+ */
+public class CustomerStore {
+    private static final int ID_ENTRY_SIZE = Integer.BYTES * 2 + Long.BYTES;
+    private static final int NAME_ENTRY_SIZE = Long.BYTES + Integer.BYTES;
+    private static final int COUNT_OFFSET = BinaryFormat.HEADER_SIZE;
+    private static final int ID_INDEX_OFFSET = COUNT_OFFSET + Integer.BYTES;
+
+    private final File file;
+    // Header, count and both indexes; records stay in the file
+    private final ByteBuffer buffer;
+    private final int version;
+    private final int count;
+    private final int nameIndexOffset;
+    // Username hash per ID slot, only built when the file is rewritten
+    private long[] hashBySlot;
+
+    private CustomerStore(File file, ByteBuffer buffer, int version) {
+        this.file = file;
+        this.buffer = buffer;
+        this.version = version;
+        this.count = buffer.getInt(COUNT_OFFSET);
+        this.nameIndexOffset = ID_INDEX_OFFSET + count * ID_ENTRY_SIZE;
+    }
+
+    /**
+     * Opens an indexed customer file, reading its indexes.
+     *
+     * @param file the customer file
+     * @return the store
+     * @throws IOException if the file cannot be read or is not an indexed customer file
+     */
+    public static CustomerStore open(File file) throws IOException {
+        try (FileChannel channel = openChannel(file)) {
+            ByteBuffer head = ByteBuffer.allocate(ID_INDEX_OFFSET);
+            readFully(channel, head, 0);
+            int version = BinaryFormat.readHeader(head.duplicate(), BinaryFormat.CUSTOMER_INDEX);
+            int count = head.getInt(COUNT_OFFSET);
+            long indexSize = ID_INDEX_OFFSET + (long) count * (ID_ENTRY_SIZE + NAME_ENTRY_SIZE);
+            if (count < 0 || indexSize > channel.size()) {
+                throw new IOException("Corrupt customer index in " + file);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) indexSize);
+            readFully(channel, buffer, 0);
+            return new CustomerStore(file, buffer, version);
+        }
+    }
+
+    private static FileChannel openChannel(File file) throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    }
+
+    /**
+     * Fills a buffer from a position of the file and rewinds it.
+     */
+    private static void readFully(FileChannel channel, ByteBuffer target, long position)
+            throws IOException {
+        while (target.hasRemaining()) {
+            int read = channel.read(target, position);
+            if (read < 0) {
+                throw new EOFException("Customer file is truncated");
+            }
+            position += read;
+        }
+        target.flip();
+    }
+
+    /**
+     * Normalizes a username the way both the file index and
+     * CustomerService key customers.
+     *
+     * @param username the username as entered
+     * @return the lower-case username
+     */
+    public static String normalize(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return the number of customers in the store
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the highest user ID in the store without decoding any record.
+     *
+     * @return the highest user ID, or 0 if the store is empty
+     */
+    public int getMaxUserId() {
+        return count == 0 ? 0 : idAt(count - 1);
+    }
+
+    /**
+     * Decodes the customer with the given ID.
+     *
+     * @param userId the customer ID
+     * @return the customer, or null if the store does not contain it
+     * @throws IOException if the record is corrupt
+     */
+    public Customer findById(int userId) throws IOException {
+        int slot = findSlot(userId);
+        return slot < 0 ? null : decode(slot);
+    }
+
+    /**
+     * Decodes the customer with the given username.
+     *
+     * @param username the username, in any case
+     * @return the customer, or null if the store does not contain it
+     * @throws IOException if the record is corrupt
+     */
+    public Customer findByUsername(String username) throws IOException {
+        String normalized = normalize(username);
+        long hash = hash(normalized);
+
+        // Find the first name entry with this hash, then check each
+        // entry sharing it in case of a collision
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (hashAt(mid) < hash) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low == count || hashAt(low) != hash) {
+            return null;
+        }
+        try (FileChannel channel = openChannel(file)) {
+            for (int i = low; i < count && hashAt(i) == hash; i++) {
+                Customer candidate = decode(channel, buffer.getInt(nameEntry(i) + Long.BYTES));
+                if (normalize(candidate.getUsername()).equals(normalized)) {
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the IDs of all customers in ascending order, without decoding them.
+     *
+     * @return the user IDs
+     */
+    public int[] getUserIds() {
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = idAt(i);
+        }
+        return ids;
+    }
+
+    /**
+     * Writes an indexed customer file. Customers in {@code decoded} are
+     * encoded afresh; every other record of {@code previous} is copied
+     * byte for byte without being decoded, unless {@code previous} was
+     * written by an older schema version, in which case it is re-encoded.
+     *
+     * @param file     the target file
+     * @param decoded  the customers held in memory, which may have changed
+     * @param previous the store being replaced, or null
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(File file, Collection<Customer> decoded, CustomerStore previous)
+            throws IOException {
+        List<Record> records = new ArrayList<>();
+        Set<Integer> decodedIds = new HashSet<>();
+        for (Customer customer : decoded) {
+            decodedIds.add(customer.getUserId());
+            byte[] bytes = BinaryFormat.encode(out -> ModelCodec.writeCustomer(out, customer));
+            records.add(new Record(customer.getUserId(), hash(normalize(customer.getUsername())),
+                    ByteBuffer.wrap(bytes)));
+        }
+        if (previous != null) {
+            // The previous file is only replaced once the new one is complete
+            try (FileChannel channel = openChannel(previous.file)) {
+                previous.copyRecords(channel, decodedIds, records);
+            }
+        }
+        records.sort(Comparator.comparingInt(record -> record.userId));
+
+
+        Integer[] byHash = new Integer[records.size()];
+        for (int i = 0; i < byHash.length; i++) {
+            byHash[i] = i;
+        }
+        Arrays.sort(byHash, Comparator.comparingLong(slot -> records.get(slot).hash));
+
+        BinaryFormat.write(file, BinaryFormat.CUSTOMER_INDEX, out -> {
+            int n = records.size();
+            out.writeFixedInt(n);
+            long offset = ID_INDEX_OFFSET + (long) n * (ID_ENTRY_SIZE + NAME_ENTRY_SIZE);
+            for (Record record : records) {
+                out.writeFixedInt(record.userId);
+                out.writeFixedInt(record.bytes.remaining());
+                out.writeFixedLong(offset);
+                offset += record.bytes.remaining();
+            }
+            for (Integer slot : byHash) {
+                out.writeFixedLong(records.get(slot).hash);
+                out.writeFixedInt(slot);
+            }
+            for (Record record : records) {
+                out.writeBytes(record.bytes);
+            }
+        });
+    }
+
+    /**
+     * Adds the records of every customer not passed in decoded, copied as
+     * they are or re-encoded if written by an older schema version.
+     */
+    private void copyRecords(FileChannel channel, Set<Integer> decodedIds, List<Record> records)
+            throws IOException {
+        for (int slot = 0; slot < count; slot++) {
+            int userId = idAt(slot);
+            if (decodedIds.contains(userId)) {
+                continue;
+            }
+            if (version == BinaryFormat.CURRENT_VERSION) {
+                records.add(new Record(userId, hashForSlot(slot), rawRecord(channel, slot)));
+            } else {
+                Customer customer = decode(channel, slot);
+                byte[] bytes = BinaryFormat.encode(out -> ModelCodec.writeCustomer(out, customer));
+                records.add(new Record(userId, hashForSlot(slot), ByteBuffer.wrap(bytes)));
+            }
+        }
+    }
+
+    private static final class Record {
+        private final int userId;
+        private final long hash;
+        private final ByteBuffer bytes;
+
+        private Record(int userId, long hash, ByteBuffer bytes) {
+            this.userId = userId;
+            this.hash = hash;
+            this.bytes = bytes;
+        }
+    }
+
+    private int findSlot(int userId) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midId = idAt(mid);
+            if (midId < userId) {
+                low = mid + 1;
+            } else if (midId > userId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private Customer decode(int slot) throws IOException {
+        try (FileChannel channel = openChannel(file)) {
+            return decode(channel, slot);
+        }
+    }
+
+    private Customer decode(FileChannel channel, int slot) throws IOException {
+        return ModelCodec.readCustomer(new BinaryInput(rawRecord(channel, slot), version));
+    }
+
+    private ByteBuffer rawRecord(FileChannel channel, int slot) throws IOException {
+        int entry = ID_INDEX_OFFSET + slot * ID_ENTRY_SIZE;
+        int length = buffer.getInt(entry + Integer.BYTES);
+        long offset = buffer.getLong(entry + Integer.BYTES * 2);
+        ByteBuffer record = ByteBuffer.allocate(length);
+        readFully(channel, record, offset);
+        return record;
+    }
+
+    private long hashForSlot(int slot) {
+        if (hashBySlot == null) {
+            hashBySlot = new long[count];
+            for (int i = 0; i < count; i++) {
+                hashBySlot[buffer.getInt(nameEntry(i) + Long.BYTES)] = hashAt(i);
+            }
+        }
+        return hashBySlot[slot];
+    }
+
+    private int idAt(int slot) {
+        return buffer.getInt(ID_INDEX_OFFSET + slot * ID_ENTRY_SIZE);
+    }
+
+    private int nameEntry(int i) {
+        return nameIndexOffset + i * NAME_ENTRY_SIZE;
+    }
+
+    private long hashAt(int i) {
+        return buffer.getLong(nameEntry(i));
+    }
+
+    // 64-bit FNV-1a
+    private static long hash(String normalized) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < normalized.length(); i++) {
+            hash ^= normalized.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,406 @@
+package cafe.ninetyfour.persistence;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import cafe.ninetyfour.models.ModelCodec;
+import cafe.ninetyfour.models.Order;
+
+/**
+ * OrderArchive is a read-only, block-compressed file of historical orders.
+ * Orders are grouped into blocks of one day (split further once a day
+ * exceeds {@link #BLOCK_ORDERS} orders), each encoded with {@link ModelCodec}
+ * and deflated on its own. A block index at the end of the file records
+ * the day, order ID range and file position of every block, so opening an
+ * archive only reads the index, and a scan inflates one block at a time.
+ * <p>
+ * Layout: header, blocks, index, then the index offset as a fixed long.
+ */
+public class OrderArchive {
+    public static final int BLOCK_ORDERS = 1024;
+    private static final int FOOTER_SIZE = Long.BYTES;
+
+    private final File file;
+    private final int version;
+    private final List<Block> blocks;
+
+    /**
+     * Index entry of one compressed block.
+     */
+    public static final class Block {
+        private final LocalDate day;
+        private final int minOrderId;
+        private final int maxOrderId;
+        private final int orderCount;
+        private final long offset;
+        private final int compressedLength;
+        private final int rawLength;
+
+        private Block(LocalDate day, int minOrderId, int maxOrderId, int orderCount,
+                      long offset, int compressedLength, int rawLength) {
+            this.day = day;
+            this.minOrderId = minOrderId;
+            this.maxOrderId = maxOrderId;
+            this.orderCount = orderCount;
+            this.offset = offset;
+            this.compressedLength = compressedLength;
+            this.rawLength = rawLength;
+        }
+
+        public LocalDate getDay() {
+            return day;
+        }
+
+        public int getMinOrderId() {
+            return minOrderId;
+        }
+
+        public int getMaxOrderId() {
+            return maxOrderId;
+        }
+
+        public int getOrderCount() {
+            return orderCount;
+        }
+
+        public int getCompressedLength() {
+            return compressedLength;
+        }
+
+        public int getRawLength() {
+            return rawLength;
+        }
+    }
+
+    private OrderArchive(File file, int version, List<Block> blocks) {
+        this.file = file;
+        this.version = version;
+        this.blocks = blocks;
+    }
+
+    /**
+     * Opens an archive by reading its header and block index only.
+     *
+     * @param file the archive file
+     * @return the archive
+     * @throws IOException if the file is not an order archive or is truncated
+     */
+    public static OrderArchive open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < BinaryFormat.HEADER_SIZE + FOOTER_SIZE) {
+                throw new IOException("Truncated order archive " + file);
+            }
+            int version = BinaryFormat.readHeader(
+                    readFully(channel, 0, BinaryFormat.HEADER_SIZE), BinaryFormat.ORDER_ARCHIVE);
+            long indexOffset = readFully(channel, size - FOOTER_SIZE, FOOTER_SIZE).getLong();
+            if (indexOffset < BinaryFormat.HEADER_SIZE || indexOffset > size - FOOTER_SIZE) {
+                throw new IOException("Corrupt block index in order archive " + file);
+            }
+
+            BinaryInput in = new BinaryInput(readFully(channel, indexOffset,
+                    (int) (size - FOOTER_SIZE - indexOffset)), version);
+            int count = in.readVarInt();
+            List<Block> blocks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                LocalDate day = LocalDate.ofEpochDay(in.readVarLong());
+                int minOrderId = in.readVarInt();
+                int maxOrderId = in.readVarInt();
+                int orderCount = in.readVarInt();
+                long offset = in.readVarLong();
+                int compressedLength = in.readVarInt();
+                int rawLength = in.readVarInt();
+                blocks.add(new Block(day, minOrderId, maxOrderId, orderCount,
+                        offset, compressedLength, rawLength));
+            }
+            return new OrderArchive(file, version, Collections.unmodifiableList(blocks));
+        }
+    }
+
+    /**
+     * @return the block index in file order
+     */
+    public List<Block> getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * @return the days with at least one block, in ascending order
+     */
+    public SortedSet<LocalDate> getDays() {
+        SortedSet<LocalDate> days = new TreeSet<>();
+        blocks.forEach(block -> days.add(block.day));
+        return days;
+    }
+
+    /**
+     * @return the highest order ID in the archive, or 0 if it is empty
+     */
+    public int getMaxOrderId() {
+        int max = 0;
+        for (Block block : blocks) {
+            max = Math.max(max, block.maxOrderId);
+        }
+        return max;
+    }
+
+    /**
+     * @return the total number of archived orders
+     */
+    public int getOrderCount() {
+        int count = 0;
+        for (Block block : blocks) {
+            count += block.orderCount;
+        }
+        return count;
+    }
+
+    /**
+     * Finds the day whose blocks contain an order ID, from the index alone.
+     *
+     * @param orderId the order ID
+     * @return the day, or null if no block's ID range contains the ID
+     */
+    public LocalDate findDayOf(int orderId) {
+        for (Block block : blocks) {
+            if (orderId >= block.minOrderId && orderId <= block.maxOrderId) {
+                return block.day;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the orders of one day.
+     *
+     * @param day the day to read
+     * @return the orders, or an empty list if the day is not archived
+     * @throws IOException if a block cannot be read
+     */
+    public List<Order> read(LocalDate day) throws IOException {
+        List<Order> orders = new ArrayList<>();
+        scan(day, day, orders::add);
+        return orders;
+    }
+
+    /**
+     * Streams the orders of every block between two days (inclusive),
+     * inflating one block at a time.
+     *
+     * @param from   the first day, or null for no lower bound
+     * @param to     the last day, or null for no upper bound
+     * @param action receives each order
+     * @throws IOException if a block cannot be read
+     */
+    public void scan(LocalDate from, LocalDate to, Consumer<Order> action) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            Inflater inflater = new Inflater();
+            try {
+                for (Block block : blocks) {
+                    if ((from != null && block.day.isBefore(from))
+                            || (to != null && block.day.isAfter(to))) {
+                        continue;
+                    }
+                    ByteBuffer raw = inflate(inflater, readBlock(channel, block), block.rawLength);
+                    ModelCodec.readOrders(new BinaryInput(raw, version)).forEach(action);
+                }
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    private ByteBuffer readBlock(FileChannel channel, Block block) throws IOException {
+        return readFully(channel, block.offset, block.compressedLength);
+    }
+
+    private ByteBuffer inflate(Inflater inflater, ByteBuffer compressed, int rawLength)
+            throws IOException {
+        inflater.reset();
+        inflater.setInput(compressed);
+        ByteBuffer raw = ByteBuffer.allocate(rawLength);
+        try {
+            while (raw.hasRemaining() && !inflater.finished()) {
+                if (inflater.inflate(raw) == 0 && inflater.needsInput()) {
+                    break;
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt block in order archive " + file, e);
+        }
+        if (raw.hasRemaining()) {
+            throw new IOException("Truncated block in order archive " + file);
+        }
+        raw.flip();
+        return raw;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of order archive");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Writes a new archive through a temporary file that replaces the
+     * target on {@link #commit()}. Blocks of an existing archive can be
+     * copied in still compressed, so adding days to an archive does not
+     * inflate what it already holds.
+     */
+    public static final class Writer implements Closeable {
+        private final Path target;
+        private final Path temp;
+        private final FileOutputStream fos;
+        private final DataOutputStream out;
+        private final Deflater deflater = new Deflater();
+        private final List<Block> written = new ArrayList<>();
+        private long position;
+        private boolean committed;
+
+        /**
+         * Starts writing an archive.
+         *
+         * @param file the archive to create or replace
+         * @throws IOException if the temporary file cannot be created
+         */
+        public Writer(File file) throws IOException {
+            target = file.toPath().toAbsolutePath();
+            Files.createDirectories(target.getParent());
+            temp = target.resolveSibling(target.getFileName() + ".tmp");
+            fos = new FileOutputStream(temp.toFile());
+            out = new DataOutputStream(new BufferedOutputStream(fos, 64 * 1024));
+            out.writeInt(BinaryFormat.MAGIC);
+            out.writeByte(BinaryFormat.CURRENT_VERSION);
+            out.writeByte(BinaryFormat.ORDER_ARCHIVE);
+            position = BinaryFormat.HEADER_SIZE;
+        }
+
+        /**
+         * Compresses and appends the orders of one day.
+         *
+         * @param day    the day the orders were placed
+         * @param orders the day's orders
+         * @throws IOException if writing fails
+         */
+        public void writeDay(LocalDate day, List<Order> orders) throws IOException {
+            for (int start = 0; start < orders.size(); start += BLOCK_ORDERS) {
+                List<Order> chunk = orders.subList(start, Math.min(orders.size(), start + BLOCK_ORDERS));
+                byte[] raw = BinaryFormat.encode(encoded -> ModelCodec.writeOrders(encoded, chunk));
+
+                deflater.reset();
+                deflater.setInput(raw);
+                deflater.finish();
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4 + 64);
+                byte[] buffer = new byte[8 * 1024];
+                while (!deflater.finished()) {
+                    int n = deflater.deflate(buffer);
+                    compressed.write(buffer, 0, n);
+                }
+
+                int minOrderId = Integer.MAX_VALUE;
+                int maxOrderId = 0;
+                for (Order order : chunk) {
+                    minOrderId = Math.min(minOrderId, order.getOrderId());
+                    maxOrderId = Math.max(maxOrderId, order.getOrderId());
+                }
+                written.add(new Block(day, minOrderId, maxOrderId, chunk.size(),
+                        position, compressed.size(), raw.length));
+                compressed.writeTo(out);
+                position += compressed.size();
+            }
+        }
+
+        /**
+         * Copies the blocks of an existing archive without inflating them.
+         * Blocks written with an older schema version are re-encoded.
+         *
+         * @param source   the archive to copy from
+         * @param skipDays days not to copy, e.g. because they are being rewritten
+         * @throws IOException if the source cannot be read or writing fails
+         */
+        public void copyFrom(OrderArchive source, Set<LocalDate> skipDays) throws IOException {
+            if (source.version != BinaryFormat.CURRENT_VERSION) {
+                for (LocalDate day : source.getDays()) {
+                    if (!skipDays.contains(day)) {
+                        writeDay(day, source.read(day));
+                    }
+                }
+                return;
+            }
+            try (FileChannel channel = FileChannel.open(source.file.toPath(), StandardOpenOption.READ)) {
+                for (Block block : source.blocks) {
+                    if (skipDays.contains(block.day)) {
+                        continue;
+                    }
+                    ByteBuffer compressed = source.readBlock(channel, block);
+                    written.add(new Block(block.day, block.minOrderId, block.maxOrderId,
+                            block.orderCount, position, block.compressedLength, block.rawLength));
+                    out.write(compressed.array(), 0, block.compressedLength);
+                    position += block.compressedLength;
+                }
+            }
+        }
+
+        /**
+         * Writes the block index and replaces the target file.
+         *
+         * @return the archive that was written
+         * @throws IOException if writing or replacing the file fails
+         */
+        public OrderArchive commit() throws IOException {
+            List<Block> sorted = new ArrayList<>(written);
+            sorted.sort(Comparator.comparing(Block::getDay));
+            long indexOffset = position;
+            BinaryOutput index = new BinaryOutput(out);
+            index.writeVarInt(sorted.size());
+            for (Block block : sorted) {
+                index.writeVarLong(block.day.toEpochDay());
+                index.writeVarInt(block.minOrderId);
+                index.writeVarInt(block.maxOrderId);
+                index.writeVarInt(block.orderCount);
+                index.writeVarLong(block.offset);
+                index.writeVarInt(block.compressedLength);
+                index.writeVarInt(block.rawLength);
+            }
+            out.writeLong(indexOffset);
+            out.flush();
+            fos.getFD().sync();
+            out.close();
+            deflater.end();
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+            return new OrderArchive(target.toFile(), BinaryFormat.CURRENT_VERSION,
+                    Collections.unmodifiableList(sorted));
+        }
+
+        /**
+         * Discards the temporary file unless the archive was committed.
+         */
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                deflater.end();
+                out.close();
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+}
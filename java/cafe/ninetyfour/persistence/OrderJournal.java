@@ -0,0 +1,249 @@
+package cafe.ninetyfour.persistence;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import cafe.ninetyfour.enums.OrderStatus;
+import cafe.ninetyfour.models.ModelCodec;
+import cafe.ninetyfour.models.Order;
+
+/**
+ * OrderJournal is an append-only log of order mutations.
+ * Each placed order and each status change is written as one
+ * checksummed record, so the cost of persisting a mutation does not
+ * depend on how many orders already exist. The journal is replayed
+ * on top of the last snapshot at startup and truncated after every
+ * new snapshot.
+ */
+public class OrderJournal implements Closeable {
+    private static final Logger logger = Logger.getLogger(OrderJournal.class.getName());
+
+    private static final byte ORDER_PLACED = 1;
+    private static final byte STATUS_CHANGED = 2;
+
+    // length (int) + type (byte) ... payload ... crc (int)
+    private static final int HEADER_SIZE = Integer.BYTES + 1;
+    private static final int TRAILER_SIZE = Integer.BYTES;
+
+    private final Path path;
+    private FileChannel channel;
+    private int recordCount;
+
+    /**
+     * Receives the records read back from the journal during recovery.
+     */
+    public interface Listener {
+        /**
+         * Called for every order placement found in the journal.
+         *
+         * @param order the order as it was when it was placed
+         */
+        void orderPlaced(Order order);
+
+        /**
+         * Called for every status change found in the journal.
+         *
+         * @param orderId   the ID of the order that changed
+         * @param newStatus the status the order moved to
+         */
+        void statusChanged(int orderId, OrderStatus newStatus);
+    }
+
+    /**
+     * Constructs a journal backed by the given file.
+     * The file is created on the first append if it does not exist.
+     *
+     * @param file the journal file
+     */
+    public OrderJournal(File file) {
+        this.path = file.toPath();
+    }
+
+    /**
+     * Replays every intact record in the journal in the order it was written.
+     * A torn or corrupt record at the tail (e.g. after a crash mid-write)
+     * ends the replay and is cut off so later appends start from a clean point.
+     *
+     * @param listener the callback receiving the replayed records
+     * @return the number of records replayed
+     * @throws IOException if the journal cannot be read
+     */
+    public synchronized int recover(Listener listener) throws IOException {
+        if (!Files.exists(path)) {
+            recordCount = 0;
+            return 0;
+        }
+
+        int replayed = 0;
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(path)))) {
+            while (true) {
+                int length;
+                byte type;
+                byte[] payload;
+                int storedCrc;
+                try {
+                    length = in.readInt();
+                    if (length < 0) {
+                        break;
+                    }
+                    type = in.readByte();
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    storedCrc = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                if (storedCrc != checksum(type, payload)) {
+                    logger.warning("Corrupt order journal record after "
+                            + replayed + " records, discarding tail");
+                    break;
+                }
+                apply(type, payload, listener);
+                validLength += HEADER_SIZE + length + TRAILER_SIZE;
+                replayed++;
+            }
+        }
+
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            if (ch.size() > validLength) {
+                ch.truncate(validLength);
+            }
+        }
+        recordCount = replayed;
+        return replayed;
+    }
+
+    /**
+     * Appends an order placement to the journal and forces it to disk.
+     *
+     * @param order the order that was placed
+     * @throws IOException if the record cannot be written
+     */
+    public synchronized void appendOrderPlaced(Order order) throws IOException {
+        byte[] payload = BinaryFormat.encode(out -> {
+            out.writeVarInt(BinaryFormat.CURRENT_VERSION);
+            ModelCodec.writeOrder(out, order);
+        });
+        append(ORDER_PLACED, payload);
+    }
+
+    /**
+     * Appends a status change to the journal and forces it to disk.
+     *
+     * @param orderId   the ID of the order that changed
+     * @param newStatus the status the order moved to
+     * @throws IOException if the record cannot be written
+     */
+    public synchronized void appendStatusChanged(int orderId, OrderStatus newStatus)
+            throws IOException {
+        ByteBuffer payload = ByteBuffer.allocate(Integer.BYTES + 1);
+        payload.putInt(orderId);
+        payload.put((byte) newStatus.ordinal());
+        append(STATUS_CHANGED, payload.array());
+    }
+
+    /**
+     * Discards all records. Called once a snapshot containing
+     * every journalled mutation has been written.
+     *
+     * @throws IOException if the journal cannot be truncated
+     */
+    public synchronized void reset() throws IOException {
+        if (channel != null) {
+            channel.truncate(0);
+            channel.force(true);
+        } else {
+            Files.deleteIfExists(path);
+        }
+        recordCount = 0;
+    }
+
+    /**
+     * Returns the number of records written since the last reset.
+     *
+     * @return the record count
+     */
+    public synchronized int getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void append(byte type, byte[] payload) throws IOException {
+        if (channel == null) {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + payload.length + TRAILER_SIZE);
+        record.putInt(payload.length);
+        record.put(type);
+        record.put(payload);
+        record.putInt(checksum(type, payload));
+        record.flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        channel.force(false);
+        recordCount++;
+    }
+
+    private static void apply(byte type, byte[] payload, Listener listener) throws IOException {
+        switch (type) {
+            case ORDER_PLACED:
+                listener.orderPlaced(decodeOrder(payload));
+                break;
+            case STATUS_CHANGED:
+                ByteBuffer buffer = ByteBuffer.wrap(payload);
+                int orderId = buffer.getInt();
+                listener.statusChanged(orderId, OrderStatus.values()[buffer.get()]);
+                break;
+            default:
+                throw new IOException("Unknown order journal record type " + type);
+        }
+    }
+
+    private static Order decodeOrder(byte[] payload) throws IOException {
+        // Records written before the binary codec hold a Java-serialized order
+        if (BinaryFormat.isLegacy(payload)) {
+            try (ObjectInputStream ois = new ObjectInputStream(
+                    new ByteArrayInputStream(payload))) {
+                return (Order) ois.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Unknown order class in journal", e);
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        int version = new BinaryInput(buffer, BinaryFormat.CURRENT_VERSION).readVarInt();
+        if (version < 1 || version > BinaryFormat.CURRENT_VERSION) {
+            throw new IOException("Unsupported order journal record version " + version);
+        }
+        return ModelCodec.readOrder(new BinaryInput(buffer, version));
+    }
+
+    private static int checksum(byte type, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,257 @@
+package cafe.ninetyfour.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.*;
+
+import cafe.ninetyfour.enums.OrderStatus;
+import cafe.ninetyfour.models.ModelCodec;
+import cafe.ninetyfour.models.Order;
+
+/**
+ * OrderPartitionStore keeps orders in one segment file per day,
+ * plus a small manifest describing every segment. The manifest is all
+ * that is held in memory for a partition that is not in use, so closed
+ * days can be dropped from the heap and read back only when a lookup
+ * or report needs them.
+ */
+public class OrderPartitionStore {
+    private static final String MANIFEST_FILE = "manifest.dat";
+    private static final String SEGMENT_PREFIX = "orders-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+
+    private final File directory;
+    private final NavigableMap<LocalDate, Partition> partitions = new TreeMap<>();
+
+    /**
+     * Summary of one day's segment, as recorded in the manifest.
+     */
+    public static final class Partition {
+        private final LocalDate day;
+        private final int minOrderId;
+        private final int maxOrderId;
+        private final int orderCount;
+        private final boolean open;
+
+        private Partition(LocalDate day, int minOrderId, int maxOrderId,
+                          int orderCount, boolean open) {
+            this.day = day;
+            this.minOrderId = minOrderId;
+            this.maxOrderId = maxOrderId;
+            this.orderCount = orderCount;
+            this.open = open;
+        }
+
+        public LocalDate getDay() {
+            return day;
+        }
+
+        public int getMinOrderId() {
+            return minOrderId;
+        }
+
+        public int getMaxOrderId() {
+            return maxOrderId;
+        }
+
+        public int getOrderCount() {
+            return orderCount;
+        }
+
+        /**
+         * @return true if the partition held an order that was not yet
+         *         completed when it was written
+         */
+        public boolean isOpen() {
+            return open;
+        }
+    }
+
+    /**
+     * Constructs a store in the given directory.
+     * Nothing is read until {@link #load()} is called.
+     *
+     * @param directory the directory holding the manifest and segments
+     */
+    public OrderPartitionStore(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the partition an order belongs to.
+     *
+     * @param order the order
+     * @return the day the order was placed
+     */
+    public static LocalDate dayOf(Order order) {
+        return order.getOrderTime() != null
+                ? order.getOrderTime().toLocalDate()
+                : LocalDate.now();
+    }
+
+    /**
+     * Reads the manifest. A missing manifest means an empty store.
+     *
+     * @throws IOException if the manifest exists but cannot be read
+     */
+    public synchronized void load() throws IOException {
+        partitions.clear();
+        File manifest = new File(directory, MANIFEST_FILE);
+        if (!manifest.exists()) {
+            return;
+        }
+        BinaryInput in = BinaryFormat.open(manifest, BinaryFormat.ORDER_MANIFEST);
+        int count = in.readVarInt();
+        for (int i = 0; i < count; i++) {
+            LocalDate day = LocalDate.ofEpochDay(in.readVarLong());
+            int minOrderId = in.readVarInt();
+            int maxOrderId = in.readVarInt();
+            int orderCount = in.readVarInt();
+            boolean open = in.readBoolean();
+            partitions.put(day, new Partition(day, minOrderId, maxOrderId, orderCount, open));
+        }
+    }
+
+    /**
+     * @return true if the store holds no partitions
+     */
+    public synchronized boolean isEmpty() {
+        return partitions.isEmpty();
+    }
+
+    /**
+     * Returns the partitions in ascending day order.
+     *
+     * @return a snapshot of the manifest entries
+     */
+    public synchronized List<Partition> getPartitions() {
+        return new ArrayList<>(partitions.values());
+    }
+
+    /**
+     * @param day the day to look up
+     * @return the manifest entry for the day, or null if none was written
+     */
+    public synchronized Partition getPartition(LocalDate day) {
+        return partitions.get(day);
+    }
+
+    /**
+     * Finds the partition whose ID range contains an order ID,
+     * without reading any segment.
+     *
+     * @param orderId the order ID
+     * @return the day of the partition, or null if no range contains the ID
+     */
+    public synchronized LocalDate findDayOf(int orderId) {
+        for (Partition partition : partitions.values()) {
+            if (orderId >= partition.minOrderId && orderId <= partition.maxOrderId) {
+                return partition.day;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the highest order ID in any partition, or 0 if the store is empty
+     */
+    public synchronized int getMaxOrderId() {
+        int max = 0;
+        for (Partition partition : partitions.values()) {
+            max = Math.max(max, partition.maxOrderId);
+        }
+        return max;
+    }
+
+    /**
+     * Reads every order of one day's segment.
+     *
+     * @param day the partition to read
+     * @return the orders, or an empty list if the partition does not exist
+     * @throws IOException if the segment cannot be read
+     */
+    public List<Order> read(LocalDate day) throws IOException {
+        if (getPartition(day) == null) {
+            return new ArrayList<>();
+        }
+        return ModelCodec.readOrders(BinaryFormat.open(segmentFile(day), BinaryFormat.ORDERS));
+    }
+
+    /**
+     * Rewrites one day's segment and updates its manifest entry in memory.
+     * The manifest file itself is only written by {@link #saveManifest()}.
+     *
+     * @param day    the partition to write
+     * @param orders all orders of that day
+     * @throws IOException if the segment cannot be written
+     */
+    public void write(LocalDate day, Collection<Order> orders) throws IOException {
+        List<Order> snapshot = new ArrayList<>(orders);
+        BinaryFormat.write(segmentFile(day), BinaryFormat.ORDERS,
+                out -> ModelCodec.writeOrders(out, snapshot));
+
+        int minOrderId = Integer.MAX_VALUE;
+        int maxOrderId = 0;
+        boolean open = false;
+        for (Order order : snapshot) {
+            minOrderId = Math.min(minOrderId, order.getOrderId());
+            maxOrderId = Math.max(maxOrderId, order.getOrderId());
+            open |= order.getStatus() != OrderStatus.COMPLETED;
+        }
+        synchronized (this) {
+            partitions.put(day, new Partition(day, snapshot.isEmpty() ? 0 : minOrderId,
+                    maxOrderId, snapshot.size(), open));
+        }
+    }
+
+    /**
+     * Drops a partition from the manifest in memory, e.g. once it has been
+     * archived. Its segment should only be deleted with
+     * {@link #deleteSegment(LocalDate)} after {@link #saveManifest()},
+     * so the manifest on disk never lists a missing segment.
+     *
+     * @param day the partition to remove
+     */
+    public synchronized void remove(LocalDate day) {
+        partitions.remove(day);
+    }
+
+    /**
+     * Deletes the segment file of a partition no longer in the manifest.
+     *
+     * @param day the partition day
+     * @throws IOException if the file exists but cannot be deleted
+     */
+    public void deleteSegment(LocalDate day) throws IOException {
+        Files.deleteIfExists(segmentFile(day).toPath());
+    }
+
+    /**
+     * Writes the manifest for the segments written so far.
+     *
+     * @throws IOException if the manifest cannot be written
+     */
+    public void saveManifest() throws IOException {
+        List<Partition> snapshot = getPartitions();
+        BinaryFormat.write(new File(directory, MANIFEST_FILE), BinaryFormat.ORDER_MANIFEST, out -> {
+            out.writeVarInt(snapshot.size());
+            for (Partition partition : snapshot) {
+                out.writeVarLong(partition.day.toEpochDay());
+                out.writeVarInt(partition.minOrderId);
+                out.writeVarInt(partition.maxOrderId);
+                out.writeVarInt(partition.orderCount);
+                out.writeBoolean(partition.open);
+            }
+        });
+    }
+
+    /**
+     * @param day the partition day
+     * @return the segment file of the partition, which may not exist
+     */
+    public File segmentFile(LocalDate day) {
+        return new File(directory, SEGMENT_PREFIX + day + SEGMENT_SUFFIX);
+    }
+}
@@ -0,0 +1,240 @@
+package cafe.ninetyfour.persistence;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import cafe.ninetyfour.exceptions.ServiceException;
+
+/**
+ * PersistenceScheduler coalesces writes to the file-backed stores.
+ * Services mark their store dirty after a mutation instead of saving
+ * straight away; the scheduler then saves each dirty store once per
+ * flush interval, or earlier when the number of pending writes for a
+ * store reaches the configured threshold. A mutation is therefore on
+ * disk at most one flush interval after it was made.
+ */
+public class PersistenceScheduler implements Closeable {
+    private static final Logger logger = Logger.getLogger(PersistenceScheduler.class.getName());
+
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 2000;
+    public static final int DEFAULT_MAX_PENDING_WRITES = 100;
+
+    private final long flushIntervalMillis;
+    private final int maxPendingWrites;
+    private final Map<String, RegisteredStore> stores = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor;
+
+    // Metrics
+    private final AtomicLong requestedWrites = new AtomicLong();
+    private final AtomicLong performedWrites = new AtomicLong();
+    private final AtomicLong failedWrites = new AtomicLong();
+
+    /**
+     * A store that can persist its whole state on demand.
+     */
+    @FunctionalInterface
+    public interface Store {
+        /**
+         * Writes the current state of the store to disk.
+         *
+         * @throws ServiceException if the state cannot be written
+         */
+        void save() throws ServiceException;
+    }
+
+    private static final class RegisteredStore {
+        private final Store store;
+        private final AtomicInteger pendingWrites = new AtomicInteger();
+
+        private RegisteredStore(Store store) {
+            this.store = store;
+        }
+    }
+
+    /**
+     * Constructs a scheduler with the default flush interval and threshold.
+     */
+    public PersistenceScheduler() {
+        this(DEFAULT_FLUSH_INTERVAL_MILLIS, DEFAULT_MAX_PENDING_WRITES);
+    }
+
+    /**
+     * Constructs a scheduler.
+     *
+     * @param flushIntervalMillis the longest time a mutation may stay unsaved
+     * @param maxPendingWrites    the number of pending writes that triggers an early flush
+     * @throws IllegalArgumentException if either value is not positive
+     */
+    public PersistenceScheduler(long flushIntervalMillis, int maxPendingWrites) {
+        if (flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Flush interval must be positive");
+        }
+        if (maxPendingWrites <= 0) {
+            throw new IllegalArgumentException("Pending write threshold must be positive");
+        }
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxPendingWrites = maxPendingWrites;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cafe94-persistence");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flushDirtyStores,
+                flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Registers a store under a unique name.
+     *
+     * @param name  the name used when marking the store dirty
+     * @param store the store to save on flush
+     * @throws IllegalArgumentException if the name is already registered
+     */
+    public void register(String name, Store store) {
+        if (stores.putIfAbsent(name, new RegisteredStore(store)) != null) {
+            throw new IllegalArgumentException("Store already registered: " + name);
+        }
+    }
+
+    /**
+     * Records that a store has changed and must be saved. Once the
+     * scheduler is closed nothing flushes in the background any more,
+     * so the store is saved straight away on the calling thread.
+     *
+     * @param name the name of the store
+     * @throws IllegalArgumentException if no store is registered under the name
+     */
+    public void markDirty(String name) {
+        RegisteredStore registered = stores.get(name);
+        if (registered == null) {
+            throw new IllegalArgumentException("Unknown store: " + name);
+        }
+        requestedWrites.incrementAndGet();
+        int pending = registered.pendingWrites.incrementAndGet();
+        if (executor.isShutdown()) {
+            flush(name, registered);
+        } else if (pending == maxPendingWrites) {
+            try {
+                executor.execute(() -> flush(name, registered));
+            } catch (RejectedExecutionException e) {
+                // Closed since the check above
+                flush(name, registered);
+            }
+        }
+    }
+
+    /**
+     * Saves every dirty store immediately on the calling thread.
+     * Used at shutdown so that nothing inside the flush window is lost.
+     *
+     * @throws ServiceException if any store fails to save
+     */
+    public void flushNow() throws ServiceException {
+        ServiceException failure = null;
+        for (Map.Entry<String, RegisteredStore> entry : stores.entrySet()) {
+            try {
+                save(entry.getKey(), entry.getValue());
+            } catch (ServiceException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Flushes all dirty stores and stops the background thread.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            flushNow();
+        } catch (ServiceException e) {
+            logger.severe("Error flushing stores on close: " + e.getMessage());
+        }
+    }
+
+    // Metrics
+
+    /**
+     * @return the number of times a store was marked dirty
+     */
+    public long getRequestedWrites() {
+        return requestedWrites.get();
+    }
+
+    /**
+     * @return the number of file writes actually performed
+     */
+    public long getPerformedWrites() {
+        return performedWrites.get();
+    }
+
+    /**
+     * @return the number of requested writes that were absorbed into another write
+     */
+    public long getCoalescedWrites() {
+        long pending = stores.values().stream()
+                .mapToLong(store -> store.pendingWrites.get())
+                .sum();
+        return requestedWrites.get() - performedWrites.get() - pending;
+    }
+
+    /**
+     * @return the number of flushes that failed and were retried later
+     */
+    public long getFailedWrites() {
+        return failedWrites.get();
+    }
+
+    /**
+     * @return the longest time a mutation may stay unsaved, in milliseconds
+     */
+    public long getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    private void flushDirtyStores() {
+        stores.forEach(this::flush);
+    }
+
+    private void flush(String name, RegisteredStore registered) {
+        try {
+            save(name, registered);
+        } catch (ServiceException e) {
+            logger.severe("Error flushing store " + name + ": " + e.getMessage());
+        }
+    }
+
+    private void save(String name, RegisteredStore registered) throws ServiceException {
+        synchronized (registered) {
+            int pending = registered.pendingWrites.getAndSet(0);
+            if (pending == 0) {
+                return;
+            }
+            try {
+                registered.store.save();
+                performedWrites.incrementAndGet();
+                if (pending > 1) {
+                    logger.fine("Coalesced " + pending + " writes to " + name);
+                }
+            } catch (ServiceException | RuntimeException e) {
+                // Keep the store dirty so the next flush retries it
+                registered.pendingWrites.addAndGet(pending);
+                failedWrites.incrementAndGet();
+                throw e instanceof ServiceException se ? se
+                        : new ServiceException("Failed to flush " + name, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package cafe.ninetyfour.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import cafe.ninetyfour.models.Booking;
+
+/**
+ * BookingRepository stores table bookings.
+ */
+public interface BookingRepository extends Closeable {
+
+    /**
+     * @return every stored booking
+     * @throws IOException if the repository cannot be read
+     */
+    List<Booking> loadAll() throws IOException;
+
+    /**
+     * Finds the bookings starting in a period. A standing booking is
+     * found by the start of its first occurrence.
+     *
+     * @param start the start of the period, inclusive
+     * @param end the end of the period, exclusive
+     * @return the stored bookings starting in the period, in start order
+     * @throws IOException if the repository cannot be read
+     */
+    List<Booking> findBetween(LocalDateTime start, LocalDateTime end) throws IOException;
+
+    /**
+     * @param customerId the customer ID
+     * @return the stored bookings of the customer
+     * @throws IOException if the repository cannot be read
+     */
+    List<Booking> findByCustomer(int customerId) throws IOException;
+
+    /**
+     * Replaces the stored bookings. An implementation may write only the
+     * bookings that changed since they were loaded or last saved.
+     *
+     * @param bookings the complete list of bookings
+     * @throws IOException if the bookings cannot be stored
+     */
+    void saveAll(Collection<Booking> bookings) throws IOException;
+}
@@ -0,0 +1,62 @@
+package cafe.ninetyfour.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+
+import cafe.ninetyfour.models.Customer;
+
+/**
+ * CustomerRepository stores customers so that a single customer can be
+ * fetched by ID or username without reading all of them.
+ */
+public interface CustomerRepository extends Closeable {
+
+    /**
+     * Opens the repository, migrating older storage formats if needed.
+     *
+     * @throws IOException if the repository cannot be opened
+     */
+    void open() throws IOException;
+
+    /**
+     * @return the number of stored customers
+     * @throws IOException if the repository cannot be read
+     */
+    int size() throws IOException;
+
+    /**
+     * @return the highest stored user ID, or 0 if there are none
+     * @throws IOException if the repository cannot be read
+     */
+    int getMaxUserId() throws IOException;
+
+    /**
+     * @return the IDs of all stored customers in ascending order
+     * @throws IOException if the repository cannot be read
+     */
+    int[] getUserIds() throws IOException;
+
+    /**
+     * @param userId the customer ID
+     * @return the stored customer, or null if there is none
+     * @throws IOException if the repository cannot be read
+     */
+    Customer findById(int userId) throws IOException;
+
+    /**
+     * @param username the username, in any case
+     * @return the stored customer, or null if there is none
+     * @throws IOException if the repository cannot be read
+     */
+    Customer findByUsername(String username) throws IOException;
+
+    /**
+     * Stores the given customers, replacing any stored customer with the
+     * same ID. Customers that are not passed in are kept unchanged.
+     *
+     * @param customers the new or changed customers
+     * @throws IOException if the customers cannot be stored
+     */
+    void saveAll(Collection<Customer> customers) throws IOException;
+}
@@ -0,0 +1,89 @@
+package cafe.ninetyfour.repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Logger;
+
+import cafe.ninetyfour.models.Booking;
+import cafe.ninetyfour.models.ModelCodec;
+import cafe.ninetyfour.persistence.BinaryFormat;
+
+/**
+ * File-based BookingRepository storing all bookings in one binary file.
+ */
+public class FileBookingRepository implements BookingRepository {
+    private static final Logger logger = Logger.getLogger(FileBookingRepository.class.getName());
+
+    private final File file;
+
+    /**
+     * Constructs a repository backed by the given bookings file.
+     *
+     * @param file the bookings file
+     */
+    public FileBookingRepository(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Reads the bookings file. A file in the legacy Java serialization format
+     * is read and rewritten in the binary format by the next save.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Booking> loadAll() throws IOException {
+        if (!file.exists()) {
+            return new ArrayList<>();
+        }
+        if (BinaryFormat.isLegacy(file)) {
+            logger.info("Migrating legacy bookings file to binary format");
+            return (List<Booking>) BinaryFormat.readLegacy(file);
+        }
+        return ModelCodec.readBookings(BinaryFormat.open(file, BinaryFormat.BOOKINGS));
+    }
+
+    /**
+     * Reads the whole file and keeps the bookings starting in the period.
+     */
+    @Override
+    public List<Booking> findBetween(LocalDateTime start, LocalDateTime end) throws IOException {
+        List<Booking> found = new ArrayList<>();
+        for (Booking booking : loadAll()) {
+            if (!booking.getStartTime().isBefore(start) && booking.getStartTime().isBefore(end)) {
+                found.add(booking);
+            }
+        }
+        found.sort(Comparator.comparing(Booking::getStartTime));
+        return found;
+    }
+
+    /**
+     * Reads the whole file and keeps the customer's bookings.
+     */
+    @Override
+    public List<Booking> findByCustomer(int customerId) throws IOException {
+        List<Booking> found = new ArrayList<>();
+        for (Booking booking : loadAll()) {
+            if (booking.getCustomerId() == customerId) {
+                found.add(booking);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public void saveAll(Collection<Booking> bookings) throws IOException {
+        List<Booking> snapshot = new ArrayList<>(bookings);
+        BinaryFormat.write(file, BinaryFormat.BOOKINGS,
+                out -> ModelCodec.writeBookings(out, snapshot));
+    }
+
+    @Override
+    public void close() {
+    }
+}
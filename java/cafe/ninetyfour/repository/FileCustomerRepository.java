@@ -0,0 +1,97 @@
+package cafe.ninetyfour.repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Logger;
+
+import cafe.ninetyfour.models.Customer;
+import cafe.ninetyfour.models.ModelCodec;
+import cafe.ninetyfour.persistence.BinaryFormat;
+import cafe.ninetyfour.persistence.CustomerStore;
+
+/**
+ * File-based CustomerRepository backed by the indexed
+ * {@link CustomerStore}.
+ */
+public class FileCustomerRepository implements CustomerRepository {
+    private static final Logger logger = Logger.getLogger(FileCustomerRepository.class.getName());
+
+    private final File file;
+    // Null while the file does not exist yet
+    private CustomerStore store;
+
+    /**
+     * Constructs a repository backed by the given customer file.
+     *
+     * @param file the customer file
+     */
+    public FileCustomerRepository(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens the customer file, reading only its indexes into memory; each
+     * customer is read from the file when it is looked up. A file in the
+     * older list format or in legacy Java serialization is read in full
+     * and rewritten in the indexed format first.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized void open() throws IOException {
+        store = null;
+        if (!file.exists()) {
+            return;
+        }
+        if (BinaryFormat.isLegacy(file)) {
+            logger.info("Migrating legacy customer file to binary format");
+            CustomerStore.write(file, (List<Customer>) BinaryFormat.readLegacy(file), null);
+        } else if (BinaryFormat.readKind(file) == BinaryFormat.CUSTOMERS) {
+            logger.info("Migrating customer file to indexed format");
+            CustomerStore.write(file, ModelCodec.readCustomers(
+                    BinaryFormat.open(file, BinaryFormat.CUSTOMERS)), null);
+        }
+        store = CustomerStore.open(file);
+    }
+
+    @Override
+    public synchronized int size() {
+        return store == null ? 0 : store.size();
+    }
+
+    @Override
+    public synchronized int getMaxUserId() {
+        return store == null ? 0 : store.getMaxUserId();
+    }
+
+    @Override
+    public synchronized int[] getUserIds() {
+        return store == null ? new int[0] : store.getUserIds();
+    }
+
+    @Override
+    public synchronized Customer findById(int userId) throws IOException {
+        return store == null ? null : store.findById(userId);
+    }
+
+    @Override
+    public synchronized Customer findByUsername(String username) throws IOException {
+        return store == null ? null : store.findByUsername(username);
+    }
+
+    /**
+     * Rewrites the customer file, copying the records of customers that
+     * are not passed in without decoding them.
+     */
+    @Override
+    public synchronized void saveAll(Collection<Customer> customers) throws IOException {
+        CustomerStore.write(file, customers, store);
+        store = CustomerStore.open(file);
+    }
+
+    @Override
+    public synchronized void close() {
+        store = null;
+    }
+}
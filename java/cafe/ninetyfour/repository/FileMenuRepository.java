@@ -0,0 +1,48 @@
+package cafe.ninetyfour.repository;
+
+import java.io.File;
+import java.io.IOException;
+
+import cafe.ninetyfour.models.Menu;
+import cafe.ninetyfour.models.ModelCodec;
+import cafe.ninetyfour.persistence.BinaryFormat;
+
+/**
+ * File-based MenuRepository storing the menu in one binary file.
+ */
+public class FileMenuRepository implements MenuRepository {
+    private final File file;
+
+    /**
+     * Constructs a repository backed by the given menu file.
+     *
+     * @param file the menu file
+     */
+    public FileMenuRepository(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Reads the menu file, which may still be in the legacy
+     * Java serialization format.
+     */
+    @Override
+    public Menu load() throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        if (BinaryFormat.isLegacy(file)) {
+            return (Menu) BinaryFormat.readLegacy(file);
+        }
+        return ModelCodec.readMenu(BinaryFormat.open(file, BinaryFormat.MENU));
+    }
+
+    @Override
+    public void save(Menu menu) throws IOException {
+        BinaryFormat.write(file, BinaryFormat.MENU, out -> ModelCodec.writeMenu(out, menu));
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,338 @@
+package cafe.ninetyfour.repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.logging.Logger;
+
+import cafe.ninetyfour.models.ModelCodec;
+import cafe.ninetyfour.models.Order;
+import cafe.ninetyfour.persistence.BinaryFormat;
+import cafe.ninetyfour.persistence.OrderArchive;
+import cafe.ninetyfour.persistence.OrderJournal;
+import cafe.ninetyfour.persistence.OrderPartitionStore;
+
+/**
+ * File-based OrderRepository: one segment file per day plus a manifest
+ * (see {@link OrderPartitionStore}), with mutations appended to an
+ * {@link OrderJournal} between checkpoints. Closed partitions older than
+ * {@link #DEFAULT_ARCHIVE_AFTER_DAYS} days are moved into one compressed
+ * {@link OrderArchive} per month at checkpoint time; reads fall back to
+ * the archives for days no longer in the manifest.
+ */
+public class FileOrderRepository implements OrderRepository {
+    private static final Logger logger = Logger.getLogger(FileOrderRepository.class.getName());
+    private static final String JOURNAL_FILE = "orders.journal";
+    // Name of the single orders file used before partitioning
+    private static final String LEGACY_ORDERS_FILE = "orders.dat";
+    private static final String ARCHIVE_PREFIX = "archive-";
+    private static final String ARCHIVE_SUFFIX = ".dat";
+    public static final int DEFAULT_ARCHIVE_AFTER_DAYS = 30;
+
+    private final File directory;
+    private final OrderPartitionStore partitionStore;
+    // Block indexes of the monthly archives, read at recovery
+    private final NavigableMap<YearMonth, OrderArchive> archives = new TreeMap<>();
+    private int archiveAfterDays = DEFAULT_ARCHIVE_AFTER_DAYS;
+    private final File journalFile;
+    private final OrderJournal journal;
+    // Null when there are no pre-partitioning files to migrate
+    private final File legacyDirectory;
+
+    /**
+     * Constructs a repository storing its files in the given directory.
+     *
+     * @param directory the directory for the segments, manifest and journal
+     */
+    public FileOrderRepository(File directory) {
+        this(directory, null);
+    }
+
+    /**
+     * Constructs a repository that also migrates the orders file and journal
+     * written to {@code legacyDirectory} before orders were partitioned.
+     *
+     * @param directory       the directory for the segments, manifest and journal
+     * @param legacyDirectory the directory of the old orders.dat and orders.journal, or null
+     */
+    public FileOrderRepository(File directory, File legacyDirectory) {
+        this.directory = directory;
+        this.partitionStore = new OrderPartitionStore(directory);
+        this.journalFile = new File(directory, JOURNAL_FILE);
+        this.journal = new OrderJournal(journalFile);
+        this.legacyDirectory = legacyDirectory;
+    }
+
+    /**
+     * Sets how many days a closed partition stays uncompressed
+     * before a checkpoint archives it.
+     *
+     * @param days the age in days; 0 archives every closed partition before today
+     */
+    public void setArchiveAfterDays(int days) {
+        if (days < 0) throw new IllegalArgumentException("Days cannot be negative");
+        this.archiveAfterDays = days;
+    }
+
+    /**
+     * Reads the manifest and archive indexes and replays the journal. A single orders file from
+     * before partitioning (binary or legacy Java serialization) in the
+     * legacy directory is split into partitions first, and a journal left
+     * there is moved next to them.
+     */
+    @Override
+    public int recover(OrderJournal.Listener listener) throws IOException {
+        partitionStore.load();
+        loadArchives();
+        if (legacyDirectory != null) {
+            File legacyOrders = new File(legacyDirectory, LEGACY_ORDERS_FILE);
+            if (legacyOrders.exists() && partitionStore.isEmpty()) {
+                migrateOrdersFile(legacyOrders);
+            }
+            File legacyJournal = new File(legacyDirectory, JOURNAL_FILE);
+            if (legacyJournal.exists() && !journalFile.exists()) {
+                journalFile.getAbsoluteFile().getParentFile().mkdirs();
+                if (!legacyJournal.renameTo(journalFile)) {
+                    logger.warning("Could not move order journal to " + journalFile);
+                }
+            }
+        }
+        return journal.recover(listener);
+    }
+
+    /**
+     * Splits the pre-partitioning orders file into day partitions and
+     * renames it, so it is not migrated twice.
+     */
+    @SuppressWarnings("unchecked")
+    private void migrateOrdersFile(File file) throws IOException {
+        List<Order> loaded;
+        if (BinaryFormat.isLegacy(file)) {
+            logger.info("Migrating legacy orders file to binary format");
+            loaded = (List<Order>) BinaryFormat.readLegacy(file);
+        } else {
+            loaded = ModelCodec.readOrders(BinaryFormat.open(file, BinaryFormat.ORDERS));
+        }
+
+        Map<LocalDate, List<Order>> byDay = new TreeMap<>();
+        for (Order order : loaded) {
+            byDay.computeIfAbsent(OrderPartitionStore.dayOf(order), day -> new ArrayList<>()).add(order);
+        }
+        for (Map.Entry<LocalDate, List<Order>> entry : byDay.entrySet()) {
+            partitionStore.write(entry.getKey(), entry.getValue());
+        }
+        partitionStore.saveManifest();
+        if (!file.renameTo(new File(file.getPath() + ".migrated"))) {
+            logger.warning("Could not rename migrated orders file " + file);
+        }
+        logger.info("Migrated " + loaded.size() + " orders into " + byDay.size() + " partitions");
+    }
+
+    private synchronized void loadArchives() throws IOException {
+        archives.clear();
+        File[] files = directory.listFiles((dir, name) ->
+                name.startsWith(ARCHIVE_PREFIX) && name.endsWith(ARCHIVE_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            YearMonth month = YearMonth.parse(name.substring(ARCHIVE_PREFIX.length(),
+                    name.length() - ARCHIVE_SUFFIX.length()));
+            archives.put(month, OrderArchive.open(file));
+        }
+    }
+
+    private synchronized List<OrderArchive> getArchives() {
+        return new ArrayList<>(archives.values());
+    }
+
+    private synchronized OrderArchive getArchive(LocalDate day) {
+        return archives.get(YearMonth.from(day));
+    }
+
+    @Override
+    public SortedSet<LocalDate> getDays() {
+        SortedSet<LocalDate> days = new TreeSet<>();
+        partitionStore.getPartitions().forEach(partition -> days.add(partition.getDay()));
+        getArchives().forEach(archive -> days.addAll(archive.getDays()));
+        return days;
+    }
+
+    @Override
+    public Set<LocalDate> getOpenDays() {
+        Set<LocalDate> days = new HashSet<>();
+        for (OrderPartitionStore.Partition partition : partitionStore.getPartitions()) {
+            if (partition.isOpen()) {
+                days.add(partition.getDay());
+            }
+        }
+        return days;
+    }
+
+    @Override
+    public int getMaxOrderId() {
+        int max = partitionStore.getMaxOrderId();
+        for (OrderArchive archive : getArchives()) {
+            max = Math.max(max, archive.getMaxOrderId());
+        }
+        return max;
+    }
+
+    /**
+     * Reads the day's segment, or its blocks of the month's archive if the
+     * day has been archived. A day rewritten after archiving (e.g. a late
+     * status change) is read from its segment.
+     */
+    @Override
+    public List<Order> findByDay(LocalDate day) throws IOException {
+        if (partitionStore.getPartition(day) != null) {
+            return partitionStore.read(day);
+        }
+        OrderArchive archive = getArchive(day);
+        return archive != null ? archive.read(day) : new ArrayList<>();
+    }
+
+    /**
+     * Reads the one segment or archived day whose ID range contains the order.
+     */
+    @Override
+    public Order findById(int orderId) throws IOException {
+        LocalDate day = partitionStore.findDayOf(orderId);
+        if (day == null) {
+            for (OrderArchive archive : getArchives()) {
+                day = archive.findDayOf(orderId);
+                if (day != null) {
+                    break;
+                }
+            }
+        }
+        if (day == null) {
+            return null;
+        }
+        for (Order order : findByDay(day)) {
+            if (order.getOrderId() == orderId) {
+                return order;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the segments one at a time and streams the archives,
+     * keeping only the customer's orders.
+     */
+    @Override
+    public List<Order> findByCustomer(int customerId) throws IOException {
+        List<Order> result = new ArrayList<>();
+        Set<LocalDate> segmentDays = new HashSet<>();
+        for (OrderPartitionStore.Partition partition : partitionStore.getPartitions()) {
+            segmentDays.add(partition.getDay());
+            for (Order order : partitionStore.read(partition.getDay())) {
+                if (order.getCustomerId() == customerId) {
+                    result.add(order);
+                }
+            }
+        }
+        for (OrderArchive archive : getArchives()) {
+            archive.scan(null, null, order -> {
+                if (order.getCustomerId() == customerId
+                        && !segmentDays.contains(OrderPartitionStore.dayOf(order))) {
+                    result.add(order);
+                }
+            });
+        }
+        return result;
+    }
+
+    @Override
+    public void orderPlaced(Order order) throws IOException {
+        journal.appendOrderPlaced(order);
+    }
+
+    @Override
+    public void statusChanged(Order order) throws IOException {
+        journal.appendStatusChanged(order.getOrderId(), order.getStatus());
+    }
+
+    @Override
+    public int getPendingMutations() {
+        return journal.getRecordCount();
+    }
+
+    /**
+     * Rewrites the changed segments, archives the closed partitions that
+     * are old enough and saves the manifest, then truncates the journal.
+     */
+    @Override
+    public void checkpoint(Map<LocalDate, ? extends Collection<Order>> changedDays)
+            throws IOException {
+        for (Map.Entry<LocalDate, ? extends Collection<Order>> entry : changedDays.entrySet()) {
+            partitionStore.write(entry.getKey(), entry.getValue());
+        }
+        List<LocalDate> archived = archiveClosedPartitions(changedDays.keySet());
+        partitionStore.saveManifest();
+        for (LocalDate day : archived) {
+            partitionStore.deleteSegment(day);
+        }
+        journal.reset();
+    }
+
+    /**
+     * Moves closed partitions older than the archive age into their month's
+     * archive and drops them from the manifest. A month's existing blocks
+     * are copied over still compressed. Days changed by this checkpoint
+     * wait for the next one.
+     *
+     * @return the archived days, whose segments can be deleted once the
+     *         manifest is saved
+     */
+    private List<LocalDate> archiveClosedPartitions(Set<LocalDate> changedDays) throws IOException {
+        LocalDate cutoff = LocalDate.now().minusDays(archiveAfterDays);
+        Map<YearMonth, List<LocalDate>> due = new TreeMap<>();
+        for (OrderPartitionStore.Partition partition : partitionStore.getPartitions()) {
+            LocalDate day = partition.getDay();
+            if (!partition.isOpen() && day.isBefore(cutoff) && !changedDays.contains(day)) {
+                due.computeIfAbsent(YearMonth.from(day), month -> new ArrayList<>()).add(day);
+            }
+        }
+
+        List<LocalDate> archived = new ArrayList<>();
+        for (Map.Entry<YearMonth, List<LocalDate>> entry : due.entrySet()) {
+            YearMonth month = entry.getKey();
+            List<LocalDate> days = entry.getValue();
+            long rawBytes = 0;
+            try (OrderArchive.Writer writer = new OrderArchive.Writer(archiveFile(month))) {
+                OrderArchive existing = getArchive(month.atDay(1));
+                if (existing != null) {
+                    writer.copyFrom(existing, new HashSet<>(days));
+                }
+                for (LocalDate day : days) {
+                    writer.writeDay(day, partitionStore.read(day));
+                    rawBytes += partitionStore.segmentFile(day).length();
+                }
+                OrderArchive archive = writer.commit();
+                synchronized (this) {
+                    archives.put(month, archive);
+                }
+            }
+            days.forEach(partitionStore::remove);
+            archived.addAll(days);
+            logger.info("Archived " + days.size() + " order partitions (" + rawBytes
+                    + " bytes) into " + archiveFile(month).getName() + " ("
+                    + archiveFile(month).length() + " bytes)");
+        }
+        return archived;
+    }
+
+    private File archiveFile(YearMonth month) {
+        return new File(directory, ARCHIVE_PREFIX + month + ARCHIVE_SUFFIX);
+    }
+
+    @Override
+    public void close() throws IOException {
+        journal.close();
+    }
+}
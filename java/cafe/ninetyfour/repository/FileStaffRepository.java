@@ -0,0 +1,59 @@
+package cafe.ninetyfour.repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import cafe.ninetyfour.models.ModelCodec;
+import cafe.ninetyfour.models.Staff;
+import cafe.ninetyfour.persistence.BinaryFormat;
+
+/**
+ * File-based StaffRepository storing the staff list in one binary file.
+ */
+public class FileStaffRepository implements StaffRepository {
+    private static final Logger logger = Logger.getLogger(FileStaffRepository.class.getName());
+
+    private final File file;
+
+    /**
+     * Constructs a repository backed by the given staff file.
+     *
+     * @param file the staff file
+     */
+    public FileStaffRepository(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Reads the staff file. A file in the legacy Java serialization format
+     * is read and rewritten in the binary format by the next save.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Staff> loadAll() throws IOException {
+        if (!file.exists()) {
+            return new ArrayList<>();
+        }
+        if (BinaryFormat.isLegacy(file)) {
+            logger.info("Migrating legacy staff file to binary format");
+            return new ArrayList<>(((Map<String, Staff>) BinaryFormat.readLegacy(file)).values());
+        }
+        return ModelCodec.readStaffList(BinaryFormat.open(file, BinaryFormat.STAFF));
+    }
+
+    @Override
+    public void saveAll(Collection<Staff> staffMembers) throws IOException {
+        List<Staff> snapshot = new ArrayList<>(staffMembers);
+        BinaryFormat.write(file, BinaryFormat.STAFF,
+                out -> ModelCodec.writeStaffList(out, snapshot));
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,159 @@
+package cafe.ninetyfour.repository;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+import cafe.ninetyfour.models.Booking;
+import cafe.ninetyfour.models.ModelCodec;
+
+/**
+ * JDBC BookingRepository with one row per booking, indexed by
+ * customer and start time. Saving writes only the rows whose
+ * payload changed since they were loaded or last saved.
+ */
+public class JdbcBookingRepository implements BookingRepository {
+    private static final String SELECT_PAYLOAD = "SELECT payload FROM bookings ";
+    private static final String DELETE = "DELETE FROM bookings WHERE id = ?";
+    private static final String INSERT =
+            "INSERT INTO bookings (id, customer_id, start_time, payload) VALUES (?, ?, ?, ?)";
+
+    private final JdbcStore store;
+    // The payload of every stored row by booking ID; null until first read
+    private Map<Integer, byte[]> stored;
+
+    JdbcBookingRepository(JdbcStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public synchronized List<Booking> loadAll() throws IOException {
+        Map<Integer, byte[]> payloads = readPayloads();
+        List<Booking> bookings = new ArrayList<>(payloads.size());
+        for (byte[] payload : payloads.values()) {
+            bookings.add(ModelCodec.readBooking(JdbcStore.decode(payload)));
+        }
+        stored = payloads;
+        return bookings;
+    }
+
+    /**
+     * Uses the index on the start time.
+     */
+    @Override
+    public List<Booking> findBetween(LocalDateTime start, LocalDateTime end) throws IOException {
+        return select("WHERE start_time >= ? AND start_time < ? ORDER BY start_time, id",
+                epochMillis(start), epochMillis(end));
+    }
+
+    /**
+     * Uses the index on the customer ID.
+     */
+    @Override
+    public List<Booking> findByCustomer(int customerId) throws IOException {
+        return select("WHERE customer_id = ? ORDER BY id", customerId);
+    }
+
+    /**
+     * Deletes the rows of bookings that are gone and replaces the rows
+     * whose payload changed, in one transaction with batched statements.
+     */
+    @Override
+    public synchronized void saveAll(Collection<Booking> bookings) throws IOException {
+        if (stored == null) {
+            stored = readPayloads();
+        }
+        List<Booking> changed = new ArrayList<>();
+        Map<Integer, byte[]> payloads = new HashMap<>();
+        for (Booking booking : new ArrayList<>(bookings)) {
+            byte[] payload = JdbcStore.encode(out -> ModelCodec.writeBooking(out, booking));
+            payloads.put(booking.getReservationId(), payload);
+            if (!Arrays.equals(payload, stored.get(booking.getReservationId()))) {
+                changed.add(booking);
+            }
+        }
+        List<Integer> deleted = new ArrayList<>();
+        for (Integer id : stored.keySet()) {
+            if (!payloads.containsKey(id)) {
+                deleted.add(id);
+            }
+        }
+        if (changed.isEmpty() && deleted.isEmpty()) {
+            return;
+        }
+        store.transaction(connection -> {
+            List<Integer> replaced = new ArrayList<>(deleted);
+            changed.forEach(booking -> replaced.add(booking.getReservationId()));
+            deleteAll(connection, replaced);
+            try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+                for (Booking booking : changed) {
+                    statement.setInt(1, booking.getReservationId());
+                    statement.setInt(2, booking.getCustomerId());
+                    statement.setLong(3, epochMillis(booking.getStartTime()));
+                    statement.setBytes(4, payloads.get(booking.getReservationId()));
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            return null;
+        });
+        stored = payloads;
+    }
+
+    @Override
+    public void close() {
+        // The connection is owned by Repositories
+    }
+
+    private Map<Integer, byte[]> readPayloads() throws IOException {
+        return store.query(connection -> {
+            Map<Integer, byte[]> payloads = new LinkedHashMap<>();
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT id, payload FROM bookings ORDER BY id");
+                 ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    payloads.put(rows.getInt(1), rows.getBytes(2));
+                }
+            }
+            return payloads;
+        });
+    }
+
+    private List<Booking> select(String where, long... keys) throws IOException {
+        return store.query(connection -> {
+            List<Booking> bookings = new ArrayList<>();
+            try (PreparedStatement statement = connection.prepareStatement(SELECT_PAYLOAD + where)) {
+                for (int i = 0; i < keys.length; i++) {
+                    statement.setLong(i + 1, keys[i]);
+                }
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) {
+                        bookings.add(ModelCodec.readBooking(JdbcStore.decode(rows.getBytes(1))));
+                    }
+                }
+            }
+            return bookings;
+        });
+    }
+
+    private static void deleteAll(Connection connection, Collection<Integer> ids)
+            throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(DELETE)) {
+            for (int id : ids) {
+                statement.setInt(1, id);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    // Same UTC epoch millis as the codec timestamps
+    private static long epochMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
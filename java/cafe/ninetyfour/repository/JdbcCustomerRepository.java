@@ -0,0 +1,137 @@
+package cafe.ninetyfour.repository;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import cafe.ninetyfour.models.Customer;
+import cafe.ninetyfour.models.ModelCodec;
+import cafe.ninetyfour.persistence.CustomerStore;
+
+/**
+ * JDBC CustomerRepository with one row per customer, looked up through
+ * the primary key or the unique index on the normalized username.
+ */
+public class JdbcCustomerRepository implements CustomerRepository {
+    private static final String DELETE = "DELETE FROM customers WHERE id = ?";
+    private static final String INSERT =
+            "INSERT INTO customers (id, username, payload) VALUES (?, ?, ?)";
+
+    private final JdbcStore store;
+
+    JdbcCustomerRepository(JdbcStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public void open() {
+        // The table is created with the connection
+    }
+
+    @Override
+    public int size() throws IOException {
+        return queryInt("SELECT COUNT(*) FROM customers");
+    }
+
+    @Override
+    public int getMaxUserId() throws IOException {
+        return queryInt("SELECT MAX(id) FROM customers");
+    }
+
+    @Override
+    public int[] getUserIds() throws IOException {
+        return store.query(connection -> {
+            List<Integer> ids = new ArrayList<>();
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT id FROM customers ORDER BY id");
+                 ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    ids.add(rows.getInt(1));
+                }
+            }
+            return ids.stream().mapToInt(Integer::intValue).toArray();
+        });
+    }
+
+    @Override
+    public Customer findById(int userId) throws IOException {
+        return store.query(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT payload FROM customers WHERE id = ?")) {
+                statement.setInt(1, userId);
+                try (ResultSet rows = statement.executeQuery()) {
+                    return rows.next()
+                            ? ModelCodec.readCustomer(JdbcStore.decode(rows.getBytes(1)))
+                            : null;
+                }
+            }
+        });
+    }
+
+    @Override
+    public Customer findByUsername(String username) throws IOException {
+        return store.query(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT payload FROM customers WHERE username = ?")) {
+                statement.setString(1, CustomerStore.normalize(username));
+                try (ResultSet rows = statement.executeQuery()) {
+                    return rows.next()
+                            ? ModelCodec.readCustomer(JdbcStore.decode(rows.getBytes(1)))
+                            : null;
+                }
+            }
+        });
+    }
+
+    /**
+     * Replaces the given customers' rows in one transaction, using batched
+     * deletes and inserts.
+     */
+    @Override
+    public void saveAll(Collection<Customer> customers) throws IOException {
+        if (customers.isEmpty()) {
+            return;
+        }
+        List<byte[]> payloads = new ArrayList<>(customers.size());
+        for (Customer customer : customers) {
+            payloads.add(JdbcStore.encode(out -> ModelCodec.writeCustomer(out, customer)));
+        }
+        store.transaction(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(DELETE)) {
+                for (Customer customer : customers) {
+                    statement.setInt(1, customer.getUserId());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+                int i = 0;
+                for (Customer customer : customers) {
+                    statement.setInt(1, customer.getUserId());
+                    statement.setString(2, CustomerStore.normalize(customer.getUsername()));
+                    statement.setBytes(3, payloads.get(i++));
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void close() {
+        // The connection is owned by Repositories
+    }
+
+    private int queryInt(String sql) throws IOException {
+        return store.query(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql);
+                 ResultSet rows = statement.executeQuery()) {
+                return rows.next() ? rows.getInt(1) : 0;
+            }
+        });
+    }
+}
@@ -0,0 +1,60 @@
+package cafe.ninetyfour.repository;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import cafe.ninetyfour.models.Menu;
+import cafe.ninetyfour.models.ModelCodec;
+
+/**
+ * JDBC MenuRepository storing the menu as a single row.
+ */
+public class JdbcMenuRepository implements MenuRepository {
+    private static final int MENU_ROW = 1;
+
+    private final JdbcStore store;
+
+    JdbcMenuRepository(JdbcStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public Menu load() throws IOException {
+        return store.query(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT payload FROM menu WHERE id = ?")) {
+                statement.setInt(1, MENU_ROW);
+                try (ResultSet rows = statement.executeQuery()) {
+                    return rows.next()
+                            ? ModelCodec.readMenu(JdbcStore.decode(rows.getBytes(1)))
+                            : null;
+                }
+            }
+        });
+    }
+
+    @Override
+    public void save(Menu menu) throws IOException {
+        byte[] payload = JdbcStore.encode(out -> ModelCodec.writeMenu(out, menu));
+        store.transaction(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "DELETE FROM menu WHERE id = ?")) {
+                statement.setInt(1, MENU_ROW);
+                statement.executeUpdate();
+            }
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO menu (id, payload) VALUES (?, ?)")) {
+                statement.setInt(1, MENU_ROW);
+                statement.setBytes(2, payload);
+                statement.executeUpdate();
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void close() {
+        // The connection is owned by Repositories
+    }
+}
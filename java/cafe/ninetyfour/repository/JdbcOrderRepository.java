@@ -0,0 +1,191 @@
+package cafe.ninetyfour.repository;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.*;
+
+import cafe.ninetyfour.enums.OrderStatus;
+import cafe.ninetyfour.models.ModelCodec;
+import cafe.ninetyfour.models.Order;
+import cafe.ninetyfour.persistence.OrderJournal;
+import cafe.ninetyfour.persistence.OrderPartitionStore;
+
+/**
+ * JDBC OrderRepository with one row per order. Every mutation is committed
+ * as it happens, so there is nothing to replay on recovery; lookups by ID,
+ * customer and day use the primary key and the column indexes.
+ */
+public class JdbcOrderRepository implements OrderRepository {
+    private static final String SELECT_PAYLOAD = "SELECT payload FROM orders ";
+    private static final String DELETE = "DELETE FROM orders WHERE id = ?";
+    private static final String INSERT =
+            "INSERT INTO orders (id, customer_id, order_day, status, payload) VALUES (?, ?, ?, ?, ?)";
+    private static final String UPDATE_STATUS =
+            "UPDATE orders SET status = ?, payload = ? WHERE id = ?";
+
+    private final JdbcStore store;
+
+    JdbcOrderRepository(JdbcStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public int recover(OrderJournal.Listener listener) {
+        return 0;
+    }
+
+    @Override
+    public SortedSet<LocalDate> getDays() throws IOException {
+        return store.query(connection -> {
+            SortedSet<LocalDate> days = new TreeSet<>();
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT DISTINCT order_day FROM orders");
+                 ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    days.add(LocalDate.ofEpochDay(rows.getLong(1)));
+                }
+            }
+            return days;
+        });
+    }
+
+    @Override
+    public Set<LocalDate> getOpenDays() throws IOException {
+        return store.query(connection -> {
+            Set<LocalDate> days = new HashSet<>();
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT DISTINCT order_day FROM orders WHERE status <> ?")) {
+                statement.setInt(1, OrderStatus.COMPLETED.ordinal());
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) {
+                        days.add(LocalDate.ofEpochDay(rows.getLong(1)));
+                    }
+                }
+            }
+            return days;
+        });
+    }
+
+    @Override
+    public int getMaxOrderId() throws IOException {
+        return store.query(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT MAX(id) FROM orders");
+                 ResultSet rows = statement.executeQuery()) {
+                return rows.next() ? rows.getInt(1) : 0;
+            }
+        });
+    }
+
+    @Override
+    public List<Order> findByDay(LocalDate day) throws IOException {
+        return select("WHERE order_day = ? ORDER BY id", day.toEpochDay());
+    }
+
+    @Override
+    public Order findById(int orderId) throws IOException {
+        List<Order> orders = select("WHERE id = ?", orderId);
+        return orders.isEmpty() ? null : orders.get(0);
+    }
+
+    @Override
+    public List<Order> findByCustomer(int customerId) throws IOException {
+        return select("WHERE customer_id = ? ORDER BY id", customerId);
+    }
+
+    @Override
+    public void orderPlaced(Order order) throws IOException {
+        upsert(List.of(order));
+    }
+
+    @Override
+    public void statusChanged(Order order) throws IOException {
+        byte[] payload = JdbcStore.encode(out -> ModelCodec.writeOrder(out, order));
+        store.query(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(UPDATE_STATUS)) {
+                statement.setInt(1, order.getStatus().ordinal());
+                statement.setBytes(2, payload);
+                statement.setInt(3, order.getOrderId());
+                return statement.executeUpdate();
+            }
+        });
+    }
+
+    @Override
+    public int getPendingMutations() {
+        return 0;
+    }
+
+    /**
+     * Re-stores the changed days in one batch, picking up changes
+     * that were made without a status change (e.g. approval).
+     */
+    @Override
+    public void checkpoint(Map<LocalDate, ? extends Collection<Order>> changedDays)
+            throws IOException {
+        List<Order> orders = new ArrayList<>();
+        changedDays.values().forEach(orders::addAll);
+        upsert(orders);
+    }
+
+    @Override
+    public void close() {
+        // The connection is owned by Repositories
+    }
+
+    private List<Order> select(String where, long key) throws IOException {
+        return store.query(connection -> {
+            List<Order> orders = new ArrayList<>();
+            try (PreparedStatement statement = connection.prepareStatement(SELECT_PAYLOAD + where)) {
+                statement.setLong(1, key);
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) {
+                        orders.add(ModelCodec.readOrder(JdbcStore.decode(rows.getBytes(1))));
+                    }
+                }
+            }
+            return orders;
+        });
+    }
+
+    private void upsert(Collection<Order> orders) throws IOException {
+        if (orders.isEmpty()) {
+            return;
+        }
+        List<byte[]> payloads = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            payloads.add(JdbcStore.encode(out -> ModelCodec.writeOrder(out, order)));
+        }
+        store.transaction(connection -> {
+            deleteAll(connection, orders);
+            try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+                int i = 0;
+                for (Order order : orders) {
+                    statement.setInt(1, order.getOrderId());
+                    statement.setInt(2, order.getCustomerId());
+                    statement.setLong(3, OrderPartitionStore.dayOf(order).toEpochDay());
+                    statement.setInt(4, order.getStatus().ordinal());
+                    statement.setBytes(5, payloads.get(i++));
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            return null;
+        });
+    }
+
+    private static void deleteAll(Connection connection, Collection<Order> orders)
+            throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(DELETE)) {
+            for (Order order : orders) {
+                statement.setInt(1, order.getOrderId());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+}
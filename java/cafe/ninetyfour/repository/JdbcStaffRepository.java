@@ -0,0 +1,72 @@
+package cafe.ninetyfour.repository;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import cafe.ninetyfour.models.ModelCodec;
+import cafe.ninetyfour.models.Staff;
+
+/**
+ * JDBC StaffRepository with one row per staff member.
+ */
+public class JdbcStaffRepository implements StaffRepository {
+    private static final String INSERT =
+            "INSERT INTO staff (id, username, payload) VALUES (?, ?, ?)";
+
+    private final JdbcStore store;
+
+    JdbcStaffRepository(JdbcStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public List<Staff> loadAll() throws IOException {
+        return store.query(connection -> {
+            List<Staff> staffMembers = new ArrayList<>();
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT payload FROM staff ORDER BY id");
+                 ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    staffMembers.add(ModelCodec.readStaff(JdbcStore.decode(rows.getBytes(1))));
+                }
+            }
+            return staffMembers;
+        });
+    }
+
+    /**
+     * Replaces all rows in one transaction with a batched insert.
+     */
+    @Override
+    public void saveAll(Collection<Staff> staffMembers) throws IOException {
+        List<Staff> snapshot = new ArrayList<>(staffMembers);
+        List<byte[]> payloads = new ArrayList<>(snapshot.size());
+        for (Staff staff : snapshot) {
+            payloads.add(JdbcStore.encode(out -> ModelCodec.writeStaff(out, staff)));
+        }
+        store.transaction(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("DELETE FROM staff")) {
+                statement.executeUpdate();
+            }
+            try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+                for (int i = 0; i < snapshot.size(); i++) {
+                    statement.setInt(1, snapshot.get(i).getUserId());
+                    statement.setString(2, snapshot.get(i).getUsername());
+                    statement.setBytes(3, payloads.get(i));
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void close() {
+        // The connection is owned by Repositories
+    }
+}
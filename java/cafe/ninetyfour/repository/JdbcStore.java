@@ -0,0 +1,135 @@
+package cafe.ninetyfour.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import cafe.ninetyfour.persistence.BinaryFormat;
+import cafe.ninetyfour.persistence.BinaryInput;
+
+/**
+ * JdbcStore owns the connection to the embedded database shared by the
+ * JDBC repositories and creates their tables. Only java.sql is used, so
+ * any embedded file-backed database with a JDBC driver on the classpath
+ * (e.g. H2 or SQLite) can be selected through the connection URL.
+ * <p>
+ * Each row keeps the whole aggregate as a {@code payload} blob encoded
+ * with ModelCodec, next to the indexed columns the queries filter on.
+ */
+class JdbcStore implements Closeable {
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS orders (id INTEGER PRIMARY KEY, "
+                    + "customer_id INTEGER NOT NULL, order_day BIGINT NOT NULL, "
+                    + "status INTEGER NOT NULL, payload BLOB NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS idx_orders_customer ON orders (customer_id)",
+            "CREATE INDEX IF NOT EXISTS idx_orders_day ON orders (order_day)",
+            "CREATE INDEX IF NOT EXISTS idx_orders_status ON orders (status)",
+            "CREATE TABLE IF NOT EXISTS customers (id INTEGER PRIMARY KEY, "
+                    + "username VARCHAR(255) NOT NULL, payload BLOB NOT NULL)",
+            "CREATE UNIQUE INDEX IF NOT EXISTS idx_customers_username ON customers (username)",
+            "CREATE TABLE IF NOT EXISTS staff (id INTEGER PRIMARY KEY, "
+                    + "username VARCHAR(255) NOT NULL, payload BLOB NOT NULL)",
+            "CREATE TABLE IF NOT EXISTS bookings (id INTEGER PRIMARY KEY, "
+                    + "customer_id INTEGER NOT NULL, start_time BIGINT NOT NULL, "
+                    + "payload BLOB NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS idx_bookings_customer ON bookings (customer_id)",
+            "CREATE INDEX IF NOT EXISTS idx_bookings_start ON bookings (start_time)",
+            "CREATE TABLE IF NOT EXISTS menu (id INTEGER PRIMARY KEY, payload BLOB NOT NULL)"
+    };
+
+    private final Connection connection;
+
+    /**
+     * Work run against the shared connection.
+     */
+    @FunctionalInterface
+    interface SqlWork<T> {
+        T run(Connection connection) throws SQLException, IOException;
+    }
+
+    /**
+     * Connects to the database and creates any missing tables.
+     *
+     * @param url the JDBC connection URL
+     * @throws IOException if the database cannot be opened
+     */
+    JdbcStore(String url) throws IOException {
+        try {
+            this.connection = DriverManager.getConnection(url);
+            try (Statement statement = connection.createStatement()) {
+                for (String sql : SCHEMA) {
+                    statement.execute(sql);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to open database " + url, e);
+        }
+    }
+
+    /**
+     * Runs a single statement or query in auto-commit mode.
+     */
+    synchronized <T> T query(SqlWork<T> work) throws IOException {
+        try {
+            return work.run(connection);
+        } catch (SQLException e) {
+            throw new IOException("Database query failed", e);
+        }
+    }
+
+    /**
+     * Runs several statements as one transaction, rolling back if any fails.
+     */
+    synchronized <T> T transaction(SqlWork<T> work) throws IOException {
+        try {
+            connection.setAutoCommit(false);
+            try {
+                T result = work.run(connection);
+                connection.commit();
+                return result;
+            } catch (SQLException | IOException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IOException("Database transaction failed", e);
+        }
+    }
+
+    /**
+     * Encodes a payload blob, prefixed with the schema version like a journal record.
+     */
+    static byte[] encode(BinaryFormat.Encoder encoder) throws IOException {
+        return BinaryFormat.encode(out -> {
+            out.writeVarInt(BinaryFormat.CURRENT_VERSION);
+            encoder.encode(out);
+        });
+    }
+
+    /**
+     * Opens a payload blob written by {@link #encode}.
+     */
+    static BinaryInput decode(byte[] payload) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        int version = new BinaryInput(buffer, BinaryFormat.CURRENT_VERSION).readVarInt();
+        if (version < 1 || version > BinaryFormat.CURRENT_VERSION) {
+            throw new IOException("Unsupported payload version " + version);
+        }
+        return new BinaryInput(buffer, version);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new IOException("Failed to close database", e);
+        }
+    }
+}
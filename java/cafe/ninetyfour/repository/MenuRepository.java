@@ -0,0 +1,26 @@
+package cafe.ninetyfour.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import cafe.ninetyfour.models.Menu;
+
+/**
+ * MenuRepository stores the menu and its daily special.
+ */
+public interface MenuRepository extends Closeable {
+
+    /**
+     * @return the stored menu, or null if none has been saved
+     * @throws IOException if the menu cannot be read
+     */
+    Menu load() throws IOException;
+
+    /**
+     * Replaces the stored menu.
+     *
+     * @param menu the menu to store
+     * @throws IOException if the menu cannot be stored
+     */
+    void save(Menu menu) throws IOException;
+}
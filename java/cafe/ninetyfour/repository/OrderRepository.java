@@ -0,0 +1,101 @@
+package cafe.ninetyfour.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+
+import cafe.ninetyfour.models.Order;
+import cafe.ninetyfour.persistence.OrderJournal;
+
+/**
+ * OrderRepository stores orders grouped by the day they were placed.
+ * OrderService keeps the days it is working on in memory and uses the
+ * repository for everything else, so an implementation only needs to
+ * answer the queries below without holding the order history itself.
+ */
+public interface OrderRepository extends Closeable {
+
+    /**
+     * Prepares the repository and replays any mutation that was recorded
+     * but not yet checkpointed, e.g. after a crash.
+     *
+     * @param listener receives the replayed mutations
+     * @return the number of mutations replayed
+     * @throws IOException if the repository cannot be read
+     */
+    int recover(OrderJournal.Listener listener) throws IOException;
+
+    /**
+     * @return every day that has stored orders, in ascending order
+     * @throws IOException if the repository cannot be read
+     */
+    SortedSet<LocalDate> getDays() throws IOException;
+
+    /**
+     * @return the days that had an unfinished order when last stored
+     * @throws IOException if the repository cannot be read
+     */
+    Set<LocalDate> getOpenDays() throws IOException;
+
+    /**
+     * @return the highest stored order ID, or 0 if there are none
+     * @throws IOException if the repository cannot be read
+     */
+    int getMaxOrderId() throws IOException;
+
+    /**
+     * @param day the day the orders were placed
+     * @return the stored orders of that day
+     * @throws IOException if the repository cannot be read
+     */
+    List<Order> findByDay(LocalDate day) throws IOException;
+
+    /**
+     * @param orderId the order ID
+     * @return the stored order, or null if there is none
+     * @throws IOException if the repository cannot be read
+     */
+    Order findById(int orderId) throws IOException;
+
+    /**
+     * @param customerId the customer ID
+     * @return the stored orders of the customer
+     * @throws IOException if the repository cannot be read
+     */
+    List<Order> findByCustomer(int customerId) throws IOException;
+
+    /**
+     * Durably records a newly placed order.
+     *
+     * @param order the order that was placed
+     * @throws IOException if the order cannot be recorded
+     */
+    void orderPlaced(Order order) throws IOException;
+
+    /**
+     * Durably records a status change.
+     *
+     * @param order the order whose status changed
+     * @throws IOException if the change cannot be recorded
+     */
+    void statusChanged(Order order) throws IOException;
+
+    /**
+     * @return the number of mutations recorded since the last checkpoint
+     */
+    int getPendingMutations();
+
+    /**
+     * Stores the complete contents of the given days, after which the
+     * recorded mutations are no longer needed for recovery.
+     *
+     * @param changedDays the days changed since the last checkpoint, with all their orders
+     * @throws IOException if the days cannot be stored
+     */
+    void checkpoint(Map<LocalDate, ? extends Collection<Order>> changedDays) throws IOException;
+}
@@ -0,0 +1,148 @@
+package cafe.ninetyfour.repository;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+/**
+ * Repositories groups the repository of every aggregate for one backend.
+ * The backend is chosen with the {@code cafe94.store} system property:
+ * {@code file} (the default) keeps the binary data files under
+ * {@code data/}, while {@code jdbc} uses the embedded database at
+ * {@code cafe94.jdbc.url}, whose driver must be on the classpath.
+ */
+public final class Repositories implements Closeable {
+    private static final Logger logger = Logger.getLogger(Repositories.class.getName());
+
+    public static final String STORE_PROPERTY = "cafe94.store";
+    public static final String JDBC_URL_PROPERTY = "cafe94.jdbc.url";
+    public static final String FILE_STORE = "file";
+    public static final String JDBC_STORE = "jdbc";
+    private static final String DEFAULT_JDBC_URL = "jdbc:h2:./data/cafe94";
+    private static final String DATA_DIR = "data";
+
+    private static Repositories defaultRepositories;
+
+    private final OrderRepository orders;
+    private final CustomerRepository customers;
+    private final StaffRepository staff;
+    private final BookingRepository bookings;
+    private final MenuRepository menu;
+    // Null for the file backend
+    private final JdbcStore jdbcStore;
+
+    private Repositories(OrderRepository orders, CustomerRepository customers,
+                         StaffRepository staff, BookingRepository bookings,
+                         MenuRepository menu, JdbcStore jdbcStore) {
+        this.orders = orders;
+        this.customers = customers;
+        this.staff = staff;
+        this.bookings = bookings;
+        this.menu = menu;
+        this.jdbcStore = jdbcStore;
+    }
+
+    /**
+     * Creates file-based repositories in the given data directory.
+     *
+     * @param dataDir the directory holding the data files
+     * @return the repositories
+     */
+    public static Repositories files(File dataDir) {
+        return files(dataDir, null);
+    }
+
+    /**
+     * Creates file-based repositories that also migrate the orders file
+     * the application used to write to its working directory.
+     */
+    private static Repositories files(File dataDir, File legacyOrdersDir) {
+        return new Repositories(
+                new FileOrderRepository(new File(dataDir, "orders"), legacyOrdersDir),
+                new FileCustomerRepository(new File(dataDir, "customers.dat")),
+                new FileStaffRepository(new File(dataDir, "staff.dat")),
+                new FileBookingRepository(new File(dataDir, "bookings.dat")),
+                new FileMenuRepository(new File(dataDir, "menu.dat")),
+                null);
+    }
+
+    /**
+     * Creates JDBC repositories sharing one connection to the given database.
+     *
+     * @param url the JDBC connection URL
+     * @return the repositories
+     * @throws IOException if the database cannot be opened
+     */
+    public static Repositories jdbc(String url) throws IOException {
+        JdbcStore store = new JdbcStore(url);
+        return new Repositories(
+                new JdbcOrderRepository(store),
+                new JdbcCustomerRepository(store),
+                new JdbcStaffRepository(store),
+                new JdbcBookingRepository(store),
+                new JdbcMenuRepository(store),
+                store);
+    }
+
+    /**
+     * Returns the repositories selected by the system properties,
+     * creating them on first use.
+     *
+     * @return the shared repositories
+     * @throws IllegalStateException if the configured backend cannot be opened
+     */
+    public static synchronized Repositories getDefault() {
+        if (defaultRepositories == null) {
+            String backend = System.getProperty(STORE_PROPERTY, FILE_STORE);
+            if (JDBC_STORE.equalsIgnoreCase(backend)) {
+                String url = System.getProperty(JDBC_URL_PROPERTY, DEFAULT_JDBC_URL);
+                try {
+                    defaultRepositories = jdbc(url);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Cannot open JDBC store " + url, e);
+                }
+            } else {
+                if (!FILE_STORE.equalsIgnoreCase(backend)) {
+                    logger.warning("Unknown " + STORE_PROPERTY + " '" + backend
+                            + "', using file store");
+                }
+                defaultRepositories = files(new File(DATA_DIR), new File("."));
+            }
+            logger.info("Using " + backend + " store");
+        }
+        return defaultRepositories;
+    }
+
+    public OrderRepository orders() {
+        return orders;
+    }
+
+    public CustomerRepository customers() {
+        return customers;
+    }
+
+    public StaffRepository staff() {
+        return staff;
+    }
+
+    public BookingRepository bookings() {
+        return bookings;
+    }
+
+    public MenuRepository menu() {
+        return menu;
+    }
+
+    @Override
+    public void close() throws IOException {
+        orders.close();
+        customers.close();
+        staff.close();
+        bookings.close();
+        menu.close();
+        if (jdbcStore != null) {
+            jdbcStore.close();
+        }
+    }
+}
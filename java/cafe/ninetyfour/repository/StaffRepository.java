@@ -0,0 +1,28 @@
+package cafe.ninetyfour.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+import cafe.ninetyfour.models.Staff;
+
+/**
+ * StaffRepository stores the staff list.
+ */
+public interface StaffRepository extends Closeable {
+
+    /**
+     * @return every stored staff member
+     * @throws IOException if the repository cannot be read
+     */
+    List<Staff> loadAll() throws IOException;
+
+    /**
+     * Replaces the stored staff list.
+     *
+     * @param staffMembers the complete staff list
+     * @throws IOException if the staff list cannot be stored
+     */
+    void saveAll(Collection<Staff> staffMembers) throws IOException;
+}
@@ -3,117 +3,225 @@ package cafe.ninetyfour.services;
 import java.util.*;
 import java.io.*;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.logging.Logger;
 
+import cafe.ninetyfour.enums.ReservationStatus;
 import cafe.ninetyfour.exceptions.ServiceException;
 import cafe.ninetyfour.models.Booking;
+import cafe.ninetyfour.models.RecurringBooking;
 import cafe.ninetyfour.models.Reservation;
 import cafe.ninetyfour.models.Table;
-import cafe.ninetyfour.models.User;
+import cafe.ninetyfour.persistence.PersistenceScheduler;
+import cafe.ninetyfour.repository.BookingRepository;
+import cafe.ninetyfour.repository.Repositories;
 
 /**
  * Service for creating, saving, approving, and managing table bookings.
+ * Bookings are indexed by ID, customer and start time, so lookups from
+ * the approval screens and the booking calendar do not scan every booking.
  */
 public class BookingService {
     private static final Logger logger = Logger.getLogger
             (BookingService.class.getName());
 
-    private static final String BOOKINGS_FILE = "data/bookings.dat";
-    private final Map<Integer, Booking> bookingsById = new HashMap<>();
+    private static final String STORE_NAME = "bookings";
+    private final Map<Integer, Booking> bookingsById = new ConcurrentHashMap<>();
+    // Bookings by customer and by start time, ordered by booking ID
+    private final Map<Integer, Set<Booking>> bookingsByCustomer = new ConcurrentHashMap<>();
+    private final NavigableMap<LocalDateTime, Set<Booking>> bookingsByStart =
+            new ConcurrentSkipListMap<>();
     private List<Booking> bookings;
     private TableManager tableManager;  // Using TableManager instead of TableService
     private int nextBookingId = 1;
+    private final BookingRepository repository;
+    // Parties waiting for a table; kept in memory only
+    private final Waitlist waitlist = new Waitlist();
+
+    // Null when every mutation is saved synchronously
+    private final PersistenceScheduler persistenceScheduler;
 
 
     /**
      * Constructor for BookingService.
      * Initializes the bookings list and loads existing bookings from file.
+     * Every mutation is saved to file immediately.
      *
      * @param tableManager the TableManager instance to manage tables
      */
     public BookingService(TableManager tableManager) {
+        this(tableManager, null);
+    }
+
+    /**
+     * Constructor for BookingService with write-behind persistence.
+     * Mutations mark the booking store dirty and the scheduler saves it.
+     *
+     * @param tableManager         the TableManager instance to manage tables
+     * @param persistenceScheduler the scheduler that saves the bookings file,
+     *                             or null to save on every mutation
+     */
+    public BookingService(TableManager tableManager,
+                          PersistenceScheduler persistenceScheduler) {
+        this(tableManager, persistenceScheduler, Repositories.getDefault().bookings());
+    }
+
+    /**
+     * Constructor for BookingService with an explicit booking repository.
+     *
+     * @param tableManager         the TableManager instance to manage tables
+     * @param persistenceScheduler the scheduler that saves the bookings,
+     *                             or null to save on every mutation
+     * @param repository           the repository storing the bookings
+     */
+    public BookingService(TableManager tableManager,
+                          PersistenceScheduler persistenceScheduler,
+                          BookingRepository repository) {
+        this.repository = repository;
         this.bookings = new ArrayList<>();
         this.tableManager = tableManager;
+        this.persistenceScheduler = persistenceScheduler;
         loadBookings();
+        if (persistenceScheduler != null) {
+            persistenceScheduler.register(STORE_NAME, this::saveBookings);
+        }
+        // Expired bookings have a new status to save
+        tableManager.getSweeper().addExpiryListener(expired -> {
+            try {
+                persist();
+            } catch (ServiceException e) {
+                logger.severe("Failed to save expired bookings: " + e.getMessage());
+            }
+        });
     }
 
     // Persistence Methods
 
     /**
-     * Saves the current bookings to a file.
+     * Saves the current bookings to the repository.
      *
      * @throws ServiceException if an error occurs during saving
      */
     public synchronized void saveBookings() throws ServiceException {
         try {
-            new File("data").mkdirs();
-            File tempFile = new File(BOOKINGS_FILE + ".tmp");
-
-            try (ObjectOutputStream oos = new ObjectOutputStream(
-                    new FileOutputStream(tempFile))) {
-                oos.writeObject(new ArrayList<>(bookings));
-            }
-
-            File dataFile = new File(BOOKINGS_FILE);
-            if (dataFile.exists() && !dataFile.delete()) {
-                throw new ServiceException("Could not delete old bookings file");
-            }
-            if (!tempFile.renameTo(dataFile)) {
-                throw new ServiceException("Could not rename temporary bookings file");
-            }
+            repository.saveAll(new ArrayList<>(bookings));
         } catch (IOException e) {
             throw new ServiceException("Failed to save bookings", e);
         }
     }
 
     /**
-     * Loads bookings from a file.
-     * If the file exists, it reads the bookings and sets the next booking ID.
+     * Persists a mutation, either immediately or through the scheduler.
+     *
+     * @throws ServiceException if an immediate save fails
+     */
+    private void persist() throws ServiceException {
+        if (persistenceScheduler != null) {
+            persistenceScheduler.markDirty(STORE_NAME);
+        } else {
+            saveBookings();
+        }
+    }
+
+    /**
+     * Loads bookings from the repository and sets the next booking ID.
      */
-    @SuppressWarnings("unchecked")
     private synchronized void loadBookings() {
-        File file = new File(BOOKINGS_FILE);
-        if (file.exists()) {
-            try (ObjectInputStream ois = new ObjectInputStream(
-                    new FileInputStream(file))) {
-                List<Booking> loaded = (List<Booking>) ois.readObject();
-
-                // Find max ID and set nextId
-                int maxId= loaded.stream()
-                        .mapToInt(Booking::getReservationId)
-                        .max()
-                        .orElse(0) + 1;
-                //id
-                this.nextBookingId = maxId + 1;
-                User.setNextUserId(maxId + 1);
-
-                // Replace current bookings
-                this.bookings = new ArrayList<>(loaded);
-
-            } catch (Exception e) {
-                System.err.println("Error loading bookings: " + e.getMessage());
+        try {
+            List<Booking> loaded = repository.loadAll();
+            if (loaded.isEmpty()) {
+                return;
             }
+
+            // Find max ID and set nextId
+            int maxId= loaded.stream()
+                    .mapToInt(Booking::getReservationId)
+                    .max()
+                    .orElse(0) + 1;
+            //id
+            this.nextBookingId = maxId + 1;
+
+            // Replace current bookings
+            this.bookings = new ArrayList<>(loaded);
+            clearIndexes();
+            loaded.forEach(this::index);
+            relinkTables(loaded);
+
+        } catch (Exception e) {
+            System.err.println("Error loading bookings: " + e.getMessage());
         }
     }
 
     /**
-     * Reloads bookings from the file and clears the current list.
+     * Saves the bookings, takes them off their tables and loads them
+     * again from the repository, rebuilding every table's schedule from
+     * the loaded bookings.
      *
-     * @throws ServiceException if an error occurs during reloading
+     * @throws ServiceException if an error occurs during saving
      */
     public synchronized void saveAndReload() throws ServiceException {
         saveBookings();
+        // Even if loading fails, no table keeps a booking that is no longer listed
+        bookings.forEach(this::takeOffTables);
         bookings.clear();
+        clearIndexes();
         loadBookings();
     }
 
+    private void takeOffTables(Booking booking) {
+        if (booking instanceof RecurringBooking) {
+            RecurringBooking series = (RecurringBooking) booking;
+            for (Booking occurrence : series.getOccurrences()) {
+                occurrence.getTables().forEach(table -> table.removeReservation(occurrence));
+            }
+            series.getTables().forEach(table -> table.removeRecurring(series));
+        } else {
+            booking.getTables().forEach(table -> table.removeReservation(booking));
+        }
+    }
+
+    /**
+     * Links loaded bookings to the TableManager's tables, which only the
+     * table IDs are saved for, and rebuilds the tables' schedules from the
+     * upcoming bookings.
+     */
+    private void relinkTables(List<Booking> loaded) {
+        int restored = tableManager.rebuildFrom(loaded);
+        logger.info("Restored " + restored + " table reservations from "
+                + loaded.size() + " bookings");
+    }
+
+    private static Set<Booking> newBookingSet() {
+        return new ConcurrentSkipListSet<>(Comparator.comparingInt(Booking::getReservationId));
+    }
+
+    /**
+     * Adds a booking to the ID, customer and start time indexes.
+     */
+    private void index(Booking booking) {
+        bookingsById.put(booking.getReservationId(), booking);
+        bookingsByCustomer.computeIfAbsent(booking.getCustomerId(), id -> newBookingSet())
+                .add(booking);
+        bookingsByStart.computeIfAbsent(booking.getStartTime(), time -> newBookingSet())
+                .add(booking);
+    }
+
+    private void clearIndexes() {
+        bookingsById.clear();
+        bookingsByCustomer.clear();
+        bookingsByStart.clear();
+    }
+
 
     /**
      * Creates a new booking with default duration
      */
-    public Booking createBooking(int customerId, LocalDateTime startTime,
-                                 int numberOfGuests) throws ServiceException {
+    public synchronized Booking createBooking(int customerId, LocalDateTime startTime,
+                                              int numberOfGuests) throws ServiceException {
         try {
             if (numberOfGuests <= 0) {
                 throw new ServiceException("Number of guests must be positive");
@@ -124,7 +232,8 @@ public class BookingService {
 
             Booking booking = new Booking(customerId, startTime, numberOfGuests);
             bookings.add(booking);
-            saveBookings();
+            index(booking);
+            persist();
             return booking;
         } catch (Exception e) {
             logger.severe("Error loading booking: " + e.getMessage());
@@ -136,8 +245,8 @@ public class BookingService {
     /**
      * Creates a new booking with custom duration
      */
-    public Booking createBooking(int customerId, LocalDateTime startTime,
-                                 int duration, int numberOfGuests) throws ServiceException {
+    public synchronized Booking createBooking(int customerId, LocalDateTime startTime,
+                                              int duration, int numberOfGuests) throws ServiceException {
         try {
             if (numberOfGuests <= 0) {
                 throw new ServiceException("Number of guests must be positive");
@@ -148,7 +257,8 @@ public class BookingService {
 
             Booking booking = new Booking(customerId, startTime, duration, numberOfGuests);
             bookings.add(booking);
-            saveBookings();
+            index(booking);
+            persist();
             return booking;
         } catch (Exception e) {
             logger.severe("Error loading booking: " + e.getMessage());
@@ -157,13 +267,77 @@ public class BookingService {
     }
 
     /**
-     * Creates a new booking with custom duration and tables
+     * Creates a standing booking, e.g. the same table every week. It is
+     * stored once and expanded onto its tables only within the booking
+     * horizon; tables are assigned as for any booking.
+     *
+     * @param customerId     the customer making the booking
+     * @param firstStart     the start of the first occurrence
+     * @param duration       the duration of each occurrence in minutes
+     * @param numberOfGuests the number of guests
+     * @param intervalWeeks  the number of weeks between occurrences
+     * @param lastDate       the last date an occurrence may fall on, or null if open-ended
+     * @return the standing booking
+     * @throws ServiceException if the booking is invalid or cannot be saved
+     */
+    public synchronized RecurringBooking createRecurringBooking(int customerId, LocalDateTime firstStart,
+                                                               int duration, int numberOfGuests,
+                                                               int intervalWeeks, LocalDate lastDate)
+            throws ServiceException {
+        try {
+            if (firstStart.isBefore(LocalDateTime.now())) {
+                throw new ServiceException("Booking time cannot be in the past");
+            }
+            RecurringBooking booking = new RecurringBooking(customerId, firstStart, duration,
+                    numberOfGuests, intervalWeeks, lastDate);
+            bookings.add(booking);
+            index(booking);
+            persist();
+            return booking;
+        } catch (Exception e) {
+            logger.severe("Error creating standing booking: " + e.getMessage());
+            throw new ServiceException("Failed to create standing booking", e);
+        }
+    }
+
+    /**
+     * Skips one date of a standing booking. A table freed on that date is
+     * offered to the waitlist.
+     *
+     * @param bookingId the standing booking's ID
+     * @param date      the date to skip
+     * @return the bookings made for waiting parties
+     * @throws ServiceException if there is no such standing booking or it cannot be saved
+     */
+    public synchronized List<Booking> skipRecurringDate(int bookingId, LocalDate date)
+            throws ServiceException {
+        Booking booking = findBookingById(bookingId);
+        if (!(booking instanceof RecurringBooking)) {
+            throw new ServiceException("No standing booking with ID " + bookingId);
+        }
+        RecurringBooking series = (RecurringBooking) booking;
+        RecurringBooking.Occurrence occurrence = series.getOccurrence(date);
+        List<Table> freed = occurrence != null && occurrence.isActive()
+                ? new ArrayList<>(occurrence.getTables()) : List.of();
+        if (!series.addException(date)) {
+            return List.of();
+        }
+        List<Booking> backfilled = offerFreedTables(freed, occurrence);
+        persist();
+        return backfilled;
+    }
+
+    /**
+     * Finds the bookings starting in a date range (both ends inclusive),
+     * ordered by start time, from the start time index.
      */
-    // Add method to find bookings by date range
     public List<Booking> getBookingsBetween(LocalDateTime start, LocalDateTime end) {
-        return bookings.stream()
-                .filter(b -> !b.getStartTime().isBefore(start) && !b.getStartTime().isAfter(end))
-                .toList();
+        if (end.isBefore(start)) {
+            return List.of();
+        }
+        List<Booking> result = new ArrayList<>();
+        bookingsByStart.subMap(start, true, end, true).values().forEach(result::addAll);
+        return result;
     }
 
     /**
@@ -179,6 +353,108 @@ public class BookingService {
         return false;
     }
 
+    /**
+     * Seats a booking at the best free table, or the best combination of
+     * adjacent tables if no single table is large enough
+     */
+    public boolean allocateTablesToBooking(int bookingId) {
+        Booking booking = findBookingById(bookingId);
+        return booking != null && !tableManager.allocateTables(booking).isEmpty();
+    }
+
+    /**
+     * Records that a booking's party has been seated now.
+     *
+     * @return true if the booking was active and not seated yet
+     * @throws ServiceException if the booking cannot be saved
+     */
+    public boolean seatBooking(int bookingId) throws ServiceException {
+        Booking booking = currentOccurrence(findBookingById(bookingId));
+        if (booking == null || !tableManager.seat(booking, LocalDateTime.now())) {
+            return false;
+        }
+        persist();
+        return true;
+    }
+
+    /**
+     * Records that a booking's party has left now, freeing its tables.
+     *
+     * @return true if the party was seated and had not left yet
+     * @throws ServiceException if the booking cannot be saved
+     */
+    public boolean clearBooking(int bookingId) throws ServiceException {
+        Booking booking = currentOccurrence(findBookingById(bookingId));
+        if (booking == null || !tableManager.clear(booking, LocalDateTime.now())) {
+            return false;
+        }
+        persist();
+        return true;
+    }
+
+    /**
+     * Resolves a standing booking to today's occurrence, the one a party
+     * can be seated for; other bookings are returned as they are.
+     */
+    private Booking currentOccurrence(Booking booking) {
+        if (!(booking instanceof RecurringBooking)) {
+            return booking;
+        }
+        tableManager.expandRecurring();
+        return ((RecurringBooking) booking).getOccurrence(LocalDate.now());
+    }
+
+    /**
+     * Computes a seating plan for the pending bookings of a day that have
+     * no tables yet, seating as many covers as possible with as few empty
+     * seats as possible. Nothing is assigned until the plan is approved.
+     *
+     * @param day              the service day
+     * @param timeBudgetMillis how long the optimizer may search
+     * @return the seating plan
+     */
+    public SeatingPlanOptimizer.SeatingPlan planSeating(LocalDate day, long timeBudgetMillis) {
+        List<Booking> unseated = new ArrayList<>();
+        for (Booking booking : getBookingsBetween(day.atStartOfDay(),
+                day.plusDays(1).atStartOfDay().minusNanos(1))) {
+            if (booking.getStatus() == ReservationStatus.PENDING && booking.getTables().isEmpty()) {
+                unseated.add(booking);
+            }
+        }
+        return new SeatingPlanOptimizer(tableManager.getAllTables())
+                .optimize(unseated, timeBudgetMillis);
+    }
+
+    /**
+     * Assigns and approves the bookings of a seating plan in bulk.
+     * A booking that was seated, cancelled or whose table was taken since
+     * the plan was made is left out.
+     *
+     * @param plan the seating plan
+     * @return the number of bookings approved
+     * @throws ServiceException if the bookings cannot be saved
+     */
+    public synchronized int approveSeatingPlan(SeatingPlanOptimizer.SeatingPlan plan)
+            throws ServiceException {
+        int approved = 0;
+        for (Map.Entry<Booking, Table> assignment : plan.getAssignments().entrySet()) {
+            Booking booking = assignment.getKey();
+            if (booking.getStatus() != ReservationStatus.PENDING || !booking.getTables().isEmpty()) {
+                continue;
+            }
+            if (booking.addTable(assignment.getValue()) && booking.approve()) {
+                approved++;
+            } else {
+                logger.warning("Booking " + booking.getReservationId()
+                        + " could not be seated as planned");
+            }
+        }
+        if (approved > 0) {
+            persist();
+        }
+        return approved;
+    }
+
     /**
      * Approves a booking if it has tables assigned
      */
@@ -188,23 +464,119 @@ public class BookingService {
     }
 
     /**
-     * Cancels a booking and releases all assigned tables
+     * Cancels a booking that is still active and releases all assigned tables.
+     * A cancelled booking stays indexed, so it can still be looked up.
+     * Each freed table is offered to the best-fitting party on the
+     * waitlist, which gets a pending booking holding the table; for a
+     * standing booking, on every date expanded onto the tables.
+     *
+     * @return the bookings made for waiting parties
      */
-    public void cancelBooking(int bookingId) {
+    public synchronized List<Booking> cancelBooking(int bookingId) {
         Booking booking = findBookingById(bookingId);
-        if (booking != null) {
-            booking.cancel();
+        if (booking == null) {
+            return List.of();
+        }
+        List<Table> freed = new ArrayList<>(booking.getTables());
+        List<Booking> periods = new ArrayList<>();
+        if (booking instanceof RecurringBooking) {
+            for (Booking occurrence : ((RecurringBooking) booking).getOccurrences()) {
+                if (occurrence.isActive()) {
+                    periods.add(occurrence);
+                }
+            }
+        } else {
+            periods.add(booking);
+        }
+        booking.cancel();
+        if (booking.getStatus() != ReservationStatus.CANCELLED) {
+            // It ended before it could be cancelled
+            return List.of();
+        }
+
+        List<Booking> backfilled = new ArrayList<>();
+        for (Booking period : periods) {
+            backfilled.addAll(offerFreedTables(freed, period));
+        }
+        try {
+            persist();
+        } catch (ServiceException e) {
+            logger.severe("Failed to save cancelled booking: " + e.getMessage());
+        }
+        return backfilled;
+    }
+
+    /**
+     * Offers each table freed for a booking's period to the waitlist.
+     */
+    private List<Booking> offerFreedTables(List<Table> freed, Booking period) {
+        List<Booking> backfilled = new ArrayList<>();
+        for (Table table : freed) {
+            waitlist.match(table, period.getStartTime(), period.getEndTime())
+                    .ifPresent(offer -> backfill(offer).ifPresent(backfilled::add));
+        }
+        return backfilled;
+    }
+
+    /**
+     * Books a freed table for a waiting party and tells the customer.
+     */
+    private Optional<Booking> backfill(Waitlist.Offer offer) {
+        Waitlist.Request request = offer.getRequest();
+        Booking booking = new Booking(request.getCustomerId(), offer.getStartTime(),
+                request.getDuration(), request.getPartySize());
+        if (!booking.addTable(offer.getTable())) {
+            return Optional.empty();
+        }
+        bookings.add(booking);
+        index(booking);
+        booking.notifyCustomer("A table is free at " + offer.getStartTime()
+                + " (booking ID: " + booking.getReservationId() + ")");
+        return Optional.of(booking);
+    }
+
+    /**
+     * Puts a party on the waitlist for a table in a time window.
+     *
+     * @param customerId    the customer waiting
+     * @param partySize     the number of guests
+     * @param earliestStart the earliest acceptable start
+     * @param latestStart   the latest acceptable start, on the same day
+     * @param duration      the duration in minutes
+     * @return the waitlist request
+     * @throws ServiceException if the request is invalid
+     */
+    public Waitlist.Request joinWaitlist(int customerId, int partySize,
+                                         LocalDateTime earliestStart, LocalDateTime latestStart,
+                                         int duration) throws ServiceException {
+        if (latestStart.isBefore(LocalDateTime.now())) {
+            throw new ServiceException("Waiting window has already passed");
+        }
+        try {
+            return waitlist.add(customerId, partySize, earliestStart, latestStart, duration);
+        } catch (IllegalArgumentException e) {
+            throw new ServiceException(e.getMessage(), e);
         }
     }
 
+    /**
+     * Takes a party off the waitlist.
+     *
+     * @return true if the request was waiting
+     */
+    public boolean leaveWaitlist(int requestId) {
+        return waitlist.remove(requestId);
+    }
+
+    public Waitlist getWaitlist() {
+        return waitlist;
+    }
+
     /**
      * Finds a booking by its ID
      */
     public Booking findBookingById(int bookingId) {
-        return bookings.stream()
-                .filter(b -> b.getReservationId() == bookingId)
-                .findFirst()
-                .orElse(null);
+        return bookingsById.get(bookingId);
     }
 
     /**
@@ -215,15 +587,10 @@ public class BookingService {
     }
 
     /**
-     * Gets all bookings for a specific customer
+     * Gets all bookings for a specific customer, ordered by booking ID
      */
     public List<Booking> getCustomerBookings(int customerId) {
-        List<Booking> customerBookings = new ArrayList<>();
-        for (Booking booking : bookings) {
-            if (booking.getCustomerId() == customerId) {
-                customerBookings.add(booking);
-            }
-        }
-        return customerBookings;
+        Set<Booking> customerBookings = bookingsByCustomer.get(customerId);
+        return customerBookings != null ? new ArrayList<>(customerBookings) : new ArrayList<>();
     }
 }
\ No newline at end of file
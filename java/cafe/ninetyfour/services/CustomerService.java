@@ -2,109 +2,136 @@ package cafe.ninetyfour.services;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 import cafe.ninetyfour.exceptions.ServiceException;
 import cafe.ninetyfour.models.Customer;
 import cafe.ninetyfour.models.Staff;
 import cafe.ninetyfour.models.User;
+import cafe.ninetyfour.persistence.CustomerStore;
+import cafe.ninetyfour.persistence.PersistenceScheduler;
+import cafe.ninetyfour.repository.CustomerRepository;
+import cafe.ninetyfour.repository.Repositories;
 
 /**
  * CustomerService class is responsible for managing customer data,
  * including registration, retrieval, and persistence.
+ * Saved customers stay in the customer repository and are only
+ * decoded when they are looked up.
  */
 public class CustomerService {
     private static final Logger logger = Logger.getLogger(CustomerService.class.getName());
 
-    private static final String CUSTOMERS_FILE = "data/customers.dat";
+    private static final String STORE_NAME = "customers";
 
-    // Primary collection (username -> Customer)
+    // Decoded and newly registered customers (normalized username -> Customer)
     private final Map<String, Customer> customersByUsername;
 
     // Secondary index (id -> Customer)
     private final Map<Integer, Customer> customersById;
 
+    private final CustomerRepository repository;
+
 
     private int nextCustomerId = 1;
 
+    // Null when every mutation is saved synchronously
+    private final PersistenceScheduler persistenceScheduler;
+
     /**
      * Constructor for CustomerService.
      * Initializes the customer collections and loads existing customers from file.
+     * Every mutation is saved to file immediately.
      */
     public CustomerService() {
-        this.customersByUsername = new HashMap<>();
-        this.customersById = new HashMap<>();
-        loadCustomers();  // Load customers from file on startup
+        this(null);
+    }
+
+    /**
+     * Constructor for CustomerService with write-behind persistence.
+     * Mutations mark the customer store dirty and the scheduler saves it.
+     *
+     * @param persistenceScheduler the scheduler that saves the customer file,
+     *                             or null to save on every mutation
+     */
+    public CustomerService(PersistenceScheduler persistenceScheduler) {
+        this(persistenceScheduler, Repositories.getDefault().customers());
+    }
+
+    /**
+     * Constructor for CustomerService with an explicit customer repository.
+     *
+     * @param persistenceScheduler the scheduler that saves the customers,
+     *                             or null to save on every mutation
+     * @param repository           the repository storing the customers
+     */
+    public CustomerService(PersistenceScheduler persistenceScheduler,
+                           CustomerRepository repository) {
+        this.repository = repository;
+        this.customersByUsername = new ConcurrentHashMap<>();
+        this.customersById = new ConcurrentHashMap<>();
+        this.persistenceScheduler = persistenceScheduler;
+        loadCustomers();  // Open the customer repository on startup
+        if (persistenceScheduler != null) {
+            persistenceScheduler.register(STORE_NAME, this::saveCustomers);
+        }
     }
 
     // Persistence Methods
+    /**
+     * Saves the decoded and new customers to the repository.
+     * Customers that were never decoded are left as they are stored.
+     *
+     * @throws ServiceException if an error occurs during saving
+     */
     public synchronized void saveCustomers() throws ServiceException {
         try {
-            // Ensure directory exists
-            new File("data").mkdirs();
-
-            // Create temp file
-            File tempFile = new File(CUSTOMERS_FILE + ".tmp");
-
-            try (ObjectOutputStream oos = new ObjectOutputStream(
-                    new FileOutputStream(tempFile))) {
-                oos.writeObject(new ArrayList<>(customersByUsername.values()));
-            }
-
-            // Atomic replace
-            File dataFile = new File(CUSTOMERS_FILE);
-            if (dataFile.exists() && !dataFile.delete()) {
-                throw new ServiceException("Could not delete old customer file");
-            }
-            if (!tempFile.renameTo(dataFile)) {
-                throw new ServiceException("Could not rename temp customer file");
-            }
+            repository.saveAll(new ArrayList<>(customersById.values()));
         } catch (IOException e) {
             throw new ServiceException("Failed to save customer data", e);
         }
     }
 
     /**
-     * Loads customers from a file into the service.
-     * If the file does not exist or is corrupt, initializes default customers.
+     * Persists a mutation, either immediately or through the scheduler.
+     *
+     * @throws ServiceException if an immediate save fails
+     */
+    private void persist() throws ServiceException {
+        if (persistenceScheduler != null) {
+            persistenceScheduler.markDirty(STORE_NAME);
+        } else {
+            saveCustomers();
+        }
+    }
+
+    /**
+     * Opens the customer repository. Its customers are decoded on lookup.
+     * If the repository is empty or cannot be read, initializes default customers.
      */
-    @SuppressWarnings("unchecked")
     private void loadCustomers() {
-        File file = new File(CUSTOMERS_FILE);
-        if (file.exists()) {
-            try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-                List<Customer> loaded = (List<Customer>) ois.readObject();
-
-                // Reset ID counter
-                this.nextCustomerId = loaded.stream()
-                        .mapToInt(Customer::getUserId)
-                        .max()
-                        .orElse(0) + 1;
-
-                // Clear and reload
-                customersByUsername.clear();
-                customersById.clear();
-
-                loaded.forEach(c -> {
-                    customersByUsername.put(c.getUsername().toLowerCase(), c);
-                    customersById.put(c.getUserId(), c);
-                });
-
-                logger.info("Successfully loaded " + loaded.size() + " customers");
-            } catch (Exception e) {
-                logger.severe("Error loading customers: " + e.getMessage());
-                // Consider creating empty file if corrupt
+        try {
+            repository.open();
+            int count = repository.size();
+            if (count == 0) {
+                logger.info("No saved customers found, starting with default dataset");
                 initializeDefaultCustomers();
+                return;
             }
-        } else {
-            logger.info("No customer data file found, starting with empty dataset");
+            int maxUserId = repository.getMaxUserId();
+            this.nextCustomerId = maxUserId + 1;
+            User.reserveUserId(maxUserId);
+            logger.info("Opened " + count + " saved customers");
+        } catch (IOException e) {
+            logger.severe("Error loading customers: " + e.getMessage());
             initializeDefaultCustomers();
         }
     }
 
     /**
      * Initializes default customers for the system.
-     * This method is called when no customer data file is found or if loading fails.
+     * This method is called when no customers are saved or if loading fails.
      */
     private void initializeDefaultCustomers() {
         try {
@@ -131,7 +158,7 @@ public class CustomerService {
     // Add this method to ensure proper synchronization
     public synchronized void saveAndReload() throws ServiceException {
         saveCustomers();
-        // Clear current data and reload from file
+        // Clear current data and reopen the repository
         customersByUsername.clear();
         customersById.clear();
         loadCustomers();
@@ -154,7 +181,7 @@ public class CustomerService {
      * @throws ServiceException if registration fails due to
      * invalid input or existing username
      */
-    public Customer registerCustomer(String username, String password,
+    public synchronized Customer registerCustomer(String username, String password,
                                      String firstName, String lastName,
                                      String address, String email)
             throws ServiceException {
@@ -162,7 +189,7 @@ public class CustomerService {
             // Validate and create customer
             User.validateRegistrationInput(username, password, firstName, lastName, email);
 
-            if (customersByUsername.containsKey(username.toLowerCase())) {
+            if (customerExists(username)) {
                 throw new ServiceException("Username already exists");
             }
 
@@ -172,9 +199,9 @@ public class CustomerService {
             );
 
             // Store and persist
-            customersByUsername.put(username.toLowerCase(), newCustomer);
+            customersByUsername.put(CustomerStore.normalize(username), newCustomer);
             customersById.put(newCustomer.getUserId(), newCustomer);
-            saveCustomers(); // Ensure immediate persistence
+            persist();
 
             return newCustomer;
         } catch (Exception e) {
@@ -184,7 +211,8 @@ public class CustomerService {
     }
 
     /**
-     * Finds a customer by their username.
+     * Finds a customer by their username (case-insensitive).
+     * Decodes the customer from the repository on first access.
      *
      * @param username the username of the customer to find
      * @return the Customer object if found, null otherwise
@@ -192,11 +220,26 @@ public class CustomerService {
      */
     public Customer findCustomerByUsername(String username) {
         Objects.requireNonNull(username, "Username cannot be null");
-        return customersByUsername.get(username);
+        Customer customer = customersByUsername.get(CustomerStore.normalize(username));
+        if (customer != null) {
+            return customer;
+        }
+        synchronized (this) {
+            customer = customersByUsername.get(CustomerStore.normalize(username));
+            if (customer == null) {
+                try {
+                    customer = cache(repository.findByUsername(username));
+                } catch (IOException e) {
+                    logger.severe("Error decoding customer " + username + ": " + e.getMessage());
+                }
+            }
+            return customer;
+        }
     }
 
     /**
      * Finds a customer by their ID.
+     * Decodes the customer from the repository on first access.
      *
      * @param customerId the ID of the customer to find
      * @return the Customer object if found, null otherwise
@@ -204,20 +247,58 @@ public class CustomerService {
      */
     public Customer findCustomerById(int customerId) {
         if (customerId <= 0) throw new IllegalArgumentException("Invalid ID");
-        return customersById.get(customerId);
+        Customer customer = customersById.get(customerId);
+        if (customer != null) {
+            return customer;
+        }
+        synchronized (this) {
+            customer = customersById.get(customerId);
+            if (customer == null) {
+                try {
+                    customer = cache(repository.findById(customerId));
+                } catch (IOException e) {
+                    logger.severe("Error decoding customer " + customerId + ": " + e.getMessage());
+                }
+            }
+            return customer;
+        }
     }
 
     public boolean customerExists(String username) {
-        return customersByUsername.containsKey(username);
+        return findCustomerByUsername(username) != null;
     }
 
 
     /**
      * Retrieves all customers in the system.
+     * This decodes every customer still held only in the repository.
      *
      * @return a list of all Customer objects
      */
-    public List<Customer> getAllCustomers() {
+    public synchronized List<Customer> getAllCustomers() {
+        try {
+            if (customersById.size() < repository.size()) {
+                for (int userId : repository.getUserIds()) {
+                    findCustomerById(userId);
+                }
+            }
+        } catch (IOException e) {
+            logger.severe("Error reading customers: " + e.getMessage());
+        }
         return new ArrayList<>(customersById.values());
     }
+
+    /**
+     * Adds a decoded customer to the in-memory indexes.
+     *
+     * @param customer the decoded customer, or null
+     * @return the same customer
+     */
+    private Customer cache(Customer customer) {
+        if (customer != null) {
+            customersByUsername.put(CustomerStore.normalize(customer.getUsername()), customer);
+            customersById.put(customer.getUserId(), customer);
+        }
+        return customer;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,441 @@
+package cafe.ninetyfour.services;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import cafe.ninetyfour.enums.TableStatus;
+import cafe.ninetyfour.models.Reservation;
+import cafe.ninetyfour.models.Table;
+
+/**
+ * OccupancyGrid keeps one bitset per table over a rolling booking horizon,
+ * one bit per time slot, set while any reservation covers part of the slot.
+ * A slot-aligned request is free exactly when none of its slots' bits are
+ * set, which is checked a 64-slot word at a time. The horizon starts at
+ * midnight of the current day and moves forward as days pass.
+ */
+public class OccupancyGrid {
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private final List<Table> tables;
+    private final Map<Table, Integer> rows = new IdentityHashMap<>();
+    private final int slotMinutes;
+    private final int slotsPerDay;
+    private final int horizonDays;
+    private final int totalSlots;
+    private final long[][] occupied;
+    private LocalDateTime origin;
+
+    /**
+     * Free tables per party size and slot for one day.
+     */
+    public static final class Heatmap {
+        private final LocalDate day;
+        private final int slotMinutes;
+        // freeTables[partySize][slot]: free tables seating at least partySize
+        private final int[][] freeTables;
+
+        private Heatmap(LocalDate day, int slotMinutes, int[][] freeTables) {
+            this.day = day;
+            this.slotMinutes = slotMinutes;
+            this.freeTables = freeTables;
+        }
+
+        public LocalDate getDay() {
+            return day;
+        }
+
+        public int getSlotMinutes() {
+            return slotMinutes;
+        }
+
+        public int getSlotCount() {
+            return freeTables[0].length;
+        }
+
+        /**
+         * @return the largest party size any table can seat
+         */
+        public int getMaxPartySize() {
+            return freeTables.length - 1;
+        }
+
+        /**
+         * @param slot the slot index within the day
+         * @return the time the slot starts
+         */
+        public LocalDateTime getSlotStart(int slot) {
+            return day.atStartOfDay().plusMinutes((long) slot * slotMinutes);
+        }
+
+        /**
+         * Returns how many tables that can seat the party are free for the
+         * whole slot.
+         *
+         * @param partySize the number of guests
+         * @param slot      the slot index within the day
+         * @return the number of free tables, 0 if no table is large enough
+         */
+        public int getFreeTables(int partySize, int slot) {
+            if (partySize >= freeTables.length) {
+                return 0;
+            }
+            return freeTables[Math.max(partySize, 0)][slot];
+        }
+    }
+
+    /**
+     * Constructs a grid for the given tables. The grid is kept up to date by
+     * {@link #reservationAdded} and {@link #reservationRemoved}.
+     *
+     * @param tables      the tables, whose list index is their grid row
+     * @param slotMinutes the slot length, which must divide a day
+     * @param horizonDays the number of days covered, starting today
+     * @throws IllegalArgumentException if the slot length or horizon is invalid
+     */
+    public OccupancyGrid(List<Table> tables, int slotMinutes, int horizonDays) {
+        if (slotMinutes <= 0 || MINUTES_PER_DAY % slotMinutes != 0) throw new IllegalArgumentException
+                ("Slot length must divide a day");
+        if (horizonDays <= 0) throw new IllegalArgumentException
+                ("Horizon must be at least one day");
+        this.tables = List.copyOf(tables);
+        for (int row = 0; row < this.tables.size(); row++) {
+            rows.put(this.tables.get(row), row);
+        }
+        this.slotMinutes = slotMinutes;
+        this.slotsPerDay = MINUTES_PER_DAY / slotMinutes;
+        this.horizonDays = horizonDays;
+        this.totalSlots = slotsPerDay * horizonDays;
+        this.occupied = new long[this.tables.size()][(totalSlots + 63) / 64];
+        this.origin = LocalDate.now().atStartOfDay();
+        rebuild();
+    }
+
+    public int getSlotMinutes() {
+        return slotMinutes;
+    }
+
+    public int getHorizonDays() {
+        return horizonDays;
+    }
+
+    /**
+     * Marks the slots of a reservation on one table as occupied, unless it
+     * has been removed again: the removal may have been reported first.
+     */
+    public synchronized void reservationAdded(Table table, Reservation reservation) {
+        roll();
+        Integer row = rows.get(table);
+        if (row != null && table.holds(reservation)) {
+            mark(row, reservation, true);
+        }
+    }
+
+    /**
+     * Clears the slots of a reservation on one table. Slots shared with
+     * another reservation of the table are marked again.
+     */
+    public synchronized void reservationRemoved(Table table, Reservation reservation) {
+        roll();
+        Integer row = rows.get(table);
+        if (row != null) {
+            mark(row, reservation, false);
+            for (Reservation other : table.getReservations()) {
+                mark(row, other, true);
+            }
+        }
+    }
+
+    /**
+     * Answers an availability question from the grid if it can: the request
+     * must start and end on slot boundaries inside the horizon.
+     *
+     * @param table    the table
+     * @param start    the requested start time
+     * @param duration the requested duration in minutes
+     * @return TRUE or FALSE, or null if the grid cannot answer exactly
+     */
+    public synchronized Boolean isFree(Table table, LocalDateTime start, int duration) {
+        roll();
+        Integer row = rows.get(table);
+        int from = firstSlot(start, duration);
+        if (row == null || from < 0) {
+            return null;
+        }
+        return table.getStatus() != TableStatus.UNAVAILABLE
+                && isClear(occupied[row], from, from + duration / slotMinutes);
+    }
+
+    /**
+     * Filters the tables free for a whole period in one pass, if the grid
+     * can answer for the period (see {@link #isFree}).
+     *
+     * @param candidates the tables to check
+     * @param start      the requested start time
+     * @param duration   the requested duration in minutes
+     * @return the free candidates in their original order, or null if the
+     *         grid cannot answer or a candidate is not on the grid
+     */
+    public synchronized List<Table> findFree(Iterable<Table> candidates, LocalDateTime start,
+                                             int duration) {
+        roll();
+        int from = firstSlot(start, duration);
+        if (from < 0) {
+            return null;
+        }
+        int to = from + duration / slotMinutes;
+        List<Table> free = new ArrayList<>();
+        for (Table table : candidates) {
+            Integer row = rows.get(table);
+            if (row == null) {
+                return null;
+            }
+            if (table.getStatus() != TableStatus.UNAVAILABLE && isClear(occupied[row], from, to)) {
+                free.add(table);
+            }
+        }
+        return free;
+    }
+
+    /**
+     * @return the first slot of a slot-aligned period inside the horizon,
+     *         or -1 if the period is not aligned or not inside the horizon
+     */
+    private int firstSlot(LocalDateTime start, int duration) {
+        long offset = Duration.between(origin, start).toMinutes();
+        if (offset < 0 || offset % slotMinutes != 0 || duration <= 0 || duration % slotMinutes != 0
+                || !origin.plusMinutes(offset).equals(start)) {
+            return -1;
+        }
+        long from = offset / slotMinutes;
+        return from + duration / slotMinutes <= totalSlots ? (int) from : -1;
+    }
+
+    /**
+     * Counts, for every slot of a day and every party size, the free tables
+     * large enough for the party, in one pass over the tables' bitsets.
+     *
+     * @param day a day inside the horizon
+     * @return the day's heatmap
+     * @throws IllegalArgumentException if the day is outside the horizon
+     */
+    public synchronized Heatmap heatmap(LocalDate day) {
+        roll();
+        long dayIndex = Duration.between(origin, day.atStartOfDay()).toDays();
+        if (dayIndex < 0 || dayIndex >= horizonDays) throw new IllegalArgumentException
+                ("Day is outside the booking horizon");
+        int maxCapacity = 0;
+        for (Table table : tables) {
+            maxCapacity = Math.max(maxCapacity, table.getCapacity());
+        }
+
+        int first = (int) dayIndex * slotsPerDay;
+        int[][] freeTables = new int[maxCapacity + 1][slotsPerDay];
+        for (int row = 0; row < tables.size(); row++) {
+            Table table = tables.get(row);
+            if (table.getStatus() == TableStatus.UNAVAILABLE) {
+                continue;
+            }
+            int[] counts = freeTables[table.getCapacity()];
+            for (int slot = 0; slot < slotsPerDay; slot++) {
+                int bit = first + slot;
+                if ((occupied[row][bit >>> 6] & (1L << bit)) == 0) {
+                    counts[slot]++;
+                }
+            }
+        }
+        // A table seating n also seats any smaller party
+        for (int size = maxCapacity - 1; size >= 0; size--) {
+            for (int slot = 0; slot < slotsPerDay; slot++) {
+                freeTables[size][slot] += freeTables[size + 1][slot];
+            }
+        }
+        return new Heatmap(day, slotMinutes, freeTables);
+    }
+
+    /**
+     * Finds the earliest slot-aligned start times in a window at which at
+     * least one candidate table is free for the whole duration. Each table's
+     * free slots are turned into a bitset of feasible starts by AND-ing the
+     * free bitset with shifted copies of itself, a word at a time, so the
+     * cost does not depend on how many start times are tried.
+     *
+     * @param candidates the tables to consider
+     * @param from       the earliest start (rounded up to a slot boundary)
+     * @param to         the end of the window; starts are before it
+     * @param duration   the duration in minutes (rounded up to whole slots)
+     * @param limit      the maximum number of start times to return
+     * @return the start times in ascending order, each with its free
+     *         candidates; starts outside the horizon are not considered
+     */
+    public synchronized Map<LocalDateTime, List<Table>> findStarts(List<Table> candidates,
+                                                                  LocalDateTime from,
+                                                                  LocalDateTime to,
+                                                                  int duration, int limit) {
+        roll();
+        Map<LocalDateTime, List<Table>> starts = new LinkedHashMap<>();
+        int length = Math.max(1, (duration + slotMinutes - 1) / slotMinutes);
+        int firstStart = (int) Math.max(0, Math.min(totalSlots,
+                ceilDiv(Duration.between(origin, from).toMinutes(), slotMinutes)));
+        int endStart = (int) Math.max(0, Math.min(totalSlots - length + 1L,
+                ceilDiv(Duration.between(origin, to).toMinutes(), slotMinutes)));
+        if (limit <= 0 || firstStart >= endStart) {
+            return starts;
+        }
+
+        List<Table> tablesWithStarts = new ArrayList<>();
+        List<BitSet> feasibleStarts = new ArrayList<>();
+        BitSet anyTable = new BitSet(totalSlots);
+        for (Table table : candidates) {
+            Integer row = rows.get(table);
+            if (row == null || table.getStatus() == TableStatus.UNAVAILABLE) {
+                continue;
+            }
+            BitSet feasible = BitSet.valueOf(runStarts(occupied[row], length));
+            feasible.clear(0, firstStart);
+            feasible.clear(endStart, Math.max(endStart, feasible.length()));
+            if (!feasible.isEmpty()) {
+                tablesWithStarts.add(table);
+                feasibleStarts.add(feasible);
+                anyTable.or(feasible);
+            }
+        }
+
+        for (int slot = anyTable.nextSetBit(0); slot >= 0 && starts.size() < limit;
+             slot = anyTable.nextSetBit(slot + 1)) {
+            List<Table> free = new ArrayList<>();
+            for (int i = 0; i < tablesWithStarts.size(); i++) {
+                if (feasibleStarts.get(i).get(slot)) {
+                    free.add(tablesWithStarts.get(i));
+                }
+            }
+            starts.put(origin.plusMinutes((long) slot * slotMinutes), free);
+        }
+        return starts;
+    }
+
+    /**
+     * Returns the slots at which a run of free slots of the given length
+     * starts. A start is feasible when the free bitset AND its copies shifted
+     * by 1 .. length-1 is set; the shifts double each round.
+     */
+    private long[] runStarts(long[] occupiedBits, int length) {
+        long[] feasible = new long[occupiedBits.length];
+        for (int word = 0; word < feasible.length; word++) {
+            feasible[word] = ~occupiedBits[word];
+        }
+        // Slots past the horizon are not free
+        int tail = totalSlots & 63;
+        if (tail != 0) {
+            feasible[feasible.length - 1] &= (1L << tail) - 1;
+        }
+        for (int covered = 1; covered < length; ) {
+            int shift = Math.min(covered, length - covered);
+            // Ascending order only reads words not yet updated this round
+            for (int word = 0; word < feasible.length; word++) {
+                feasible[word] &= shiftedRight(feasible, word, shift);
+            }
+            covered += shift;
+        }
+        return feasible;
+    }
+
+    /**
+     * @return word {@code word} of the bitset shifted right by {@code shift} bits
+     */
+    private static long shiftedRight(long[] bits, int word, int shift) {
+        int source = word + (shift >>> 6);
+        int offset = shift & 63;
+        long low = source < bits.length ? bits[source] : 0L;
+        if (offset == 0) {
+            return low;
+        }
+        long high = source + 1 < bits.length ? bits[source + 1] : 0L;
+        return (low >>> offset) | (high << (64 - offset));
+    }
+
+    private static long ceilDiv(long value, long divisor) {
+        return -Math.floorDiv(-value, divisor);
+    }
+
+    /**
+     * Moves the horizon to start today, rebuilding the bitsets from the
+     * tables' reservations when a day has passed.
+     */
+    private void roll() {
+        LocalDateTime today = LocalDate.now().atStartOfDay();
+        if (today.isAfter(origin)) {
+            origin = today;
+            rebuild();
+        }
+    }
+
+    /**
+     * Rebuilds the bitsets from the tables' reservations, e.g. after the
+     * reservations were bulk loaded without telling the listener.
+     */
+    public synchronized void reload() {
+        origin = LocalDate.now().atStartOfDay();
+        rebuild();
+    }
+
+    private void rebuild() {
+        for (int row = 0; row < tables.size(); row++) {
+            Arrays.fill(occupied[row], 0L);
+            for (Reservation reservation : tables.get(row).getReservations()) {
+                mark(row, reservation, true);
+            }
+        }
+    }
+
+    /**
+     * Sets or clears every slot the reservation covers, even partly.
+     */
+    private void mark(int row, Reservation reservation, boolean value) {
+        long startOffset = Duration.between(origin, reservation.getStartTime()).toMinutes();
+        long endOffset = Duration.between(origin, reservation.getEndTime()).toMinutes();
+        int from = (int) Math.max(0, Math.min(totalSlots, Math.floorDiv(startOffset, slotMinutes)));
+        // Round the end up so a partly covered slot counts as occupied
+        int to = (int) Math.max(0, Math.min(totalSlots,
+                Math.floorDiv(endOffset + slotMinutes - 1, slotMinutes)));
+        setRange(occupied[row], from, to, value);
+    }
+
+    private static void setRange(long[] bits, int from, int to, boolean value) {
+        for (int word = from >>> 6; from < to; word++) {
+            int end = Math.min(to, (word + 1) << 6);
+            long mask = rangeMask(from, end);
+            bits[word] = value ? bits[word] | mask : bits[word] & ~mask;
+            from = end;
+        }
+    }
+
+    private static boolean isClear(long[] bits, int from, int to) {
+        for (int word = from >>> 6; from < to; word++) {
+            int end = Math.min(to, (word + 1) << 6);
+            if ((bits[word] & rangeMask(from, end)) != 0) {
+                return false;
+            }
+            from = end;
+        }
+        return true;
+    }
+
+    /**
+     * @return the mask of bits [from, to) within the word holding bit from,
+     *         where to is at most the end of that word
+     */
+    private static long rangeMask(int from, int to) {
+        int width = to - from;
+        long mask = width == 64 ? -1L : (1L << width) - 1;
+        return mask << (from & 63);
+    }
+}
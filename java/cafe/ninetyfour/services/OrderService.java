@@ -1,100 +1,343 @@
 package cafe.ninetyfour.services;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.*;
 import java.io.*;
 
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
 import cafe.ninetyfour.exceptions.ServiceException;
 import cafe.ninetyfour.enums.OrderStatus;
 import cafe.ninetyfour.models.Order;
+import cafe.ninetyfour.persistence.OrderJournal;
+import cafe.ninetyfour.persistence.OrderPartitionStore;
+import cafe.ninetyfour.repository.OrderRepository;
+import cafe.ninetyfour.repository.Repositories;
 
 
 /** OrderService class is responsible for managing orders in the cafe system.
  * It handles order placement, status tracking, and persistence.
+ * Orders are grouped in one partition per day. Only today's partition and
+ * partitions that still contain unfinished orders are kept in memory;
+ * older partitions are read from the order repository when a query needs them.
+ * Every mutation is recorded by the repository as it happens; changed
+ * partitions are only stored in full at a periodic checkpoint.
+ * Resident orders are also indexed by ID, status, customer and order time,
+ * so the lookups kitchen and waiter screens poll do not scan the partitions
+ * and time-window queries only touch the days in the window.
  */
 
 public class OrderService {
     private static final Logger logger = Logger.getLogger(OrderService.class.getName());
-    private static final String ORDERS_FILE = "orders.dat";
-    private List<Order> allOrders;
+    // Number of recorded mutations after which a new snapshot is taken
+    private static final int SNAPSHOT_INTERVAL = 500;
+    // Resident partitions (day -> orders placed that day)
+    private final NavigableMap<LocalDate, List<Order>> residentPartitions;
+    // Orders of the resident partitions only
     private final Map<Integer, Order> ordersById;
+    // Resident orders by status and by customer, ordered by order ID
+    private final Map<OrderStatus, Set<Order>> ordersByStatus;
+    private final Map<Integer, Set<Order>> ordersByCustomer;
+    // Resident orders by order time (orders placed at the same instant share a set)
+    private final NavigableMap<LocalDateTime, Set<Order>> ordersByTime;
+    // Resident partitions changed since the last snapshot
+    private final Set<LocalDate> dirtyPartitions;
+    private final OrderRepository repository;
     private int nextOrderId = 1;
 
 
     /**
-     * Constructor for OrderService.
-     * Initializes the order list and loads existing orders from file.
+     * Constructor for OrderService using the configured order repository.
      */
     public OrderService() {
-        this.allOrders = new CopyOnWriteArrayList<>();
+        this(Repositories.getDefault().orders());
+    }
+
+    /**
+     * Constructor for OrderService.
+     * Replays unsaved mutations from the repository and loads the open partitions.
+     *
+     * @param repository the repository storing the orders
+     */
+    public OrderService(OrderRepository repository) {
+        this.residentPartitions = new ConcurrentSkipListMap<>();
         this.ordersById = new ConcurrentHashMap<>();  // Thread-safe map
-        loadOrders();  // Load orders from file on startup
+        // Every status gets its set up front, so the EnumMap is never modified
+        this.ordersByStatus = new EnumMap<>(OrderStatus.class);
+        for (OrderStatus status : OrderStatus.values()) {
+            ordersByStatus.put(status, newOrderSet());
+        }
+        this.ordersByCustomer = new ConcurrentHashMap<>();
+        this.ordersByTime = new ConcurrentSkipListMap<>();
+        this.dirtyPartitions = ConcurrentHashMap.newKeySet();
+        this.repository = repository;
+        loadOrders();  // Load orders from the repository on startup
     }
 
     // Persistence methods
     /**
-     * Saves the current orders to a file.
+     * Stores every changed partition as a checkpoint, after which the
+     * recorded mutations are no longer needed for recovery. Partitions that
+     * are closed (not today and with no unfinished orders) are then evicted
+     * from memory.
      *
      * @throws ServiceException if an error occurs during saving
      */
     public synchronized void saveOrders() throws ServiceException {
         try {
-            new File("data").mkdirs();
-            File tempFile = new File(ORDERS_FILE + ".tmp");
-
-            try (ObjectOutputStream oos = new ObjectOutputStream(
-                    new FileOutputStream(tempFile))) {
-                oos.writeObject(new ArrayList<>(allOrders));
+            Map<LocalDate, List<Order>> changed = new TreeMap<>();
+            for (LocalDate day : dirtyPartitions) {
+                changed.put(day, residentPartitions.getOrDefault(day, List.of()));
             }
+            repository.checkpoint(changed);
+            dirtyPartitions.clear();
+        } catch (IOException e) {
+            throw new ServiceException("Failed to save orders", e);
+        }
+        evictClosedPartitions();
+    }
+
+
+    /**
+     * Replays the mutations the repository recorded since its last
+     * checkpoint, then loads the open partitions.
+     */
+    private synchronized void loadOrders() {
+        residentPartitions.clear();
+        ordersById.clear();
+        ordersByStatus.values().forEach(Set::clear);
+        ordersByCustomer.clear();
+        ordersByTime.clear();
+        dirtyPartitions.clear();
+
+        try {
+            int replayed = repository.recover(new OrderJournal.Listener() {
+                @Override
+                public void orderPlaced(Order order) {
+                    // Already in its partition if a crash hit between snapshot and truncate
+                    LocalDate day = OrderPartitionStore.dayOf(order);
+                    List<Order> partition = residentPartition(day);
+                    if (!ordersById.containsKey(order.getOrderId())) {
+                        partition.add(order);
+                        index(order);
+                        dirtyPartitions.add(day);
+                    }
+                }
 
-            File dataFile = new File(ORDERS_FILE);
-            if (dataFile.exists() && !dataFile.delete()) {
-                throw new ServiceException("Could not delete old orders file");
+                @Override
+                public void statusChanged(int orderId, OrderStatus newStatus) {
+                    Order order = findOrderForUpdate(orderId);
+                    if (order != null) {
+                        changeStatus(order, () -> order.updateStatus(newStatus));
+                    }
+                }
+            });
+            if (replayed > 0) {
+                logger.info("Replayed " + replayed + " unsaved order mutations");
             }
-            if (!tempFile.renameTo(dataFile)) {
-                throw new ServiceException("Could not rename temp orders file");
+
+            residentPartition(LocalDate.now());
+            for (LocalDate day : repository.getOpenDays()) {
+                residentPartition(day);
             }
+
+            // Reset ID counter
+            int maxResidentId = ordersById.keySet().stream()
+                    .mapToInt(Integer::intValue)
+                    .max()
+                    .orElse(0);
+            this.nextOrderId = Math.max(maxResidentId, repository.getMaxOrderId()) + 1;
         } catch (IOException e) {
-            throw new ServiceException("Failed to save orders", e);
+            logger.severe("Error loading orders: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns a resident partition, reading it from disk first if needed.
+     *
+     * @param day the partition day
+     * @return the partition's orders
+     */
+    private synchronized List<Order> residentPartition(LocalDate day) {
+        List<Order> partition = residentPartitions.get(day);
+        if (partition == null) {
+            partition = new CopyOnWriteArrayList<>(readPartition(day));
+            partition.forEach(this::index);
+            residentPartitions.put(day, partition);
+        }
+        return partition;
+    }
+
+    private static Set<Order> newOrderSet() {
+        return new ConcurrentSkipListSet<>(Comparator.comparingInt(Order::getOrderId));
+    }
+
+    /**
+     * Adds a resident order to the ID, status and customer indexes.
+     */
+    private void index(Order order) {
+        ordersById.put(order.getOrderId(), order);
+        ordersByStatus.get(order.getStatus()).add(order);
+        ordersByCustomer.computeIfAbsent(order.getCustomerId(), id -> newOrderSet()).add(order);
+        if (order.getOrderTime() != null) {
+            ordersByTime.computeIfAbsent(order.getOrderTime(), time -> newOrderSet()).add(order);
+        }
+    }
+
+    /**
+     * Removes an evicted order from the indexes.
+     */
+    private void unindex(Order order) {
+        ordersById.remove(order.getOrderId());
+        ordersByStatus.get(order.getStatus()).remove(order);
+        ordersByCustomer.computeIfPresent(order.getCustomerId(), (id, orders) -> {
+            orders.remove(order);
+            return orders.isEmpty() ? null : orders;
+        });
+        if (order.getOrderTime() != null) {
+            ordersByTime.computeIfPresent(order.getOrderTime(), (time, orders) -> {
+                orders.remove(order);
+                return orders.isEmpty() ? null : orders;
+            });
         }
     }
 
+    /**
+     * Applies a status change to a resident order and moves it to the
+     * set of its new status.
+     *
+     * @param order  the resident order
+     * @param change the mutation changing the order's status
+     */
+    private synchronized void changeStatus(Order order, Runnable change) {
+        OrderStatus previous = order.getStatus();
+        change.run();
+        if (order.getStatus() != previous) {
+            ordersByStatus.get(previous).remove(order);
+            ordersByStatus.get(order.getStatus()).add(order);
+        }
+    }
 
     /**
-     * Loads orders from a file into the service.
+     * Reads one partition from the repository without making it resident.
+     * Read errors are logged and treated as an empty partition.
+     *
+     * @param day the partition day
+     * @return the partition's orders
      */
-    private void loadOrders() {
-        File file = new File(ORDERS_FILE);
-        if (file.exists()) {
-            try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-                List<Order> loaded = (List<Order>) ois.readObject();
+    private List<Order> readPartition(LocalDate day) {
+        try {
+            return repository.findByDay(day);
+        } catch (IOException e) {
+            logger.severe("Error reading order partition " + day + ": " + e.getMessage());
+            return List.of();
+        }
+    }
 
-                // Reset ID counter
-                this.nextOrderId = loaded.stream()
-                        .mapToInt(Order::getOrderId)
-                        .max()
-                        .orElse(0) + 1;
+    /**
+     * Drops closed partitions from memory. A partition is closed once it is
+     * not today's and all its orders are completed; unsaved partitions are kept.
+     */
+    private synchronized void evictClosedPartitions() {
+        LocalDate today = LocalDate.now();
+        Iterator<Map.Entry<LocalDate, List<Order>>> it = residentPartitions.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<LocalDate, List<Order>> entry = it.next();
+            LocalDate day = entry.getKey();
+            if (day.equals(today) || dirtyPartitions.contains(day)) {
+                continue;
+            }
+            boolean closed = entry.getValue().stream()
+                    .allMatch(order -> order.getStatus() == OrderStatus.COMPLETED);
+            if (closed) {
+                entry.getValue().forEach(this::unindex);
+                it.remove();
+            }
+        }
+    }
 
-                // Reload data
-                allOrders.clear();
-                ordersById.clear();
-                loaded.forEach(order -> {
-                    allOrders.add(order);
-                    ordersById.put(order.getOrderId(), order);
-                });
-            } catch (Exception e) {
-                System.err.println("Error loading orders: " + e.getMessage());
+    /**
+     * Finds an order by ID without making its partition resident.
+     *
+     * @param orderId the order ID
+     * @return the order, or null if not found
+     */
+    private Order lookupOrder(int orderId) {
+        Order order = ordersById.get(orderId);
+        if (order != null) {
+            return order;
+        }
+        try {
+            return repository.findById(orderId);
+        } catch (IOException e) {
+            logger.severe("Error reading order " + orderId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Finds an order that is about to change, making its partition resident
+     * and marking it dirty so the change reaches the next snapshot.
+     *
+     * @param orderId the order ID
+     * @return the order, or null if not found
+     */
+    private synchronized Order findOrderForUpdate(int orderId) {
+        Order order = ordersById.get(orderId);
+        if (order == null) {
+            Order stored = lookupOrder(orderId);
+            if (stored == null) {
+                return null;
+            }
+            residentPartition(OrderPartitionStore.dayOf(stored));
+            order = ordersById.get(orderId);
+            if (order == null) {
+                return null;
             }
         }
+        dirtyPartitions.add(OrderPartitionStore.dayOf(order));
+        return order;
+    }
+
+    /**
+     * Records a status change in the repository.
+     * Failures are logged rather than thrown so that the
+     * in-memory status update still takes effect. Callers hold the
+     * service's lock, like {@link #saveOrders}, so a record cannot be
+     * appended between a checkpoint and the journal being reset.
+     *
+     * @param order the order whose status changed
+     */
+    private void recordStatusChange(Order order) {
+        try {
+            repository.statusChanged(order);
+            snapshotIfDue();
+        } catch (IOException | ServiceException e) {
+            logger.severe("Error recording status of order "
+                    + order.getOrderId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Takes a new snapshot once enough mutations have been recorded since
+     * the last one, keeping recovery time bounded.
+     *
+     * @throws ServiceException if the snapshot cannot be written
+     */
+    private synchronized void snapshotIfDue() throws ServiceException {
+        if (repository.getPendingMutations() >= SNAPSHOT_INTERVAL) {
+            saveOrders();
+        }
     }
 
     public synchronized void saveAndReload() throws ServiceException {
         saveOrders();
-        allOrders.clear();
-        ordersById.clear();
         loadOrders();
     }
 
@@ -108,14 +351,17 @@ public class OrderService {
     public synchronized Order placeOrder(Order order) throws ServiceException {
         try {
             Objects.requireNonNull(order, "Order cannot be null");
-            if (order.getItems() == null || order.getItems().isEmpty()) {
+            if (order.getLines() == null || order.getLines().isEmpty()) {
                 throw new ServiceException("Order must contain at least one item");
             }
 
             order.setOrderId(nextOrderId++);
-            allOrders.add(order);
-            ordersById.put(order.getOrderId(), order);
-            saveOrders();
+            LocalDate day = OrderPartitionStore.dayOf(order);
+            residentPartition(day).add(order);
+            index(order);
+            dirtyPartitions.add(day);
+            repository.orderPlaced(order);
+            snapshotIfDue();
             logger.info("Placed new order ID: " + order.getOrderId());
             return order;
         } catch (Exception e) {
@@ -128,14 +374,26 @@ public class OrderService {
     //method to find orders by status
     /**
      * Retrieves all orders with the specified status.
+     * Unfinished orders are always resident and are read from the status
+     * index; completed orders are collected from every partition.
      *
      * @param status the status to filter orders by
-     * @return a list of orders with the specified status
+     * @return a list of orders with the specified status, ordered by ID
      */
     public List<Order> getOrdersByStatus(OrderStatus status) {
-        return allOrders.stream()
-                .filter(order -> order.getStatus() == status)
-                .toList();
+        if (status != OrderStatus.COMPLETED) {
+            // Re-checked in case an order was changed without going through this service
+            return ordersByStatus.get(status).stream()
+                    .filter(order -> order.getStatus() == status)
+                    .toList();
+        }
+        List<Order> result = new ArrayList<>();
+        forEachOrder(order -> {
+            if (order.getStatus() == status) {
+                result.add(order);
+            }
+        });
+        return result;
     }
 
     // Optimized status tracking
@@ -146,18 +404,146 @@ public class OrderService {
      * @return the status of the order, or null if not found
      */
     public OrderStatus trackStatus(int orderId) {
-        Order order = ordersById.get(orderId);
+        Order order = lookupOrder(orderId);
         return order != null ? order.getStatus() : null;
     }
 
     // Get all orders (immutable view)
     /**
      * Retrieves all orders in the system.
+     * This reads every partition into memory; reports should
+     * use {@link #forEachOrder(Consumer)} instead.
      *
      * @return an unmodifiable list of all orders
      */
     public List<Order> getAllOrders() {
-        return Collections.unmodifiableList(allOrders);
+        List<Order> result = new ArrayList<>();
+        forEachOrder(result::add);
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Retrieves the orders of the partitions currently held in memory,
+     * which include every unfinished order.
+     *
+     * @return an unmodifiable list of the resident orders
+     */
+    public List<Order> getResidentOrders() {
+        List<Order> result = new ArrayList<>();
+        residentPartitions.values().forEach(result::addAll);
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Passes every order to the action, oldest partition first.
+     * Partitions that are not resident are read one at a time and
+     * dropped again, so memory use does not grow with order history.
+     *
+     * @param action the action to perform on each order
+     */
+    public void forEachOrder(Consumer<Order> action) {
+        SortedSet<LocalDate> days = new TreeSet<>(residentPartitions.keySet());
+        try {
+            days.addAll(repository.getDays());
+        } catch (IOException e) {
+            logger.severe("Error listing order partitions: " + e.getMessage());
+        }
+        for (LocalDate day : days) {
+            List<Order> partition = residentPartitions.get(day);
+            (partition != null ? partition : readPartition(day)).forEach(action);
+        }
+    }
+
+    /**
+     * Retrieves the orders placed in a time window.
+     *
+     * @param start the start of the window (inclusive)
+     * @param end   the end of the window (exclusive)
+     * @return the orders in the window, ordered by order time
+     */
+    public List<Order> getOrdersBetween(LocalDateTime start, LocalDateTime end) {
+        List<Order> result = new ArrayList<>();
+        ordersBetween(start, end).forEachRemaining(result::add);
+        return result;
+    }
+
+    /**
+     * Returns an iterator over the orders placed in a time window, in order
+     * time order. Only the day partitions overlapping the window are visited:
+     * resident days are read from the time index, other days are read from
+     * the repository one at a time when the iterator reaches them.
+     *
+     * @param start the start of the window (inclusive)
+     * @param end   the end of the window (exclusive)
+     * @return an iterator over the orders in the window
+     * @throws IllegalArgumentException if the end is before the start
+     */
+    public Iterator<Order> ordersBetween(LocalDateTime start, LocalDateTime end) {
+        Objects.requireNonNull(start, "Start cannot be null");
+        Objects.requireNonNull(end, "End cannot be null");
+        if (end.isBefore(start)) throw new IllegalArgumentException
+                ("End cannot be before start");
+
+        LocalDate firstDay = start.toLocalDate();
+        LocalDate lastDay = end.toLocalDate();
+        NavigableSet<LocalDate> days = new TreeSet<>(
+                residentPartitions.subMap(firstDay, true, lastDay, true).keySet());
+        try {
+            days.addAll(repository.getDays().subSet(firstDay, lastDay.plusDays(1)));
+        } catch (IOException e) {
+            logger.severe("Error listing order partitions: " + e.getMessage());
+        }
+        Iterator<LocalDate> dayIterator = days.iterator();
+
+        return new Iterator<>() {
+            private Iterator<Order> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && dayIterator.hasNext()) {
+                    current = ordersOfDayBetween(dayIterator.next(), start, end).iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public Order next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    /**
+     * Collects one day's orders that fall in a time window.
+     */
+    private List<Order> ordersOfDayBetween(LocalDate day, LocalDateTime start, LocalDateTime end) {
+        LocalDateTime from = max(start, day.atStartOfDay());
+        LocalDateTime to = min(end, day.plusDays(1).atStartOfDay());
+        List<Order> result = new ArrayList<>();
+        if (residentPartitions.containsKey(day)) {
+            ordersByTime.subMap(from, true, to, false).values().forEach(result::addAll);
+            return result;
+        }
+        for (Order order : readPartition(day)) {
+            LocalDateTime time = order.getOrderTime();
+            if (time != null && !time.isBefore(from) && time.isBefore(to)) {
+                result.add(order);
+            }
+        }
+        result.sort(Comparator.comparing(Order::getOrderTime)
+                .thenComparingInt(Order::getOrderId));
+        return result;
+    }
+
+    private static LocalDateTime max(LocalDateTime a, LocalDateTime b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    private static LocalDateTime min(LocalDateTime a, LocalDateTime b) {
+        return a.isBefore(b) ? a : b;
     }
 
     /**
@@ -166,11 +552,44 @@ public class OrderService {
      * @param customerId the ID of the customer
      * @return a list of orders for the specified customer
      */
-    // Get orders by customer (using stream)
+    // Get orders by customer (customer index plus a repository query)
     public List<Order> getOrdersByCustomer(int customerId) {
-        return allOrders.stream()
-                .filter(order -> order.getCustomerId() == customerId)
-                .toList();
+        List<Order> result = new ArrayList<>(getResidentOrdersByCustomer(customerId));
+        try {
+            for (Order order : repository.findByCustomer(customerId)) {
+                // Resident partitions are newer than their stored copy
+                if (!residentPartitions.containsKey(OrderPartitionStore.dayOf(order))) {
+                    result.add(order);
+                }
+            }
+        } catch (IOException e) {
+            logger.severe("Error reading orders of customer " + customerId + ": " + e.getMessage());
+        }
+        result.sort(Comparator.comparingInt(Order::getOrderId));
+        return result;
+    }
+
+    /**
+     * Retrieves the resident orders of a customer, which include all of
+     * the customer's unfinished orders, from the customer index.
+     *
+     * @param customerId the ID of the customer
+     * @return the customer's resident orders, ordered by ID
+     */
+    public List<Order> getResidentOrdersByCustomer(int customerId) {
+        Set<Order> orders = ordersByCustomer.get(customerId);
+        return orders != null ? List.copyOf(orders) : List.of();
+    }
+
+    /**
+     * Finds an order by its ID. Resident orders are found in the ID index;
+     * other orders are read from the partition holding them.
+     *
+     * @param orderId the ID of the order to find
+     * @return the order, or empty if no order has the ID
+     */
+    public Optional<Order> findById(int orderId) {
+        return Optional.ofNullable(lookupOrder(orderId));
     }
 
     /**
@@ -178,11 +597,11 @@ public class OrderService {
      *
      * @param orderId the ID of the order to retrieve
      * @return a list of orders with the specified ID
+     * @deprecated use {@link #findById(int)}
      */
+    @Deprecated
     public List<Order> getOrderById(int orderId) {
-        return allOrders.stream()
-                .filter(order -> order.getOrderId() == orderId)
-                .toList();
+        return findById(orderId).map(List::of).orElse(List.of());
     }
 
     // Optimized status update using map
@@ -193,10 +612,11 @@ public class OrderService {
      * @param newStatus the new status to set
      * @return true if the status was successfully updated, false otherwise
      */
-    public boolean updateStatus(int orderId, OrderStatus newStatus) {
-        Order order = ordersById.get(orderId);
+    public synchronized boolean updateStatus(int orderId, OrderStatus newStatus) {
+        Order order = findOrderForUpdate(orderId);
         if (order != null) {
-            order.updateStatus(newStatus);
+            changeStatus(order, () -> order.updateStatus(newStatus));
+            recordStatusChange(order);
             return true;
         }
         return false;
@@ -208,9 +628,11 @@ public class OrderService {
      */
     public void displayOutstandingOrders() {
         System.out.println("Outstanding Orders:");
-        allOrders.stream()
-                .filter(order -> order.getStatus() != OrderStatus.COMPLETED)
-                .forEach(System.out::println);
+        ordersByStatus.forEach((status, orders) -> {
+            if (status != OrderStatus.COMPLETED) {
+                orders.forEach(System.out::println);
+            }
+        });
     }
 
     // Process an order
@@ -220,10 +642,11 @@ public class OrderService {
      * @param orderId the ID of the order to process
      * @return true if the order was successfully processed, false otherwise
      */
-    public boolean processOrder(int orderId) {
-        Order order = ordersById.get(orderId);
+    public synchronized boolean processOrder(int orderId) {
+        Order order = findOrderForUpdate(orderId);
         if (order != null) {
-            order.processOrder();
+            changeStatus(order, order::processOrder);
+            recordStatusChange(order);
             return true;
         }
         return false;
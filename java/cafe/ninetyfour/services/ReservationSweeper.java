@@ -0,0 +1,272 @@
+package cafe.ninetyfour.services;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import cafe.ninetyfour.models.Reservation;
+
+/**
+ * ReservationSweeper expires reservations at their end time, taking them
+ * off their tables' schedules so availability checks only ever look at
+ * the live horizon, and moving them to COMPLETED or EXPIRED.
+ * <p>
+ * Reservations wait in a hierarchical timing wheel with one-minute ticks:
+ * {@value #LEVELS} wheels of {@value #WHEEL_SIZE} slots, each slot of a
+ * wheel spanning a whole turn of the wheel below. A reservation is put on
+ * the lowest wheel whose turn reaches its end time and cascades down as
+ * the time approaches, so scheduling is constant time and each tick only
+ * touches the reservations due in it. End times beyond the top wheel wait
+ * in an overflow list until they come within reach.
+ */
+public class ReservationSweeper implements Closeable {
+    private static final Logger logger = Logger.getLogger(ReservationSweeper.class.getName());
+
+    public static final long DEFAULT_SWEEP_INTERVAL_MILLIS = 60_000;
+
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int LEVELS = 4;
+
+    private final LocalDateTime origin;
+    // wheels[level][slot]; ticks are minutes since origin
+    private final List<ArrayDeque<Entry>> wheels = new ArrayList<>();
+    private final List<Entry> overflow = new ArrayList<>();
+    private final List<Entry> due = new ArrayList<>();
+    private final Set<Reservation> pending = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final List<Consumer<List<Reservation>>> listeners = new CopyOnWriteArrayList<>();
+    private long currentTick;
+    private ScheduledExecutorService executor;
+
+    // Metrics
+    private final AtomicLong expiredReservations = new AtomicLong();
+    private final AtomicLong reclaimedEntries = new AtomicLong();
+
+    private static final class Entry {
+        private final Reservation reservation;
+        private final long tick;
+
+        private Entry(Reservation reservation, long tick) {
+            this.reservation = reservation;
+            this.tick = tick;
+        }
+    }
+
+    /**
+     * Constructs a sweeper whose clock starts now.
+     */
+    public ReservationSweeper() {
+        this(LocalDateTime.now());
+    }
+
+    /**
+     * Constructs a sweeper whose clock starts at the given time.
+     *
+     * @param now the current time
+     */
+    public ReservationSweeper(LocalDateTime now) {
+        this.origin = now.withSecond(0).withNano(0);
+        for (int i = 0; i < LEVELS * WHEEL_SIZE; i++) {
+            wheels.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Sweeps in the background at a fixed interval. The thread is a
+     * daemon, so it does not keep the application alive.
+     *
+     * @param intervalMillis the time between sweeps
+     * @return this sweeper
+     * @throws IllegalArgumentException if the interval is not positive
+     * @throws IllegalStateException    if the sweeper was already started
+     */
+    public synchronized ReservationSweeper start(long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Sweep interval must be positive");
+        }
+        if (executor != null) {
+            throw new IllegalStateException("Sweeper already started");
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cafe94-reservation-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::sweepSafely, intervalMillis, intervalMillis,
+                TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    /**
+     * Registers a listener told about every batch of expired reservations,
+     * e.g. to save their new status. Called on the sweeping thread.
+     *
+     * @param listener the listener
+     */
+    public void addExpiryListener(Consumer<List<Reservation>> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Schedules a reservation to expire at its end time. A reservation
+     * already waiting is not scheduled twice, e.g. when it holds several
+     * tables.
+     *
+     * @param reservation the reservation
+     * @return true if it was scheduled
+     */
+    public synchronized boolean schedule(Reservation reservation) {
+        if (!reservation.isActive() || !pending.add(reservation)) {
+            return false;
+        }
+        long seconds = Duration.between(origin, reservation.getEndTime()).toSeconds();
+        // Round up so a reservation never expires before its end time
+        long tick = Math.max(0, (seconds + 59) / 60);
+        place(new Entry(reservation, tick));
+        return true;
+    }
+
+    /**
+     * Expires every reservation whose end time has passed.
+     *
+     * @return the number of table reservations reclaimed
+     */
+    public int sweep() {
+        return advanceTo(LocalDateTime.now());
+    }
+
+    /**
+     * Moves the clock forward and expires every reservation ending by then.
+     * Reservations cancelled or already expired since they were scheduled
+     * are dropped.
+     *
+     * @param now the current time
+     * @return the number of table reservations reclaimed
+     */
+    public int advanceTo(LocalDateTime now) {
+        List<Entry> expiring;
+        synchronized (this) {
+            long target = Duration.between(origin, now).toMinutes();
+            while (currentTick < target) {
+                tick();
+            }
+            expiring = new ArrayList<>(due);
+            due.clear();
+            expiring.forEach(entry -> pending.remove(entry.reservation));
+        }
+
+        // Tables and their listeners are locked one by one, outside the wheel's lock
+        List<Reservation> expired = new ArrayList<>();
+        int reclaimed = 0;
+        for (Entry entry : expiring) {
+            int entries = entry.reservation.expire();
+            if (entries >= 0) {
+                expired.add(entry.reservation);
+                reclaimed += entries;
+            }
+        }
+        if (!expired.isEmpty()) {
+            expiredReservations.addAndGet(expired.size());
+            reclaimedEntries.addAndGet(reclaimed);
+            listeners.forEach(listener -> listener.accept(expired));
+        }
+        return reclaimed;
+    }
+
+    private void sweepSafely() {
+        try {
+            int reclaimed = sweep();
+            if (reclaimed > 0) {
+                logger.info("Reclaimed " + reclaimed + " expired table reservations");
+            }
+        } catch (RuntimeException e) {
+            // A failed sweep must not cancel the next ones
+            logger.severe("Reservation sweep failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Advances the clock by one minute: cascades the slots of the upper
+     * wheels that the new tick enters, from the top down, then collects
+     * the entries of the bottom wheel's slot.
+     */
+    private void tick() {
+        currentTick++;
+        if ((currentTick & ((1L << (WHEEL_BITS * LEVELS)) - 1)) == 0) {
+            List<Entry> far = new ArrayList<>(overflow);
+            overflow.clear();
+            far.forEach(this::place);
+        }
+        for (int level = LEVELS - 1; level > 0; level--) {
+            if ((currentTick & ((1L << (WHEEL_BITS * level)) - 1)) == 0) {
+                ArrayDeque<Entry> bucket = slot(level, currentTick);
+                List<Entry> cascading = new ArrayList<>(bucket);
+                bucket.clear();
+                cascading.forEach(this::place);
+            }
+        }
+        ArrayDeque<Entry> bucket = slot(0, currentTick);
+        due.addAll(bucket);
+        bucket.clear();
+    }
+
+    /**
+     * Puts an entry on the wheel of the highest group of bits in which its
+     * tick differs from the current tick.
+     */
+    private void place(Entry entry) {
+        if (entry.tick <= currentTick) {
+            due.add(entry);
+            return;
+        }
+        int level = (63 - Long.numberOfLeadingZeros(entry.tick ^ currentTick)) / WHEEL_BITS;
+        if (level >= LEVELS) {
+            overflow.add(entry);
+        } else {
+            slot(level, entry.tick).add(entry);
+        }
+    }
+
+    private ArrayDeque<Entry> slot(int level, long tick) {
+        int index = (int) ((tick >>> (WHEEL_BITS * level)) & (WHEEL_SIZE - 1));
+        return wheels.get(level * WHEEL_SIZE + index);
+    }
+
+    /**
+     * @return the number of reservations waiting to expire
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    public long getExpiredReservations() {
+        return expiredReservations.get();
+    }
+
+    public long getReclaimedEntries() {
+        return reclaimedEntries.get();
+    }
+
+    /**
+     * Stops sweeping in the background.
+     */
+    @Override
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
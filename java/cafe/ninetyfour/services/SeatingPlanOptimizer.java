@@ -0,0 +1,325 @@
+package cafe.ninetyfour.services;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import cafe.ninetyfour.models.Booking;
+import cafe.ninetyfour.models.Table;
+
+/**
+ * SeatingPlanOptimizer seats a whole batch of bookings at once, e.g. all
+ * the pending bookings of a service day, instead of one by one in the
+ * order they were made, which fragments the floor.
+ * <p>
+ * A plan puts each booking on a single table large enough for it and free
+ * for its whole duration, around the reservations already on the tables.
+ * Plans are compared by seated covers first, then by idle seat-minutes
+ * (empty seats times the booking's duration), fewer being better.
+ * The optimizer starts from a best-fit greedy plan, largest parties first,
+ * and improves it by local search until the time budget runs out: a
+ * booking moves to another table, or takes a table by ejecting the
+ * bookings in its way, which are then re-seated elsewhere if possible.
+ * A change is kept unless it makes the plan worse.
+ */
+public class SeatingPlanOptimizer {
+    public static final long DEFAULT_TIME_BUDGET_MILLIS = 1000;
+
+    // Stop early once this many moves in a row brought no improvement
+    private static final int MAX_IDLE_MOVES = 200_000;
+    // One cover is worth more than any amount of idle seat-minutes
+    private static final long COVER_WEIGHT = 1L << 40;
+
+    private final List<Table> tables;
+    private final Random random;
+
+    /**
+     * A seating plan: the table of each seated booking and the bookings
+     * that could not be seated.
+     */
+    public static final class SeatingPlan {
+        private final Map<Booking, Table> assignments;
+        private final List<Booking> unseated;
+        private final int seatedCovers;
+        private final long idleSeatMinutes;
+
+        private SeatingPlan(Map<Booking, Table> assignments, List<Booking> unseated,
+                            int seatedCovers, long idleSeatMinutes) {
+            this.assignments = Collections.unmodifiableMap(assignments);
+            this.unseated = Collections.unmodifiableList(unseated);
+            this.seatedCovers = seatedCovers;
+            this.idleSeatMinutes = idleSeatMinutes;
+        }
+
+        /**
+         * @return the table of each seated booking, in booking start order
+         */
+        public Map<Booking, Table> getAssignments() {
+            return assignments;
+        }
+
+        public List<Booking> getUnseated() {
+            return unseated;
+        }
+
+        public int getSeatedCovers() {
+            return seatedCovers;
+        }
+
+        /**
+         * @return the empty seats of the seated bookings times their durations
+         */
+        public long getIdleSeatMinutes() {
+            return idleSeatMinutes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d bookings seated (%d covers, %d idle seat-minutes), %d unseated",
+                    assignments.size(), seatedCovers, idleSeatMinutes, unseated.size());
+        }
+    }
+
+    /**
+     * Constructs an optimizer for the given tables.
+     *
+     * @param tables the tables to seat bookings at
+     */
+    public SeatingPlanOptimizer(Collection<Table> tables) {
+        this(tables, new Random());
+    }
+
+    /**
+     * Constructs an optimizer with a given source of randomness,
+     * e.g. a seeded one for repeatable plans.
+     *
+     * @param tables the tables to seat bookings at
+     * @param random the random source of the local search
+     */
+    public SeatingPlanOptimizer(Collection<Table> tables, Random random) {
+        this.tables = new ArrayList<>(tables);
+        this.random = random;
+    }
+
+    /**
+     * Computes a seating plan. The tables' schedules are not changed.
+     *
+     * @param bookings         the bookings to seat, which must not hold tables yet
+     * @param timeBudgetMillis how long the local search may run
+     * @return the best plan found
+     */
+    public SeatingPlan optimize(Collection<Booking> bookings, long timeBudgetMillis) {
+        Search search = new Search(new ArrayList<>(bookings));
+        search.greedy();
+        search.improve(System.nanoTime() + timeBudgetMillis * 1_000_000);
+        return search.toPlan();
+    }
+
+    /**
+     * The state of one optimization. Bookings and tables are referred to by
+     * index; times are minutes from the earliest booking.
+     */
+    private final class Search {
+        private final List<Booking> bookings;
+        private final int[] start;
+        private final int[] end;
+        private final int[] guests;
+        // Tables free of other reservations for each booking, smallest first
+        private final int[][] candidates;
+        private final int[] assigned;
+        // Planned bookings of each table by start minute
+        private final List<TreeMap<Integer, Integer>> schedules = new ArrayList<>();
+        private long score;
+        // Undo log of the current move: pairs of booking and previous table
+        private final List<int[]> changes = new ArrayList<>();
+
+        private Search(List<Booking> bookings) {
+            this.bookings = bookings;
+            int count = bookings.size();
+            start = new int[count];
+            end = new int[count];
+            guests = new int[count];
+            candidates = new int[count][];
+            assigned = new int[count];
+            Arrays.fill(assigned, -1);
+
+            LocalDateTime origin = bookings.stream().map(Booking::getStartTime)
+                    .min(Comparator.naturalOrder()).orElse(LocalDateTime.now());
+            for (int i = 0; i < count; i++) {
+                Booking booking = bookings.get(i);
+                start[i] = (int) Duration.between(origin, booking.getStartTime()).toMinutes();
+                // A booking takes at least a minute, so no two share a start on one table
+                end[i] = start[i] + Math.max(1, booking.getDuration());
+                guests[i] = booking.getNumberOfGuests();
+            }
+
+            Integer[] bySize = new Integer[tables.size()];
+            for (int t = 0; t < bySize.length; t++) {
+                bySize[t] = t;
+                schedules.add(new TreeMap<>());
+            }
+            Arrays.sort(bySize, Comparator.comparingInt(t -> tables.get(t).getCapacity()));
+            for (int i = 0; i < count; i++) {
+                Booking booking = bookings.get(i);
+                List<Integer> fitting = new ArrayList<>();
+                for (int t : bySize) {
+                    Table table = tables.get(t);
+                    if (table.getCapacity() >= guests[i]
+                            && table.checkAvailability(booking.getStartTime(), booking.getDuration())) {
+                        fitting.add(t);
+                    }
+                }
+                candidates[i] = fitting.stream().mapToInt(Integer::intValue).toArray();
+            }
+        }
+
+        /**
+         * Seats the largest parties first, each at the smallest free table.
+         */
+        private void greedy() {
+            Integer[] order = new Integer[bookings.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.<Integer>comparingInt(i -> -guests[i])
+                    .thenComparingInt(i -> start[i]));
+            for (int i : order) {
+                seatAnywhere(i);
+            }
+            changes.clear();
+        }
+
+        private void improve(long deadlineNanos) {
+            if (bookings.isEmpty()) {
+                return;
+            }
+            int idleMoves = 0;
+            int iteration = 0;
+            while (idleMoves < MAX_IDLE_MOVES) {
+                // Checking the clock on every move would cost more than the move
+                if ((++iteration & 255) == 0 && System.nanoTime() > deadlineNanos) {
+                    break;
+                }
+                int booking = random.nextInt(bookings.size());
+                if (candidates[booking].length == 0) {
+                    idleMoves++;
+                    continue;
+                }
+                int table = candidates[booking][random.nextInt(candidates[booking].length)];
+                if (table == assigned[booking]) {
+                    idleMoves++;
+                    continue;
+                }
+                long before = score;
+                changes.clear();
+                moveWithEjection(booking, table);
+                if (score < before) {
+                    undo();
+                    idleMoves++;
+                } else {
+                    idleMoves = score > before ? 0 : idleMoves + 1;
+                }
+            }
+        }
+
+        /**
+         * Puts a booking on a table, ejecting the bookings in its way and
+         * re-seating them wherever they fit.
+         */
+        private void moveWithEjection(int booking, int table) {
+            List<Integer> ejected = conflicts(booking, table);
+            ejected.forEach(this::unseat);
+            if (assigned[booking] >= 0) {
+                unseat(booking);
+            }
+            seat(booking, table);
+            // Smaller parties fit more tables, so re-seat the larger ones first
+            ejected.sort(Comparator.comparingInt(i -> -guests[i]));
+            ejected.forEach(this::seatAnywhere);
+        }
+
+        private List<Integer> conflicts(int booking, int table) {
+            List<Integer> found = new ArrayList<>();
+            TreeMap<Integer, Integer> schedule = schedules.get(table);
+            // Planned bookings on a table never overlap, so their ends are sorted too
+            Map.Entry<Integer, Integer> entry = schedule.lowerEntry(end[booking]);
+            while (entry != null && end[entry.getValue()] > start[booking]) {
+                found.add(entry.getValue());
+                entry = schedule.lowerEntry(entry.getKey());
+            }
+            return found;
+        }
+
+        private boolean seatAnywhere(int booking) {
+            for (int table : candidates[booking]) {
+                if (conflicts(booking, table).isEmpty()) {
+                    seat(booking, table);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void seat(int booking, int table) {
+            changes.add(new int[]{booking, assigned[booking]});
+            assigned[booking] = table;
+            schedules.get(table).put(start[booking], booking);
+            score += value(booking, table);
+        }
+
+        private void unseat(int booking) {
+            int table = assigned[booking];
+            changes.add(new int[]{booking, table});
+            schedules.get(table).remove(start[booking]);
+            assigned[booking] = -1;
+            score -= value(booking, table);
+        }
+
+        private void undo() {
+            for (int i = changes.size() - 1; i >= 0; i--) {
+                int booking = changes.get(i)[0];
+                int previous = changes.get(i)[1];
+                int current = assigned[booking];
+                if (current >= 0) {
+                    schedules.get(current).remove(start[booking]);
+                    score -= value(booking, current);
+                }
+                assigned[booking] = previous;
+                if (previous >= 0) {
+                    schedules.get(previous).put(start[booking], booking);
+                    score += value(booking, previous);
+                }
+            }
+            changes.clear();
+        }
+
+        private long value(int booking, int table) {
+            long idle = (long) (tables.get(table).getCapacity() - guests[booking])
+                    * (end[booking] - start[booking]);
+            return guests[booking] * COVER_WEIGHT - idle;
+        }
+
+        private SeatingPlan toPlan() {
+            Integer[] order = new Integer[bookings.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingInt(i -> start[i]));
+            Map<Booking, Table> plan = new LinkedHashMap<>();
+            List<Booking> unseated = new ArrayList<>();
+            int covers = 0;
+            long idle = 0;
+            for (int i : order) {
+                if (assigned[i] < 0) {
+                    unseated.add(bookings.get(i));
+                    continue;
+                }
+                Table table = tables.get(assigned[i]);
+                plan.put(bookings.get(i), table);
+                covers += guests[i];
+                idle += (long) (table.getCapacity() - guests[i]) * (end[i] - start[i]);
+            }
+            return new SeatingPlan(plan, unseated, covers, idle);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package cafe.ninetyfour.services;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import cafe.ninetyfour.persistence.PersistenceScheduler;
+import cafe.ninetyfour.repository.Repositories;
+
+/**
+ * ServiceBootstrap constructs the services concurrently on a startup
+ * executor, since each constructor blocks on loading its own store.
+ * {@link #authReady()} completes as soon as the customer and staff
+ * services are loaded, so the login screen does not wait for bookings
+ * and orders; {@link #allReady()} is the barrier for everything else.
+ */
+public class ServiceBootstrap {
+    private static final Logger logger = Logger.getLogger(ServiceBootstrap.class.getName());
+
+    private final PersistenceScheduler persistenceScheduler;
+    private final Repositories repositories;
+    private final Map<String, Long> timings = Collections.synchronizedMap(new LinkedHashMap<>());
+    private ExecutorService executor;
+    private long startNanos;
+
+    private CompletableFuture<CustomerService> customerService;
+    private CompletableFuture<StaffService> staffService;
+    private CompletableFuture<BookingService> bookingService;
+    private CompletableFuture<OrderService> orderService;
+    private CompletableFuture<AuthService> authService;
+    private TableManager tableManager;
+
+    /**
+     * Constructs a bootstrap for the configured repositories.
+     *
+     * @param persistenceScheduler the scheduler passed to the services,
+     *                             or null to save on every mutation
+     */
+    public ServiceBootstrap(PersistenceScheduler persistenceScheduler) {
+        this(persistenceScheduler, null);
+    }
+
+    /**
+     * Constructs a bootstrap for the given repositories.
+     *
+     * @param persistenceScheduler the scheduler passed to the services,
+     *                             or null to save on every mutation
+     * @param repositories         the repositories to load from,
+     *                             or null for {@link Repositories#getDefault()}
+     */
+    public ServiceBootstrap(PersistenceScheduler persistenceScheduler,
+                            Repositories repositories) {
+        this.persistenceScheduler = persistenceScheduler;
+        this.repositories = repositories;
+    }
+
+    /**
+     * Starts loading every service and returns immediately.
+     *
+     * @return this bootstrap
+     * @throws IllegalStateException if the bootstrap was already started
+     */
+    public synchronized ServiceBootstrap start() {
+        if (executor != null) {
+            throw new IllegalStateException("Services already started");
+        }
+        startNanos = System.nanoTime();
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(4, runnable -> {
+            Thread thread = new Thread(runnable, "cafe94-startup-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Resolved before any service starts, so a bad configuration
+        // fails every future with the same cause
+        CompletableFuture<Repositories> repos = CompletableFuture.supplyAsync(
+                () -> repositories != null ? repositories : Repositories.getDefault(), executor);
+        tableManager = new TableManager();
+        tableManager.getSweeper().start(ReservationSweeper.DEFAULT_SWEEP_INTERVAL_MILLIS);
+
+        customerService = repos.thenApplyAsync(r -> timed("CustomerService",
+                () -> new CustomerService(persistenceScheduler, r.customers())), executor);
+        staffService = repos.thenApplyAsync(r -> timed("StaffService",
+                () -> new StaffService(persistenceScheduler, r.staff())), executor);
+        bookingService = repos.thenApplyAsync(r -> timed("BookingService",
+                () -> new BookingService(tableManager, persistenceScheduler, r.bookings())), executor);
+        orderService = repos.thenApplyAsync(r -> timed("OrderService",
+                () -> new OrderService(r.orders())), executor);
+
+        authService = customerService.thenCombine(staffService, AuthService::new);
+        authService.thenRun(() -> record("AuthService ready", startNanos));
+        allReady().whenComplete((ignored, error) -> {
+            record("All services ready", startNanos);
+            executor.shutdown();
+            if (error != null) {
+                logger.severe("Service startup failed: " + error.getMessage());
+            } else {
+                logger.info("Startup timings (ms): " + getTimings());
+            }
+        });
+        return this;
+    }
+
+    /**
+     * @return a future completing once the services needed to log in are loaded
+     */
+    public CompletableFuture<AuthService> authReady() {
+        return authService;
+    }
+
+    /**
+     * @return a future completing once every service is loaded
+     */
+    public CompletableFuture<Void> allReady() {
+        return CompletableFuture.allOf(customerService, staffService,
+                bookingService, orderService, authService);
+    }
+
+    /**
+     * Returns the time each service took to load and the time from
+     * {@link #start()} until the readiness points, in milliseconds.
+     *
+     * @return the timings recorded so far, in completion order
+     */
+    public Map<String, Long> getTimings() {
+        synchronized (timings) {
+            return new LinkedHashMap<>(timings);
+        }
+    }
+
+    // Accessors wait for the service if it is still loading
+
+    public CustomerService getCustomerService() {
+        return customerService.join();
+    }
+
+    public StaffService getStaffService() {
+        return staffService.join();
+    }
+
+    public BookingService getBookingService() {
+        return bookingService.join();
+    }
+
+    public OrderService getOrderService() {
+        return orderService.join();
+    }
+
+    public AuthService getAuthService() {
+        return authService.join();
+    }
+
+    public TableManager getTableManager() {
+        return tableManager;
+    }
+
+    private <T> T timed(String name, Supplier<T> constructor) {
+        long start = System.nanoTime();
+        T service = constructor.get();
+        record(name, start);
+        return service;
+    }
+
+    private void record(String name, long startNanos) {
+        long millis = (System.nanoTime() - startNanos) / 1_000_000;
+        timings.put(name, millis);
+        logger.info(name + " took " + millis + " ms");
+    }
+}
@@ -8,6 +8,9 @@ import cafe.ninetyfour.exceptions.ServiceException;
 import cafe.ninetyfour.enums.UserRole;
 import cafe.ninetyfour.models.Staff;
 import cafe.ninetyfour.models.User;
+import cafe.ninetyfour.persistence.PersistenceScheduler;
+import cafe.ninetyfour.repository.Repositories;
+import cafe.ninetyfour.repository.StaffRepository;
 
 /**
  * StaffService class is responsible for managing staff data,
@@ -15,17 +18,50 @@ import cafe.ninetyfour.models.User;
  */
 public class StaffService {
     private static final Logger logger = Logger.getLogger(StaffService.class.getName());
-    private static final String STAFF_FILE = "data/staff.dat";
+    private static final String STORE_NAME = "staff";
     private final Map<String, Staff> staffMembers = new HashMap<>();
     private int nextStaffId = 1;
+    private final StaffRepository repository;
+
+    // Null when every mutation is saved synchronously
+    private final PersistenceScheduler persistenceScheduler;
 
     /**
      * Constructor for StaffService.
      * Initializes the staff collection and loads existing staff from file.
+     * Every mutation is saved to file immediately.
      */
     public StaffService() {
+        this(null);
+    }
+
+    /**
+     * Constructor for StaffService with write-behind persistence.
+     * Mutations mark the staff store dirty and the scheduler saves it.
+     *
+     * @param persistenceScheduler the scheduler that saves the staff file,
+     *                             or null to save on every mutation
+     */
+    public StaffService(PersistenceScheduler persistenceScheduler) {
+        this(persistenceScheduler, Repositories.getDefault().staff());
+    }
+
+    /**
+     * Constructor for StaffService with an explicit staff repository.
+     *
+     * @param persistenceScheduler the scheduler that saves the staff list,
+     *                             or null to save on every mutation
+     * @param repository           the repository storing the staff list
+     */
+    public StaffService(PersistenceScheduler persistenceScheduler,
+                        StaffRepository repository) {
+        this.persistenceScheduler = persistenceScheduler;
+        this.repository = repository;
         ensureDataDirectoryExists();
         loadStaff();
+        if (persistenceScheduler != null) {
+            persistenceScheduler.register(STORE_NAME, this::saveStaff);
+        }
     }
 
     /**
@@ -40,62 +76,61 @@ public class StaffService {
 
     //persistence methods
     /**
-     * Saves the current staff members to a file.
+     * Saves the current staff members to the repository.
      *
      * @throws ServiceException if an error occurs during saving
      */
     public synchronized void saveStaff() throws ServiceException {
         try {
-            new File("data").mkdirs();
-            File tempFile = new File(STAFF_FILE + ".tmp");
-
-            try (ObjectOutputStream oos = new ObjectOutputStream(
-                    new FileOutputStream(tempFile))) {
-                oos.writeObject(new HashMap<>(staffMembers));
-            }
-
-            File dataFile = new File(STAFF_FILE);
-            if (dataFile.exists() && !dataFile.delete()) {
-                throw new ServiceException("Could not delete old staff file");
-            }
-            if (!tempFile.renameTo(dataFile)) {
-                throw new ServiceException("Could not rename temp staff file");
-            }
+            repository.saveAll(new ArrayList<>(staffMembers.values()));
         } catch (IOException e) {
             throw new ServiceException("Failed to save staff data", e);
         }
     }
 
+    /**
+     * Persists a mutation, either immediately or through the scheduler.
+     *
+     * @throws ServiceException if an immediate save fails
+     */
+    private void persist() throws ServiceException {
+        if (persistenceScheduler != null) {
+            persistenceScheduler.markDirty(STORE_NAME);
+        } else {
+            saveStaff();
+        }
+    }
+
 
     /**
-     * Loads staff members from a file into the service.
+     * Loads staff members from the repository into the service.
      */
     private void loadStaff() {
-        File file = new File(STAFF_FILE);
-        if (file.exists()) {
-            try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-                Map<String, Staff> loaded = (Map<String, Staff>) ois.readObject();
-
-                // Reset ID counter
-                this.nextStaffId = loaded.values().stream()
-                        .mapToInt(Staff::getUserId)
-                        .max()
-                        .orElse(0) + 1;
-
-                // Reload data
-                staffMembers.clear();
-                staffMembers.putAll(loaded);
-            } catch (Exception e) {
-                System.err.println("Error loading staff: " + e.getMessage());
+        try {
+            Map<String, Staff> loaded = new HashMap<>();
+            for (Staff staff : repository.loadAll()) {
+                loaded.put(staff.getUsername(), staff);
             }
+
+            // Reset ID counter
+            this.nextStaffId = loaded.values().stream()
+                    .mapToInt(Staff::getUserId)
+                    .max()
+                    .orElse(0) + 1;
+
+            // Reload data
+            staffMembers.clear();
+            staffMembers.putAll(loaded);
+        } catch (Exception e) {
+            System.err.println("Error loading staff: " + e.getMessage());
         }
     }
 
 
 
     /**
-     * Reloads staff members from the file.
-     * This method clears the current staff collection and reloads it from the file.
+     * Reloads staff members from the repository.
+     * This method clears the current staff collection and reloads it from the repository.
      *
      * @throws ServiceException if an error occurs during saving
      */
@@ -112,7 +147,7 @@ public class StaffService {
      * @return true if the staff member was added successfully, false otherwise
      * @throws ServiceException if an error occurs during adding
      */
-    public boolean addStaff(Staff staff) throws ServiceException {
+    public synchronized boolean addStaff(Staff staff) throws ServiceException {
         try {
             if (staff == null) {
                 throw new ServiceException("Staff cannot be null");
@@ -121,7 +156,7 @@ public class StaffService {
                 throw new ServiceException("Staff member already exists");
             }
             staffMembers.put(staff.getUsername(), staff);
-            saveStaff();
+            persist();
             return true;
         } catch (Exception e) {
             logger.severe("Failed to add staff: " + e.getMessage());
@@ -168,13 +203,13 @@ public class StaffService {
      * @param username The username of the staff member to remove
      * @return true if removed successfully; false otherwise
      */
-    public boolean removeStaff(String username) throws ServiceException {
+    public synchronized boolean removeStaff(String username) throws ServiceException {
         if (!staffMembers.containsKey(username)) {
             logger.warning("Staff member not found: " + username);
             return false;
         }
         staffMembers.remove(username);
-        saveStaff();
+        persist();
         return true;
     }
 }
\ No newline at end of file
@@ -0,0 +1,173 @@
+package cafe.ninetyfour.services;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+import cafe.ninetyfour.models.Table;
+
+/**
+ * TableAllocator finds the tables to seat a party, combining adjacent tables
+ * when no single free table is large enough. A combination must be connected
+ * in the adjacency graph; among those that seat the party, the one leaving
+ * the fewest empty seats wins, then the one using fewer tables.
+ * <p>
+ * The search grows connected sets one neighbour at a time, up to
+ * {@link #getMaxTables()} tables. Every set is expanded once however it was
+ * reached, and a set stops growing as soon as it seats the party or can no
+ * longer beat the best combination found, so the search stays small on
+ * floors with hundreds of tables.
+ */
+public class TableAllocator {
+    public static final int DEFAULT_MAX_TABLES = 4;
+
+    private final Map<Integer, Table> tablesById = new LinkedHashMap<>();
+    private final Map<Integer, Set<Integer>> adjacency = new HashMap<>();
+    private int maxTables = DEFAULT_MAX_TABLES;
+
+    /**
+     * Constructs an allocator for the given tables, with no adjacency.
+     *
+     * @param tables the tables that can be allocated
+     */
+    public TableAllocator(Collection<Table> tables) {
+        for (Table table : tables) {
+            tablesById.put(table.getTableId(), table);
+            adjacency.put(table.getTableId(), new TreeSet<>());
+        }
+    }
+
+    /**
+     * Records that two tables stand next to each other and can be combined.
+     *
+     * @param tableId      one table
+     * @param otherTableId the other table
+     * @throws IllegalArgumentException if either table is unknown or they are the same
+     */
+    public synchronized void setAdjacent(int tableId, int otherTableId) {
+        if (!tablesById.containsKey(tableId) || !tablesById.containsKey(otherTableId)) {
+            throw new IllegalArgumentException("Unknown table");
+        }
+        if (tableId == otherTableId) throw new IllegalArgumentException
+                ("A table cannot be adjacent to itself");
+        adjacency.get(tableId).add(otherTableId);
+        adjacency.get(otherTableId).add(tableId);
+    }
+
+    /**
+     * Removes every adjacency, e.g. before loading a new floor plan.
+     */
+    public synchronized void clearAdjacency() {
+        adjacency.values().forEach(Set::clear);
+    }
+
+    /**
+     * @param tableId the table
+     * @return the IDs of the tables adjacent to it
+     */
+    public synchronized Set<Integer> getAdjacentTables(int tableId) {
+        Set<Integer> neighbours = adjacency.get(tableId);
+        return neighbours != null ? new TreeSet<>(neighbours) : Set.of();
+    }
+
+    public synchronized int getMaxTables() {
+        return maxTables;
+    }
+
+    /**
+     * Sets how many tables a combination may use at most.
+     *
+     * @param maxTables the limit, at least 1
+     */
+    public synchronized void setMaxTables(int maxTables) {
+        if (maxTables < 1) throw new IllegalArgumentException
+                ("At least one table must be allowed");
+        this.maxTables = maxTables;
+    }
+
+    /**
+     * Finds the best combination of free tables for a party.
+     *
+     * @param guests the party size
+     * @param isFree tells whether a table is free for the requested period
+     * @return the tables ordered by ID, or empty if no combination seats the party
+     */
+    public synchronized Optional<List<Table>> findCombination(int guests, Predicate<Table> isFree) {
+        if (guests <= 0) throw new IllegalArgumentException
+                ("Number of guests must be positive");
+
+        // Free tables only, checked once each
+        Map<Integer, Table> free = new LinkedHashMap<>();
+        int largest = 0;
+        for (Table table : tablesById.values()) {
+            if (isFree.test(table)) {
+                free.put(table.getTableId(), table);
+                largest = Math.max(largest, table.getCapacity());
+            }
+        }
+
+        Search search = new Search(guests, free, largest);
+        for (Integer tableId : free.keySet()) {
+            search.expand(new TreeSet<>(List.of(tableId)), free.get(tableId).getCapacity());
+            if (search.bestWaste == 0 && search.best.size() == 1) {
+                break;
+            }
+        }
+        if (search.best == null) {
+            return Optional.empty();
+        }
+        List<Table> tables = new ArrayList<>();
+        search.best.forEach(id -> tables.add(free.get(id)));
+        return Optional.of(tables);
+    }
+
+    /**
+     * Depth-first growth of connected table sets with a memo of expanded sets.
+     */
+    private final class Search {
+        private final int guests;
+        private final Map<Integer, Table> free;
+        private final int largest;
+        private final Set<Set<Integer>> expanded = new HashSet<>();
+        private SortedSet<Integer> best;
+        private int bestWaste = Integer.MAX_VALUE;
+
+        private Search(int guests, Map<Integer, Table> free, int largest) {
+            this.guests = guests;
+            this.free = free;
+            this.largest = largest;
+        }
+
+        private void expand(SortedSet<Integer> tables, int seats) {
+            if (!expanded.add(tables)) {
+                return;
+            }
+            if (seats >= guests) {
+                int waste = seats - guests;
+                if (waste < bestWaste || (waste == bestWaste && tables.size() < best.size())) {
+                    best = tables;
+                    bestWaste = waste;
+                }
+                // Adding a table only adds empty seats
+                return;
+            }
+            int remaining = maxTables - tables.size();
+            if (remaining == 0 || seats + remaining * largest < guests) {
+                return;
+            }
+            // A set needing another table cannot beat a perfect fit of fewer tables
+            if (bestWaste == 0 && best.size() <= tables.size() + 1) {
+                return;
+            }
+            for (Integer tableId : tables) {
+                for (Integer neighbour : adjacency.get(tableId)) {
+                    Table table = free.get(neighbour);
+                    if (table != null && !tables.contains(neighbour)) {
+                        SortedSet<Integer> grown = new TreeSet<>(tables);
+                        grown.add(neighbour);
+                        expand(grown, seats + table.getCapacity());
+                    }
+                }
+            }
+        }
+    }
+}
@@ -1,9 +1,15 @@
 package cafe.ninetyfour.services;
 
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
+import cafe.ninetyfour.enums.ReservationStatus;
 import cafe.ninetyfour.exceptions.ServiceException;
 import cafe.ninetyfour.models.Reservation;
 import cafe.ninetyfour.models.Table;
@@ -13,26 +19,257 @@ import cafe.ninetyfour.models.*;
  * TableManager class is responsible for managing tables in the cafe,
  * including finding available tables, assigning tables to reservations,
  * and retrieving table information.
+ * The tables come from a {@link FloorPlan} and are indexed by ID, capacity
+ * and zone, so lookups stay fast on venues with thousands of tables.
+ * Availability is answered from an {@link OccupancyGrid} of the whole
+ * floor when the request is slot-aligned and inside the booking horizon.
+ * Standing bookings are expanded onto the tables only within that horizon,
+ * a day at a time as it moves on.
  */
 public class TableManager {
     private static final Logger logger = Logger.getLogger(TableManager.class.getName());
 
+    public static final int DEFAULT_SLOT_MINUTES = 15;
+    public static final int DEFAULT_HORIZON_DAYS = 28;
+
+    // Attempts to allocate when a chosen table is taken concurrently
+    private static final int ALLOCATION_ATTEMPTS = 3;
+
     private final List<Table> tables;
+    private final Map<Integer, Table> tablesById = new HashMap<>();
+    private final NavigableMap<Integer, List<Table>> tablesByCapacity = new TreeMap<>();
+    private final Map<String, List<Table>> tablesByZone = new LinkedHashMap<>();
+    private final OccupancyGrid occupancy;
+    private final TableAllocator allocator;
+    private final ReservationSweeper sweeper = new ReservationSweeper();
+    private final TurnTimeStats turnTimes = new TurnTimeStats();
+    // Standing bookings put on or taken off a table since the last expansion
+    private final Set<RecurringBooking> changedRecurring = ConcurrentHashMap.newKeySet();
+    // The day the standing bookings were last expanded to the horizon from
+    private volatile LocalDate recurringExpandedOn;
+
+    /**
+     * A start time at which a party can be seated, with the tables that
+     * could seat it: each single table is a choice on its own, while a
+     * combination of tables is needed all together.
+     */
+    public static final class AvailableSlot {
+        private final LocalDateTime startTime;
+        private final List<Table> tables;
+        private final boolean combination;
+
+        private AvailableSlot(LocalDateTime startTime, List<Table> tables, boolean combination) {
+            this.startTime = startTime;
+            this.tables = List.copyOf(tables);
+            this.combination = combination;
+        }
+
+        public LocalDateTime getStartTime() {
+            return startTime;
+        }
+
+        public List<Table> getTables() {
+            return tables;
+        }
+
+        /**
+         * @return true if the tables must be combined to seat the party,
+         *         false if each of them seats it alone
+         */
+        public boolean isCombination() {
+            return combination;
+        }
+
+        @Override
+        public String toString() {
+            return startTime + " " + tables;
+        }
+    }
 
     /**
      * Constructor for TableManager.
-     * Initializes the list of tables.
+     * Loads the floor plan from {@link FloorPlan#DEFAULT_FILE}, or uses the
+     * default floor of 11 tables if there is none, with 15-minute slots
+     * over a 28-day horizon.
      */
     public TableManager() {
-        this.tables = initializeTables();
+        this(loadFloorPlan(), DEFAULT_SLOT_MINUTES, DEFAULT_HORIZON_DAYS);
+    }
+
+    /**
+     * Constructor for TableManager with the default floor and a custom occupancy grid.
+     *
+     * @param slotMinutes the slot length of the occupancy grid, which must divide a day
+     * @param horizonDays the number of days the occupancy grid covers
+     */
+    public TableManager(int slotMinutes, int horizonDays) {
+        this(FloorPlan.defaultPlan(), slotMinutes, horizonDays);
+    }
+
+    /**
+     * Constructor for TableManager with a floor plan and a custom occupancy grid.
+     *
+     * @param floorPlan   the tables and their adjacency
+     * @param slotMinutes the slot length of the occupancy grid, which must divide a day
+     * @param horizonDays the number of days the occupancy grid covers
+     */
+    public TableManager(FloorPlan floorPlan, int slotMinutes, int horizonDays) {
+        this.tables = new ArrayList<>(floorPlan.getTables());
+        for (Table table : tables) {
+            tablesById.put(table.getTableId(), table);
+            tablesByCapacity.computeIfAbsent(table.getCapacity(), capacity -> new ArrayList<>())
+                    .add(table);
+            tablesByZone.computeIfAbsent(table.getZone(), zone -> new ArrayList<>()).add(table);
+        }
+        this.occupancy = new OccupancyGrid(tables, slotMinutes, horizonDays);
+        this.allocator = new TableAllocator(tables);
+        for (int[] pair : floorPlan.getAdjacentPairs()) {
+            allocator.setAdjacent(pair[0], pair[1]);
+        }
+        tables.forEach(table -> table.setReservationListener(new Table.ReservationListener() {
+            @Override
+            public void reservationAdded(Table changed, Reservation reservation) {
+                occupancy.reservationAdded(changed, reservation);
+                sweeper.schedule(reservation);
+            }
+
+            @Override
+            public void reservationRemoved(Table changed, Reservation reservation) {
+                occupancy.reservationRemoved(changed, reservation);
+            }
+
+            @Override
+            public void recurringChanged(Table changed, RecurringBooking series) {
+                changedRecurring.add(series);
+            }
+        }));
+    }
+
+    /**
+     * Reads the floor plan file, falling back to the default floor if it is
+     * missing or cannot be read.
+     */
+    private static FloorPlan loadFloorPlan() {
+        try {
+            return FloorPlan.loadOrDefault(new File(FloorPlan.DEFAULT_FILE));
+        } catch (IOException e) {
+            logger.severe("Error loading floor plan, using default tables: " + e.getMessage());
+            return FloorPlan.defaultPlan();
+        }
     }
 
     // Instance method
     public List<Table> findAvailableTables(LocalDateTime startTime, int duration, int guests) {
+        // Only tables large enough for the party are checked
+        List<Table> candidates = new ArrayList<>();
+        tablesByCapacity.tailMap(guests, true).values().forEach(candidates::addAll);
+        return findAvailable(candidates, startTime, duration);
+    }
+
+    /**
+     * Finds the tables free for a party, optionally judging the tables'
+     * reservations by their predicted rather than booked end times, e.g.
+     * when deciding whether a walk-in can be seated on a busy floor.
+     * A party already seated is predicted to leave after the recorded turn
+     * time of its table size, day and hour, and one not yet seated to stay
+     * that long from its start; without enough turns recorded the booked
+     * duration is used. A seated party past its predicted end is expected
+     * to leave now.
+     *
+     * @param startTime      the requested start time
+     * @param duration       the requested duration in minutes
+     * @param guests         the party size
+     * @param predictedEnds  true to use predicted end times
+     * @return the free tables large enough for the party
+     */
+    public List<Table> findAvailableTables(LocalDateTime startTime, int duration, int guests,
+                                           boolean predictedEnds) {
+        if (!predictedEnds) {
+            return findAvailableTables(startTime, duration, guests);
+        }
+        expandRecurring();
+        LocalDateTime now = LocalDateTime.now();
         List<Table> available = new ArrayList<>();
-        for (Table table : tables) {
-            if (table.getCapacity() >= guests &&
-                    table.checkAvailability(startTime, duration)) {
+        for (List<Table> sized : tablesByCapacity.tailMap(guests, true).values()) {
+            for (Table table : sized) {
+                if (table.checkAvailability(startTime, duration,
+                        reservation -> predictEnd(table, reservation, now))) {
+                    available.add(table);
+                }
+            }
+        }
+        return available;
+    }
+
+    /**
+     * Predicts when a reservation will free a table.
+     */
+    private LocalDateTime predictEnd(Table table, Reservation reservation, LocalDateTime now) {
+        if (reservation.getClearedTime() != null) {
+            return reservation.getClearedTime();
+        }
+        LocalDateTime seatedTime = reservation.getSeatedTime();
+        LocalDateTime start = seatedTime != null ? seatedTime : reservation.getStartTime();
+        LocalDateTime end = start.plusMinutes(turnTimes.predictMinutes(table.getCapacity(),
+                start, reservation.getDuration()));
+        return seatedTime != null && end.isBefore(now) ? now : end;
+    }
+
+    /**
+     * Records that a party has been seated, marking its tables occupied.
+     *
+     * @param reservation the reservation being seated
+     * @param time        when the party was seated
+     * @return true if the reservation was active and not seated yet
+     */
+    public boolean seat(Reservation reservation, LocalDateTime time) {
+        return reservation.seat(time);
+    }
+
+    /**
+     * Records that a party has left, freeing its tables for the rest of the
+     * reserved period, and adds the turn to the turn time statistics.
+     *
+     * @param reservation the seated reservation
+     * @param time        when the tables were cleared
+     * @return true if the party was seated and had not left yet
+     */
+    public boolean clear(Reservation reservation, LocalDateTime time) {
+        if (!reservation.clear(time)) {
+            return false;
+        }
+        recordTurn(reservation);
+        return true;
+    }
+
+    private void recordTurn(Reservation reservation) {
+        double minutes = Duration.between(reservation.getSeatedTime(),
+                reservation.getClearedTime()).toSeconds() / 60.0;
+        for (Table table : reservation.getTables()) {
+            turnTimes.record(table.getCapacity(), reservation.getSeatedTime(), minutes);
+        }
+    }
+
+    /**
+     * @return the rolling turn time statistics of the floor
+     */
+    public TurnTimeStats getTurnTimeStats() {
+        return turnTimes;
+    }
+
+    /**
+     * Filters the tables free for a period, from the occupancy grid in one
+     * pass if it can answer, otherwise table by table.
+     */
+    private List<Table> findAvailable(List<Table> candidates, LocalDateTime startTime, int duration) {
+        expandRecurring();
+        List<Table> available = occupancy.findFree(candidates, startTime, duration);
+        if (available != null) {
+            return available;
+        }
+        available = new ArrayList<>();
+        for (Table table : candidates) {
+            if (table.checkAvailability(startTime, duration)) {
                 available.add(table);
             }
         }
@@ -40,19 +277,164 @@ public class TableManager {
     }
 
     /**
-     * Initializes the tables based on the specifications.
-     * 4 tables of 2, 4 tables of 4, 2 tables of 8, and 1 table of 10.
+     * Finds the first start times in a window at which a party can be
+     * seated, e.g. for "when can 6 of us come in this week?". Start times
+     * are on occupancy grid slots within the booking horizon and not in the
+     * past. Single tables are found in one sweep over the occupancy grid;
+     * parties larger than every table are seated on table combinations,
+     * checked slot by slot.
      *
-     * @return List of initialized tables
+     * @param guests   the party size
+     * @param duration the duration in minutes
+     * @param from     the start of the window
+     * @param to       the end of the window (start times are before it)
+     * @param limit    the maximum number of start times to return
+     * @return the feasible start times in ascending order
      */
-    private List<Table> initializeTables() {
-        List<Table> tables = new ArrayList<>();
-        // Add tables as per spec (4x2, 4x4, 2x8, 1x10)
-        for (int i = 1; i <= 4; i++) tables.add(new Table(i, 2));
-        for (int i = 5; i <= 8; i++) tables.add(new Table(i, 4));
-        for (int i = 9; i <= 10; i++) tables.add(new Table(i, 8));
-        tables.add(new Table(11, 10));
-        return tables;
+    public List<AvailableSlot> findNextAvailableSlots(int guests, int duration,
+                                                      LocalDateTime from, LocalDateTime to,
+                                                      int limit) {
+        if (guests <= 0) throw new IllegalArgumentException
+                ("Number of guests must be positive");
+        expandRecurring();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime earliest = from.isBefore(now) ? now : from;
+        List<AvailableSlot> slots = new ArrayList<>();
+
+        if (!tablesByCapacity.isEmpty() && guests <= tablesByCapacity.lastKey()) {
+            List<Table> candidates = new ArrayList<>();
+            tablesByCapacity.tailMap(guests, true).values().forEach(candidates::addAll);
+            occupancy.findStarts(candidates, earliest, to, duration, limit).forEach(
+                    (start, free) -> slots.add(new AvailableSlot(start, free, false)));
+            return slots;
+        }
+
+        int slotMinutes = occupancy.getSlotMinutes();
+        int length = (duration + slotMinutes - 1) / slotMinutes * slotMinutes;
+        LocalDateTime horizonEnd = LocalDate.now().plusDays(occupancy.getHorizonDays()).atStartOfDay()
+                .minusMinutes(length);
+        LocalDateTime start = alignToSlot(earliest, slotMinutes);
+        for (; start.isBefore(to) && !start.isAfter(horizonEnd) && slots.size() < limit;
+             start = start.plusMinutes(slotMinutes)) {
+            LocalDateTime slotStart = start;
+            findTableCombination(slotStart, length, guests).ifPresent(
+                    combination -> slots.add(new AvailableSlot(slotStart, combination, true)));
+        }
+        return slots;
+    }
+
+    /**
+     * Rounds a time up to the next slot boundary, counted from midnight.
+     */
+    private static LocalDateTime alignToSlot(LocalDateTime time, int slotMinutes) {
+        LocalDateTime midnight = time.toLocalDate().atStartOfDay();
+        long seconds = Duration.between(midnight, time).toSeconds();
+        long slotSeconds = slotMinutes * 60L;
+        return midnight.plusSeconds((seconds + slotSeconds - 1) / slotSeconds * slotSeconds);
+    }
+
+    /**
+     * Proposes the free tables to seat a party, combining adjacent tables
+     * when no single table is large enough, with as few empty seats as possible.
+     *
+     * @param startTime the requested start time
+     * @param duration  the requested duration in minutes
+     * @param guests    the party size
+     * @return the tables, or empty if the party cannot be seated
+     */
+    public Optional<List<Table>> findTableCombination(LocalDateTime startTime, int duration,
+                                                      int guests) {
+        Set<Table> free = Collections.newSetFromMap(new IdentityHashMap<>());
+        free.addAll(findAvailable(tables, startTime, duration));
+        return allocator.findCombination(guests, free::contains);
+    }
+
+    /**
+     * Finds and assigns the best table combination for a booking in one
+     * step. Either every table of the combination is assigned or none is;
+     * if a table is taken in the meantime the search is repeated.
+     *
+     * @param booking the booking to seat, with no tables assigned yet
+     * @return the assigned tables, or an empty list if the party cannot be seated
+     */
+    public List<Table> allocateTables(Booking booking) {
+        Objects.requireNonNull(booking, "Booking cannot be null");
+        for (int attempt = 0; attempt < ALLOCATION_ATTEMPTS; attempt++) {
+            Optional<List<Table>> combination = findTableCombination(booking.getStartTime(),
+                    booking.getDuration(), booking.getNumberOfGuests());
+            if (combination.isEmpty()) {
+                return List.of();
+            }
+            if (booking.addTables(combination.get())) {
+                return combination.get();
+            }
+        }
+        logger.warning("Could not allocate tables for booking " + booking.getReservationId());
+        return List.of();
+    }
+
+    /**
+     * @return the allocator holding the table adjacency
+     */
+    public TableAllocator getAllocator() {
+        return allocator;
+    }
+
+    /**
+     * Returns how many tables are free for each party size in every slot
+     * of a day, e.g. to show what is free on Saturday evening for 6.
+     *
+     * @param day a day within the booking horizon
+     * @return the day's availability heatmap
+     * @throws IllegalArgumentException if the day is outside the horizon
+     */
+    public OccupancyGrid.Heatmap getAvailabilityHeatmap(LocalDate day) {
+        expandRecurring();
+        return occupancy.heatmap(day);
+    }
+
+    /**
+     * Expands the occurrences of the standing bookings onto their tables up
+     * to the end of the booking horizon: every standing booking once a day,
+     * as the horizon moves on, and each new one as soon as it gets a table.
+     * Cheap when there is nothing to do, so every availability query calls
+     * it first; the occupancy grid then sees the occurrences like any other
+     * booking.
+     */
+    public void expandRecurring() {
+        LocalDate today = LocalDate.now();
+        if (today.equals(recurringExpandedOn) && changedRecurring.isEmpty()) {
+            return;
+        }
+        synchronized (changedRecurring) {
+            Set<RecurringBooking> pending = Collections.newSetFromMap(new IdentityHashMap<>());
+            if (!today.equals(recurringExpandedOn)) {
+                tables.forEach(table -> pending.addAll(table.getRecurring()));
+            }
+            for (Iterator<RecurringBooking> it = changedRecurring.iterator(); it.hasNext(); ) {
+                pending.add(it.next());
+                it.remove();
+            }
+            LocalDateTime from = today.atStartOfDay();
+            LocalDateTime until = today.plusDays(occupancy.getHorizonDays()).atStartOfDay();
+            for (RecurringBooking series : pending) {
+                if (!series.isActive() || series.getTables().isEmpty()) {
+                    continue;
+                }
+                // Yesterday's occurrence may still be seated past midnight
+                series.forgetOccurrencesBefore(from.minusDays(1));
+                for (RecurringBooking.Occurrence occurrence : series.expandUntil(from, until)) {
+                    if (!occurrence.addTables(new ArrayList<>(series.getTables()))) {
+                        logger.warning("Standing booking " + series.getReservationId()
+                                + " has no table on " + occurrence.getStartTime().toLocalDate());
+                    } else if (occurrence.getSeatedTime() != null) {
+                        // Its party was seated before the tables were rebuilt
+                        occurrence.getTables().forEach(table -> table.seat(occurrence));
+                    }
+                }
+            }
+            recurringExpandedOn = today;
+        }
     }
 
     // Assign a table to a reservation
@@ -63,7 +445,9 @@ public class TableManager {
 
     // Add validation to
     /**
-     * Assigns a table to a reservation.
+     * Assigns a table to a reservation. The availability check and the
+     * assignment happen under the table's lock, so two terminals booking
+     * the same table at once cannot both get it.
      *
      * @param tableId      the ID of the table to assign
      * @param reservation   the reservation to assign to the table
@@ -71,18 +455,39 @@ public class TableManager {
      * @throws ServiceException if an error occurs during assignment
      */
     public boolean assignTable(int tableId, Reservation reservation) throws ServiceException {
+        return assignTables(List.of(tableId), reservation);
+    }
+
+    /**
+     * Assigns several tables to a reservation, all or none. The tables are
+     * locked together in table ID order while they are checked and
+     * assigned, so concurrent bookings of overlapping tables neither
+     * double-book a table nor deadlock.
+     *
+     * @param tableIds    the IDs of the tables to assign
+     * @param reservation the reservation to assign the tables to
+     * @return true if every table was assigned
+     * @throws ServiceException if a table is unknown or taken for the
+     *                          requested time, in which case none is assigned
+     */
+    public boolean assignTables(List<Integer> tableIds, Reservation reservation)
+            throws ServiceException {
         try {
             Objects.requireNonNull(reservation, "Reservation cannot be null");
-            Table table = getTableById(tableId);
-            if (table == null) {
-                throw new ServiceException("Table not found");
+            List<Table> requested = new ArrayList<>();
+            for (int tableId : tableIds) {
+                Table table = getTableById(tableId);
+                if (table == null) {
+                    throw new ServiceException("Table not found");
+                }
+                requested.add(table);
             }
-            if (!table.checkAvailability(reservation.getStartTime(), reservation.getDuration())) {
+            if (!reservation.addTables(requested)) {
                 throw new ServiceException("Table not available for requested time");
             }
-            return table.assignToReservation(reservation);
+            return true;
         } catch (Exception e) {
-            logger.severe("Error loading table: " + e.getMessage());
+            logger.severe("Error assigning table: " + e.getMessage());
             throw new ServiceException("Failed to assign table", e);
         }
     }
@@ -96,9 +501,134 @@ public class TableManager {
      * @return List of tables within the specified capacity range
      */
     public List<Table> getTablesByCapacity(int minCapacity, int maxCapacity) {
-        return tables.stream()
-                .filter(t -> t.getCapacity() >= minCapacity && t.getCapacity() <= maxCapacity)
-                .toList();
+        if (maxCapacity < minCapacity) {
+            return List.of();
+        }
+        List<Table> result = new ArrayList<>();
+        tablesByCapacity.subMap(minCapacity, true, maxCapacity, true).values()
+                .forEach(result::addAll);
+        return result;
+    }
+
+    /**
+     * Retrieves the tables of one zone of the floor plan.
+     *
+     * @param zone the zone name
+     * @return the zone's tables, or an empty list if there is no such zone
+     */
+    public List<Table> getTablesByZone(String zone) {
+        List<Table> zoneTables = tablesByZone.get(zone);
+        return zoneTables != null ? new ArrayList<>(zoneTables) : new ArrayList<>();
+    }
+
+    /**
+     * @return the zone names of the floor plan, in the order first seen
+     */
+    public Set<String> getZones() {
+        return Collections.unmodifiableSet(tablesByZone.keySet());
+    }
+
+    /**
+     * Rebuilds every table's schedule from saved reservations in one pass,
+     * e.g. at startup, when the tables know nothing of the bookings.
+     * Each reservation is linked to the live tables with its saved IDs;
+     * upcoming, active reservations are grouped by table, sorted by
+     * start time and bulk loaded, and the occupancy grid is rebuilt once.
+     * Tables that are unknown, or taken by an overlapping reservation,
+     * are logged and dropped from the reservation. Standing bookings are
+     * put back on their tables as patterns and expanded again.
+     *
+     * @param saved the saved reservations
+     * @return the number of table reservations put on the schedules
+     */
+    public int rebuildFrom(Collection<? extends Reservation> saved) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<Table, List<Reservation>> schedules = new IdentityHashMap<>();
+        Map<Table, List<RecurringBooking>> standing = new IdentityHashMap<>();
+        for (Reservation reservation : saved) {
+            List<Table> linked = new ArrayList<>();
+            if (reservation.getStatus() == ReservationStatus.CANCELLED) {
+                reservation.restoreTables(linked);
+                continue;
+            }
+            // Only active reservations hold tables; a cleared party completes before the booked end
+            boolean upcoming = reservation.isActive() && reservation.getEndTime().isAfter(now);
+            for (int tableId : reservation.getTableIds()) {
+                Table table = tablesById.get(tableId);
+                if (table == null) {
+                    logger.warning("Reservation " + reservation.getReservationId()
+                            + " refers to unknown table " + tableId);
+                    continue;
+                }
+                linked.add(table);
+                if (reservation instanceof RecurringBooking) {
+                    if (reservation.isActive()) {
+                        standing.computeIfAbsent(table, key -> new ArrayList<>())
+                                .add((RecurringBooking) reservation);
+                    }
+                } else if (upcoming) {
+                    schedules.computeIfAbsent(table, key -> new ArrayList<>()).add(reservation);
+                }
+            }
+            reservation.restoreTables(linked);
+            if (reservation instanceof RecurringBooking) {
+                // Its occurrences are scheduled as they are expanded
+                ((RecurringBooking) reservation).resetExpansion();
+                continue;
+            }
+            // Reservations that ended while the application was down expire on the next sweep
+            if (reservation.isActive()) {
+                sweeper.schedule(reservation);
+            }
+        }
+
+        int restored = 0;
+        Comparator<Reservation> byStart = Comparator.comparing(Reservation::getStartTime);
+        for (Table table : tables) {
+            List<Reservation> schedule = schedules.getOrDefault(table, List.of());
+            if (schedule.size() > 1) {
+                schedule.sort(byStart);
+            }
+            List<Reservation> skipped = table.loadReservations(schedule);
+            table.loadRecurring(standing.getOrDefault(table, List.of()));
+            for (Reservation reservation : skipped) {
+                logger.warning("Reservation " + reservation.getReservationId()
+                        + " overlaps another one on table " + table.getTableId());
+                reservation.getTables().remove(table);
+            }
+            restored += schedule.size() - skipped.size();
+            for (Reservation reservation : schedule) {
+                if (reservation.getSeatedTime() != null && reservation.getClearedTime() == null) {
+                    table.seat(reservation);
+                }
+            }
+        }
+        // Past turns rebuild the turn time statistics, oldest first as the newest weigh most
+        List<Reservation> turns = new ArrayList<>();
+        for (Reservation reservation : saved) {
+            if (reservation.getSeatedTime() != null && reservation.getClearedTime() != null) {
+                turns.add(reservation);
+            }
+        }
+        turns.sort(Comparator.comparing(Reservation::getSeatedTime));
+        turnTimes.reset();
+        turns.forEach(this::recordTurn);
+        occupancy.reload();
+        changedRecurring.clear();
+        recurringExpandedOn = null;
+        expandRecurring();
+        return restored;
+    }
+
+    /**
+     * Returns the sweeper that expires reservations at their end time.
+     * Every reservation put on a table is scheduled with it; it sweeps in
+     * the background once started.
+     *
+     * @return the reservation sweeper
+     */
+    public ReservationSweeper getSweeper() {
+        return sweeper;
     }
 
     // Helper method
@@ -109,10 +639,7 @@ public class TableManager {
      * @return the Table object if found, null otherwise
      */
     public Table getTableById(int tableId) {
-        return tables.stream()
-                .filter(t -> t.getTableId() == tableId)
-                .findFirst()
-                .orElse(null);
+        return tablesById.get(tableId);
     }
 
     // Get all tables (for reports/UI)
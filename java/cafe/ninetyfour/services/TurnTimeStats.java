@@ -0,0 +1,188 @@
+package cafe.ninetyfour.services;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+/**
+ * TurnTimeStats keeps rolling statistics of how long tables are actually
+ * occupied, from seating to clearing, per table size, day of the week and
+ * hour of seating.
+ * <p>
+ * Each of the fixed set of buckets is an exponentially weighted mean and
+ * variance, so memory does not grow with the number of turns recorded and
+ * recent turns count more than old ones. A bucket with too few turns to
+ * be trusted falls back to the table size's bucket over all times, and
+ * then to the nominal duration.
+ */
+public class TurnTimeStats {
+    // Tables larger than this share the last size bucket
+    public static final int MAX_TRACKED_CAPACITY = 12;
+    public static final int MIN_SAMPLES = 5;
+    // Weight of the newest turn; about the last 50 turns make up the mean
+    public static final double DEFAULT_ALPHA = 0.04;
+
+    private static final int HOURS = 24;
+    private static final int DAYS = 7;
+    // Per capacity: one bucket per day and hour, plus one over all times
+    private static final int BUCKETS_PER_CAPACITY = DAYS * HOURS + 1;
+
+    private final double alpha;
+    private final long[] counts;
+    private final double[] means;
+    private final double[] variances;
+
+    /**
+     * A snapshot of one bucket.
+     */
+    public static final class Summary {
+        private final long count;
+        private final double mean;
+        private final double standardDeviation;
+
+        private Summary(long count, double mean, double standardDeviation) {
+            this.count = count;
+            this.mean = mean;
+            this.standardDeviation = standardDeviation;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the weighted mean turn time in minutes
+         */
+        public double getMean() {
+            return mean;
+        }
+
+        public double getStandardDeviation() {
+            return standardDeviation;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d turns, %.1f +/- %.1f minutes", count, mean, standardDeviation);
+        }
+    }
+
+    /**
+     * Constructs statistics with the default weight of new turns.
+     */
+    public TurnTimeStats() {
+        this(DEFAULT_ALPHA);
+    }
+
+    /**
+     * Constructs statistics.
+     *
+     * @param alpha the weight of each new turn, between 0 and 1
+     */
+    public TurnTimeStats(double alpha) {
+        if (!(alpha > 0 && alpha <= 1)) throw new IllegalArgumentException
+                ("Weight must be in (0, 1]");
+        this.alpha = alpha;
+        int buckets = (MAX_TRACKED_CAPACITY + 1) * BUCKETS_PER_CAPACITY;
+        this.counts = new long[buckets];
+        this.means = new double[buckets];
+        this.variances = new double[buckets];
+    }
+
+    /**
+     * Records a table turn.
+     *
+     * @param capacity the table's capacity
+     * @param seatedAt when the party was seated
+     * @param minutes  how long the table was occupied
+     */
+    public synchronized void record(int capacity, LocalDateTime seatedAt, double minutes) {
+        if (minutes < 0) {
+            return;
+        }
+        update(bucket(capacity, seatedAt), minutes);
+        update(overallBucket(capacity), minutes);
+    }
+
+    private void update(int bucket, double minutes) {
+        long count = ++counts[bucket];
+        if (count == 1) {
+            means[bucket] = minutes;
+            variances[bucket] = 0;
+            return;
+        }
+        // Plain averages until the weight of a new turn drops below alpha
+        double weight = Math.max(alpha, 1.0 / count);
+        double difference = minutes - means[bucket];
+        double increment = weight * difference;
+        means[bucket] += increment;
+        variances[bucket] = (1 - weight) * (variances[bucket] + difference * increment);
+    }
+
+    /**
+     * Forgets every turn recorded, e.g. before recording them all again.
+     */
+    public synchronized void reset() {
+        Arrays.fill(counts, 0);
+        Arrays.fill(means, 0);
+        Arrays.fill(variances, 0);
+    }
+
+    /**
+     * Predicts how long a table will be occupied by a party seated at a
+     * given time.
+     *
+     * @param capacity        the table's capacity
+     * @param seatedAt        when the party is, or was, seated
+     * @param nominalDuration the booked duration, used without enough turns recorded
+     * @return the predicted turn time in minutes
+     */
+    public synchronized int predictMinutes(int capacity, LocalDateTime seatedAt, int nominalDuration) {
+        int bucket = bucket(capacity, seatedAt);
+        if (counts[bucket] < MIN_SAMPLES) {
+            bucket = overallBucket(capacity);
+            if (counts[bucket] < MIN_SAMPLES) {
+                return nominalDuration;
+            }
+        }
+        return (int) Math.round(means[bucket]);
+    }
+
+    /**
+     * @param capacity the table capacity
+     * @param day      the day of the week
+     * @param hour     the hour of seating
+     * @return the statistics of that bucket
+     */
+    public synchronized Summary getSummary(int capacity, DayOfWeek day, int hour) {
+        return summary(bucket(capacity, day, hour));
+    }
+
+    /**
+     * @param capacity the table capacity
+     * @return the statistics of the table size over all times
+     */
+    public synchronized Summary getSummary(int capacity) {
+        return summary(overallBucket(capacity));
+    }
+
+    private Summary summary(int bucket) {
+        return new Summary(counts[bucket], means[bucket], Math.sqrt(variances[bucket]));
+    }
+
+    private static int bucket(int capacity, LocalDateTime time) {
+        return bucket(capacity, time.getDayOfWeek(), time.getHour());
+    }
+
+    private static int bucket(int capacity, DayOfWeek day, int hour) {
+        return capacityBase(capacity) + (day.getValue() - 1) * HOURS + hour;
+    }
+
+    private static int overallBucket(int capacity) {
+        return capacityBase(capacity) + DAYS * HOURS;
+    }
+
+    private static int capacityBase(int capacity) {
+        return Math.max(0, Math.min(MAX_TRACKED_CAPACITY, capacity)) * BUCKETS_PER_CAPACITY;
+    }
+}
@@ -0,0 +1,252 @@
+package cafe.ninetyfour.services;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import cafe.ninetyfour.models.Table;
+
+/**
+ * Waitlist holds the parties waiting for a table in a time window, so a
+ * cancellation can offer the freed table straight away.
+ * <p>
+ * Requests are indexed by day, then party size, then earliest start. A
+ * freed table is offered to the largest waiting party it seats, which
+ * leaves the fewest empty seats; among parties of that size, the one
+ * waiting longest whose window allows a start in the freed period wins.
+ * Only the requests of the freed day are looked at, from the table's
+ * capacity down, so a match stays well under a millisecond.
+ * Requests whose window has passed are dropped as they are met.
+ */
+public class Waitlist {
+    private final NavigableMap<LocalDate, NavigableMap<Integer, NavigableMap<LocalDateTime, List<Request>>>>
+            requestsByDay = new TreeMap<>();
+    private final Map<Integer, Request> requestsById = new HashMap<>();
+    private int nextRequestId = 1;
+
+    /**
+     * A party waiting for a table: any start between the earliest and the
+     * latest start time will do.
+     */
+    public static final class Request {
+        private final int requestId;
+        private final int customerId;
+        private final int partySize;
+        private final LocalDateTime earliestStart;
+        private final LocalDateTime latestStart;
+        private final int duration;
+
+        private Request(int requestId, int customerId, int partySize,
+                        LocalDateTime earliestStart, LocalDateTime latestStart, int duration) {
+            this.requestId = requestId;
+            this.customerId = customerId;
+            this.partySize = partySize;
+            this.earliestStart = earliestStart;
+            this.latestStart = latestStart;
+            this.duration = duration;
+        }
+
+        public int getRequestId() {
+            return requestId;
+        }
+
+        public int getCustomerId() {
+            return customerId;
+        }
+
+        public int getPartySize() {
+            return partySize;
+        }
+
+        public LocalDateTime getEarliestStart() {
+            return earliestStart;
+        }
+
+        public LocalDateTime getLatestStart() {
+            return latestStart;
+        }
+
+        /**
+         * @return the duration in minutes
+         */
+        public int getDuration() {
+            return duration;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Waitlist request %d: %d guests, %s to %s, %d minutes",
+                    requestId, partySize, earliestStart, latestStart, duration);
+        }
+    }
+
+    /**
+     * A freed table offered to a waiting party, at a start time in its window.
+     */
+    public static final class Offer {
+        private final Request request;
+        private final Table table;
+        private final LocalDateTime startTime;
+
+        private Offer(Request request, Table table, LocalDateTime startTime) {
+            this.request = request;
+            this.table = table;
+            this.startTime = startTime;
+        }
+
+        public Request getRequest() {
+            return request;
+        }
+
+        public Table getTable() {
+            return table;
+        }
+
+        public LocalDateTime getStartTime() {
+            return startTime;
+        }
+    }
+
+    /**
+     * Adds a party to the waitlist.
+     *
+     * @param customerId    the customer waiting
+     * @param partySize     the number of guests
+     * @param earliestStart the earliest acceptable start
+     * @param latestStart   the latest acceptable start, on the same day
+     * @param duration      the duration in minutes
+     * @return the request
+     * @throws IllegalArgumentException if the party size or duration is not
+     *                                  positive or the window is not within one day
+     */
+    public synchronized Request add(int customerId, int partySize, LocalDateTime earliestStart,
+                                    LocalDateTime latestStart, int duration) {
+        if (partySize <= 0) throw new IllegalArgumentException
+                ("Number of guests must be positive");
+        if (duration <= 0) throw new IllegalArgumentException
+                ("Duration must be positive");
+        if (latestStart.isBefore(earliestStart)
+                || !latestStart.toLocalDate().equals(earliestStart.toLocalDate())) {
+            throw new IllegalArgumentException("The waiting window must lie within one day");
+        }
+        Request request = new Request(nextRequestId++, customerId, partySize,
+                earliestStart, latestStart, duration);
+        requestsById.put(request.requestId, request);
+        requestsByDay.computeIfAbsent(earliestStart.toLocalDate(), day -> new TreeMap<>())
+                .computeIfAbsent(partySize, size -> new TreeMap<>())
+                .computeIfAbsent(earliestStart, time -> new ArrayList<>())
+                .add(request);
+        return request;
+    }
+
+    /**
+     * Removes a request, e.g. when the party no longer waits.
+     *
+     * @param requestId the request ID
+     * @return true if the request was waiting
+     */
+    public synchronized boolean remove(int requestId) {
+        Request request = requestsById.remove(requestId);
+        if (request == null) {
+            return false;
+        }
+        unindex(request);
+        return true;
+    }
+
+    /**
+     * Finds the best waiting party for a table freed for a period and takes
+     * it off the waitlist. The table must be free for the party's whole
+     * duration, which may run past the freed period.
+     *
+     * @param table     the freed table
+     * @param freedFrom the start of the freed period
+     * @param freedTo   the end of the freed period
+     * @return the offer, or empty if no waiting party fits
+     */
+    public synchronized Optional<Offer> match(Table table, LocalDateTime freedFrom,
+                                              LocalDateTime freedTo) {
+        LocalDateTime now = LocalDateTime.now();
+        // Days that have passed cannot be offered anything
+        requestsByDay.headMap(now.toLocalDate()).values().forEach(this::forgetDay);
+        requestsByDay.headMap(now.toLocalDate()).clear();
+
+        if (freedFrom.isBefore(now)) {
+            freedFrom = now;
+        }
+        NavigableMap<Integer, NavigableMap<LocalDateTime, List<Request>>> bySize =
+                requestsByDay.get(freedFrom.toLocalDate());
+        if (bySize == null || !freedFrom.isBefore(freedTo)) {
+            return Optional.empty();
+        }
+        // Stale requests are removed once the size buckets are no longer iterated
+        List<Request> stale = new ArrayList<>();
+        Optional<Offer> offer = Optional.empty();
+        for (NavigableMap<LocalDateTime, List<Request>> byStart
+                : bySize.headMap(table.getCapacity(), true).descendingMap().values()) {
+            Request best = null;
+            LocalDateTime bestStart = null;
+            // Windows opening after the freed period cannot use it
+            for (List<Request> requests : byStart.headMap(freedTo, false).values()) {
+                for (Request request : requests) {
+                    if (request.latestStart.isBefore(now)) {
+                        stale.add(request);
+                        continue;
+                    }
+                    if (best != null && best.requestId < request.requestId) {
+                        continue;
+                    }
+                    LocalDateTime start = request.earliestStart.isAfter(freedFrom)
+                            ? request.earliestStart : freedFrom;
+                    if (!start.isAfter(request.latestStart)
+                            && table.checkAvailability(start, request.duration)) {
+                        best = request;
+                        bestStart = start;
+                    }
+                }
+            }
+            if (best != null) {
+                offer = Optional.of(new Offer(best, table, bestStart));
+                break;
+            }
+        }
+        stale.forEach(request -> remove(request.requestId));
+        offer.ifPresent(found -> remove(found.getRequest().requestId));
+        return offer;
+    }
+
+    /**
+     * @return the waiting requests, oldest first
+     */
+    public synchronized List<Request> getRequests() {
+        List<Request> requests = new ArrayList<>(requestsById.values());
+        requests.sort(Comparator.comparingInt(Request::getRequestId));
+        return requests;
+    }
+
+    public synchronized int size() {
+        return requestsById.size();
+    }
+
+    private void unindex(Request request) {
+        LocalDate day = request.earliestStart.toLocalDate();
+        NavigableMap<Integer, NavigableMap<LocalDateTime, List<Request>>> bySize = requestsByDay.get(day);
+        NavigableMap<LocalDateTime, List<Request>> byStart = bySize.get(request.partySize);
+        List<Request> requests = byStart.get(request.earliestStart);
+        requests.remove(request);
+        if (requests.isEmpty()) {
+            byStart.remove(request.earliestStart);
+            if (byStart.isEmpty()) {
+                bySize.remove(request.partySize);
+                if (bySize.isEmpty()) {
+                    requestsByDay.remove(day);
+                }
+            }
+        }
+    }
+
+    private void forgetDay(NavigableMap<Integer, NavigableMap<LocalDateTime, List<Request>>> bySize) {
+        bySize.values().forEach(byStart -> byStart.values().forEach(requests ->
+                requests.forEach(request -> requestsById.remove(request.requestId))));
+    }
+}
@@ -0,0 +1,199 @@
+package cafe.ninetyfour.utils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cafe.ninetyfour.models.*;
+import cafe.ninetyfour.services.TableManager;
+
+/**
+ * Books combinations of one to three neighbouring tables from many threads
+ * at once, all competing for the same few hours of one day, and compares
+ * assigning the tables one at a time with rollback, as bookings used to,
+ * against locking them together in table ID order. Each thread cancels
+ * its oldest booking once it holds a few, so the floor keeps turning over
+ * instead of filling up.
+ * <p>
+ * Besides throughput it reports the rollbacks, the bookings an observer
+ * thread saw on only some of their tables while they were being booked, and,
+ * once all threads are done, any table holding a failed booking or
+ * missing a table of a successful one, which must be none.
+ * <p>
+ * Usage: BookingContentionBenchmark [threads] [tables] [attemptsPerThread]
+ */
+public class BookingContentionBenchmark {
+    // Starts are 15 minutes apart over 8 hours; each booking lasts an hour
+    private static final int START_SLOTS = 32;
+    private static final int DURATION = 60;
+    // Bookings each thread holds before cancelling its oldest
+    private static final int HELD_PER_THREAD = 4;
+
+    private interface Assigner {
+        boolean assign(Booking booking, List<Table> combination, AtomicLong rollbacks);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int tableCount = args.length > 1 ? Integer.parseInt(args[1]) : 24;
+        int attempts = args.length > 2 ? Integer.parseInt(args[2]) : 20_000;
+        System.out.println(threads + " threads, " + tableCount + " tables, "
+                + attempts + " attempts per thread");
+
+        // A first round of each warms up the JIT
+        run("one by one", BookingContentionBenchmark::assignOneByOne, threads, tableCount, attempts, false);
+        run("locked together", (booking, combination, rollbacks) -> booking.addTables(combination),
+                threads, tableCount, attempts, false);
+        run("one by one", BookingContentionBenchmark::assignOneByOne, threads, tableCount, attempts, true);
+        run("locked together", (booking, combination, rollbacks) -> booking.addTables(combination),
+                threads, tableCount, attempts, true);
+    }
+
+    private static void run(String name, Assigner assigner, int threads, int tableCount,
+                            int attempts, boolean report) throws InterruptedException {
+        TableManager tableManager = new TableManager(floorPlan(tableCount), 15, 28);
+        List<Table> tables = tableManager.getAllTables();
+        LocalDateTime opening = LocalDate.now().plusDays(1).atTime(12, 0);
+        Map<Booking, List<Table>> attempted = new ConcurrentHashMap<>();
+        Set<Booking> booked = ConcurrentHashMap.newKeySet();
+        Set<Booking> cancelling = ConcurrentHashMap.newKeySet();
+        AtomicLong rollbacks = new AtomicLong();
+        AtomicLong cancelled = new AtomicLong();
+        AtomicLong partialSeen = new AtomicLong();
+        AtomicBoolean done = new AtomicBoolean();
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long seed = 42 + t;
+            Thread worker = new Thread(() -> {
+                Random random = new Random(seed);
+                ArrayDeque<Booking> held = new ArrayDeque<>();
+                ready.countDown();
+                awaitQuietly(go);
+                for (int i = 0; i < attempts; i++) {
+                    int first = random.nextInt(tables.size());
+                    int size = 1 + random.nextInt(3);
+                    List<Table> combination = new ArrayList<>(size);
+                    for (int k = 0; k < size; k++) {
+                        combination.add(tables.get((first + k) % tables.size()));
+                    }
+                    Booking booking = new Booking(1 + random.nextInt(1000),
+                            opening.plusMinutes(15L * random.nextInt(START_SLOTS)), DURATION, 1);
+                    attempted.put(booking, combination);
+                    if (assigner.assign(booking, combination, rollbacks)) {
+                        booked.add(booking);
+                        held.add(booking);
+                    }
+                    if (held.size() > HELD_PER_THREAD) {
+                        Booking oldest = held.poll();
+                        cancelling.add(oldest);
+                        booked.remove(oldest);
+                        cancelled.incrementAndGet();
+                        for (Table table : oldest.getTables()) {
+                            table.removeReservation(oldest);
+                        }
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        // Looks for bookings that are on some of their tables but not all;
+        // cancellations take a booking off its tables one by one, so they are left out
+        Thread observer = new Thread(() -> {
+            Random random = new Random(7);
+            while (!done.get()) {
+                Table table = tables.get(random.nextInt(tables.size()));
+                for (Reservation reservation : table.getReservations()) {
+                    List<Table> combination = attempted.get(reservation);
+                    // A booking is marked cancelling before it leaves any table
+                    if (combination != null && !onAll(reservation, combination)
+                            && !cancelling.contains(reservation)) {
+                        partialSeen.incrementAndGet();
+                    }
+                }
+            }
+        });
+        observer.start();
+
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        done.set(true);
+        observer.join();
+
+        int violations = 0;
+        for (Map.Entry<Booking, List<Table>> entry : attempted.entrySet()) {
+            boolean success = booked.contains(entry.getKey());
+            for (Table table : entry.getValue()) {
+                boolean held = table.getReservations().contains(entry.getKey());
+                if (held != success) {
+                    violations++;
+                }
+            }
+        }
+        if (report) {
+            long total = (long) threads * attempts;
+            System.out.printf("  %-16s %6d ms, %8.0f attempts/s, %7d booked, %6d rollbacks,"
+                            + " %5d seen half-booked, %d violations%n",
+                    name, elapsed / 1_000_000, total * 1e9 / elapsed,
+                    booked.size() + cancelled.get(), rollbacks.get(), partialSeen.get(), violations);
+        }
+    }
+
+    /**
+     * Assigns the tables one at a time, releasing the ones taken if a later
+     * one turns out to be booked.
+     */
+    private static boolean assignOneByOne(Booking booking, List<Table> combination,
+                                          AtomicLong rollbacks) {
+        List<Table> assigned = new ArrayList<>();
+        for (Table table : combination) {
+            if (!table.assignToReservation(booking)) {
+                if (!assigned.isEmpty()) {
+                    assigned.forEach(taken -> taken.removeReservation(booking));
+                    rollbacks.incrementAndGet();
+                }
+                return false;
+            }
+            assigned.add(table);
+        }
+        booking.getTables().addAll(assigned);
+        return true;
+    }
+
+    private static boolean onAll(Reservation reservation, List<Table> combination) {
+        for (Table table : combination) {
+            if (!table.getReservations().contains(reservation)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static FloorPlan floorPlan(int tableCount) {
+        FloorPlan plan = new FloorPlan();
+        for (int i = 1; i <= tableCount; i++) {
+            plan.addTable(new Table(i, 4, FloorPlan.DEFAULT_ZONE, i % 10, i / 10));
+        }
+        return plan;
+    }
+}
@@ -0,0 +1,90 @@
+package cafe.ninetyfour.utils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import cafe.ninetyfour.models.*;
+import cafe.ninetyfour.services.SeatingPlanOptimizer;
+import cafe.ninetyfour.services.TableManager;
+
+/**
+ * Compares seating a day of bookings first come first served, each at the
+ * smallest free table, with the plan of SeatingPlanOptimizer, in seated
+ * covers, idle seat-minutes and time taken.
+ * <p>
+ * Usage: SeatingPlanBenchmark [bookings] [tables] [budgetMillis]
+ */
+public class SeatingPlanBenchmark {
+
+    public static void main(String[] args) {
+        int bookingCount = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        int tableCount = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+        long budgetMillis = args.length > 2 ? Long.parseLong(args[2])
+                : SeatingPlanOptimizer.DEFAULT_TIME_BUDGET_MILLIS;
+
+        // Start minute, duration and party size of each booking, in booking order
+        Random random = new Random(42);
+        int[][] requests = new int[bookingCount][];
+        for (int i = 0; i < bookingCount; i++) {
+            requests[i] = new int[]{random.nextInt(48) * 15, 60 + random.nextInt(7) * 15,
+                    1 + random.nextInt(random.nextInt(4) == 0 ? 10 : 4)};
+        }
+        LocalDateTime opening = LocalDate.now().plusDays(1).atTime(10, 0);
+        int requestedCovers = Arrays.stream(requests).mapToInt(request -> request[2]).sum();
+        System.out.println(bookingCount + " bookings (" + requestedCovers + " covers) on "
+                + tableCount + " tables");
+
+        TableManager tableManager = new TableManager(floorPlan(tableCount), 15, 28);
+        List<Booking> bookings = bookings(requests, opening);
+        long start = System.nanoTime();
+        int covers = 0;
+        long idle = 0;
+        for (Booking booking : bookings) {
+            Optional<Table> smallest = tableManager.findAvailableTables(booking.getStartTime(),
+                            booking.getDuration(), booking.getNumberOfGuests()).stream()
+                    .min(Comparator.comparingInt(Table::getCapacity));
+            if (smallest.isPresent() && booking.addTable(smallest.get())) {
+                covers += booking.getNumberOfGuests();
+                idle += (long) (smallest.get().getCapacity() - booking.getNumberOfGuests())
+                        * booking.getDuration();
+            }
+        }
+        System.out.printf("  first come first served: %d covers, %d idle seat-minutes, %d ms%n",
+                covers, idle, elapsedMillis(start));
+
+        tableManager = new TableManager(floorPlan(tableCount), 15, 28);
+        bookings = bookings(requests, opening);
+        start = System.nanoTime();
+        SeatingPlanOptimizer.SeatingPlan plan = new SeatingPlanOptimizer(
+                tableManager.getAllTables(), new Random(42)).optimize(bookings, budgetMillis);
+        System.out.printf("  optimized:               %d covers, %d idle seat-minutes, %d ms%n",
+                plan.getSeatedCovers(), plan.getIdleSeatMinutes(), elapsedMillis(start));
+    }
+
+    private static List<Booking> bookings(int[][] requests, LocalDateTime opening) {
+        List<Booking> bookings = new ArrayList<>(requests.length);
+        for (int i = 0; i < requests.length; i++) {
+            bookings.add(new Booking(1 + i, opening.plusMinutes(requests[i][0]),
+                    requests[i][1], requests[i][2]));
+        }
+        return bookings;
+    }
+
+    /**
+     * Mostly tables of two and four, with a few of six and eight.
+     */
+    private static FloorPlan floorPlan(int tableCount) {
+        int[] capacities = {2, 2, 2, 4, 4, 4, 6, 8};
+        FloorPlan plan = new FloorPlan();
+        for (int i = 1; i <= tableCount; i++) {
+            plan.addTable(new Table(i, capacities[i % capacities.length],
+                    FloorPlan.DEFAULT_ZONE, i % 10, i / 10));
+        }
+        return plan;
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
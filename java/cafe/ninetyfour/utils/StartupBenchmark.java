@@ -0,0 +1,118 @@
+package cafe.ninetyfour.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import cafe.ninetyfour.enums.ItemCategory;
+import cafe.ninetyfour.models.*;
+import cafe.ninetyfour.repository.Repositories;
+import cafe.ninetyfour.services.*;
+
+/**
+ * Compares time-to-login and time-to-ready of loading the services one
+ * after another with loading them through ServiceBootstrap.
+ * Generates a data set in a temporary directory first.
+ * <p>
+ * Usage: StartupBenchmark [customers] [orders] [bookings] [runs]
+ */
+public class StartupBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int customers = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int orders = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+        int bookings = args.length > 2 ? Integer.parseInt(args[2]) : 5_000;
+        int runs = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        File dataDir = Files.createTempDirectory("cafe94-startup").toFile();
+        System.out.println("Generating " + customers + " customers, " + orders
+                + " orders and " + bookings + " bookings in " + dataDir);
+        generate(dataDir, customers, orders, bookings);
+
+        long[] sequentialLogin = new long[runs];
+        long[] sequentialReady = new long[runs];
+        long[] parallelLogin = new long[runs];
+        long[] parallelReady = new long[runs];
+        for (int run = 0; run < runs; run++) {
+            try (Repositories repositories = Repositories.files(dataDir)) {
+                long start = System.nanoTime();
+                CustomerService customerService = new CustomerService(null, repositories.customers());
+                StaffService staffService = new StaffService(null, repositories.staff());
+                new AuthService(customerService, staffService);
+                sequentialLogin[run] = elapsedMillis(start);
+                new BookingService(new TableManager(), null, repositories.bookings());
+                new OrderService(repositories.orders());
+                sequentialReady[run] = elapsedMillis(start);
+            }
+
+            try (Repositories repositories = Repositories.files(dataDir)) {
+                long start = System.nanoTime();
+                ServiceBootstrap bootstrap = new ServiceBootstrap(null, repositories).start();
+                bootstrap.authReady().join();
+                parallelLogin[run] = elapsedMillis(start);
+                bootstrap.allReady().join();
+                parallelReady[run] = elapsedMillis(start);
+            }
+        }
+
+        System.out.println("Median over " + runs + " runs (ms):");
+        System.out.println("  sequential: login " + median(sequentialLogin)
+                + ", all services " + median(sequentialReady));
+        System.out.println("  parallel:   login " + median(parallelLogin)
+                + ", all services " + median(parallelReady));
+    }
+
+    private static void generate(File dataDir, int customerCount, int orderCount,
+                                 int bookingCount) throws IOException {
+        try (Repositories repositories = Repositories.files(dataDir)) {
+            List<Customer> customers = new ArrayList<>(customerCount);
+            for (int i = 0; i < customerCount; i++) {
+                Customer customer = new Customer("bench_customer" + i, "password" + i + "!",
+                        "Bench", "Customer", i + " Bench St");
+                customer.setEmail("customer" + i + "@bench.test");
+                customers.add(customer);
+            }
+            repositories.customers().saveAll(customers);
+
+            List<Staff> staff = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                staff.add(new Waiter("bench_waiter" + i, "waiter" + i + "!", 40, "Bench", "Waiter"));
+            }
+            repositories.staff().saveAll(staff);
+
+            List<Booking> bookings = new ArrayList<>(bookingCount);
+            LocalDateTime firstSlot = LocalDateTime.now().plusDays(1).withHour(12).withMinute(0);
+            for (int i = 0; i < bookingCount; i++) {
+                bookings.add(new Booking(customers.get(i % customerCount).getUserId(),
+                        firstSlot.plusMinutes(30L * i), 2 + i % 6));
+            }
+            repositories.bookings().saveAll(bookings);
+
+            List<Item> menu = List.of(
+                    new Item("Coffee", ItemCategory.DRINK, 2.5),
+                    new Item("Pasta", ItemCategory.MAIN, 12.99),
+                    new Item("Salad", ItemCategory.SIDE, 5.99));
+            List<Order> placed = new ArrayList<>(orderCount);
+            for (int i = 0; i < orderCount; i++) {
+                Order order = new TakeAwayOrder(customers.get(i % customerCount).getUserId(),
+                        List.of(menu.get(i % menu.size()), menu.get((i + 1) % menu.size())));
+                order.setOrderId(i + 1);
+                placed.add(order);
+            }
+            repositories.orders().checkpoint(Map.of(LocalDate.now(), placed));
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,94 @@
+package cafe.ninetyfour.utils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import cafe.ninetyfour.models.*;
+import cafe.ninetyfour.services.TableManager;
+
+/**
+ * Measures how long it takes to restore the tables' schedules from saved
+ * bookings at startup: the bulk rebuild of TableManager against assigning
+ * the bookings to their tables one at a time.
+ * <p>
+ * Usage: TableRebuildBenchmark [bookings] [tables] [runs]
+ */
+public class TableRebuildBenchmark {
+
+    public static void main(String[] args) {
+        int bookingCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int tableCount = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        List<Booking> bookings = generate(bookingCount, tableCount);
+        System.out.println("Generated " + bookings.size() + " bookings on "
+                + tableCount + " tables");
+
+        long[] oneByOne = new long[runs];
+        long[] bulk = new long[runs];
+        int restored = 0;
+        for (int run = 0; run < runs; run++) {
+            TableManager tableManager = new TableManager(floorPlan(tableCount), 15, 28);
+            // Keep one method's garbage out of the other's timing
+            System.gc();
+            long start = System.nanoTime();
+            for (Booking booking : bookings) {
+                for (int tableId : booking.getTableIds()) {
+                    tableManager.getTableById(tableId).assignToReservation(booking);
+                }
+            }
+            oneByOne[run] = elapsedMillis(start);
+
+            tableManager = new TableManager(floorPlan(tableCount), 15, 28);
+            System.gc();
+            start = System.nanoTime();
+            restored = tableManager.rebuildFrom(bookings);
+            bulk[run] = elapsedMillis(start);
+        }
+
+        System.out.println("Restored " + restored + " table reservations");
+        System.out.println("Median over " + runs + " runs (ms):");
+        System.out.println("  one by one: " + median(oneByOne));
+        System.out.println("  bulk:       " + median(bulk));
+    }
+
+    /**
+     * Books every table for one hour at a time over the booking horizon,
+     * shuffled as bookings are made in no particular order.
+     */
+    private static List<Booking> generate(int bookingCount, int tableCount) {
+        TableManager tableManager = new TableManager(floorPlan(tableCount), 15, 28);
+        LocalDateTime firstSlot = LocalDate.now().plusDays(1).atTime(8, 0);
+        List<Booking> bookings = new ArrayList<>(bookingCount);
+        for (int i = 0; i < bookingCount; i++) {
+            Table table = tableManager.getTableById(1 + i % tableCount);
+            int hour = i / tableCount;
+            // 12 bookings a day from 8am, spread over as many days as needed
+            LocalDateTime start = firstSlot.plusDays(hour / 12).plusHours(hour % 12);
+            Booking booking = new Booking(1 + i % 1000, start, 60, 2);
+            booking.addTable(table);
+            bookings.add(booking);
+        }
+        Collections.shuffle(bookings, new Random(42));
+        return bookings;
+    }
+
+    private static FloorPlan floorPlan(int tableCount) {
+        FloorPlan plan = new FloorPlan();
+        for (int i = 1; i <= tableCount; i++) {
+            plan.addTable(new Table(i, 2 + 2 * (i % 4), FloorPlan.DEFAULT_ZONE, i % 20, i / 20));
+        }
+        return plan;
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}